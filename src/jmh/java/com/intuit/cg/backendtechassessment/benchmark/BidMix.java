@@ -0,0 +1,36 @@
+package com.intuit.cg.backendtechassessment.benchmark;
+
+import com.intuit.cg.backendtechassessment.models.BidRequest;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates the bids of a benchmark run. Amounts are spread around MAX_BUDGET so both MINIMUM_FOUND and
+ * MINIMUM_TOO_HIGH results come up, autoBidPercent % of the bids are auto bids with a limit below their amount.
+ * A fixed seed keeps the bids the same between runs so the results can be compared.
+ */
+public class BidMix {
+    public static final long MAX_BUDGET = 1_000_000;
+    private static final long SEED = 20180501L;
+
+    private final SplittableRandom random;
+    private final int autoBidPercent;
+
+    public BidMix(int autoBidPercent) {
+        this(autoBidPercent, SEED);
+    }
+
+    public BidMix(int autoBidPercent, long seed) {
+        this.random = new SplittableRandom(seed);
+        this.autoBidPercent = autoBidPercent;
+    }
+
+    public BidRequest next(long projectId, long buyerId) {
+        long amount = MAX_BUDGET / 2 + random.nextLong(MAX_BUDGET);
+        if (random.nextInt(100) < autoBidPercent) {
+            long minAmount = amount - random.nextLong(amount / 2);
+            return new BidRequest(amount, projectId, buyerId, true, minAmount);
+        }
+        return new BidRequest(amount, projectId, buyerId, false, 0);
+    }
+}
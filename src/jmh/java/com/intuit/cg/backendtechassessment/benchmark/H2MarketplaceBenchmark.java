@@ -0,0 +1,152 @@
+package com.intuit.cg.backendtechassessment.benchmark;
+
+import com.intuit.cg.backendtechassessment.BackendTechAssessmentApplication;
+import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.BidRequest;
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.orderbook.ProjectOrderBook;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JobMarketplaceService hot paths through the Spring context with the H2 backed repositories, the same setup the
+ * application runs with (transactions, row locks, JDBC batching) without the web layer.
+ *
+ * Every thread bids on and closes its own projects, so with -t the threads only share the database and the bid
+ * sequence. The closing benchmarks put the project row back with JDBC before each call (Level.Invocation), which is
+ * fine for calls that take well over a millisecond but adds noise for bidsPerProject=10.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2) //Hibernate takes a few seconds of calls to get compiled
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class H2MarketplaceBenchmark {
+    private static final String RESET_PROJECT = "update project set bid_status=?, min_bid=?, min_bid_id=?, " +
+            "auto_min_amount1=?, auto_bid_id1=?, auto_min_amount2=?, auto_bid_id2=?, last_bid_id=? where id=?";
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int bidsPerProject;
+
+    @Param({"0", "50", "100"})
+    public int autoBidPercent;
+
+    private ConfigurableApplicationContext context;
+    private JobMarketplaceService service;
+    private JdbcTemplate jdbcTemplate;
+    private long sellerId;
+    private long buyerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(BackendTechAssessmentApplication.class)
+                .web(WebApplicationType.NONE)
+                //as arguments, default properties would lose to application.yml
+                .run("--spring.jpa.properties.hibernate.show_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--spring.devtools.livereload.enabled=false");
+        service = context.getBean(JobMarketplaceService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        sellerId = service.addSeller("benchmark seller").getId();
+        buyerId = service.addBuyer("benchmark buyer").getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ProjectState {
+        BidMix bidMix;
+        long openProjectId;
+        long closingProjectId;      //deadline passed
+        ProjectOrderBook closingBook;
+
+        @Setup(Level.Trial)
+        public void setUp(H2MarketplaceBenchmark benchmark) {
+            bidMix = new BidMix(benchmark.autoBidPercent, Thread.currentThread().getId());
+            openProjectId = benchmark.seedProject(bidMix);
+            closingProjectId = benchmark.seedProject(bidMix);
+            closingBook = ProjectOrderBook.of(benchmark.service.getProjectById2(closingProjectId));
+            //bids are only taken before the deadline, move it once the bids are in
+            benchmark.jdbcTemplate.update("update project set bid_deadline=? where id=?",
+                    Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)), closingProjectId);
+        }
+    }
+
+    private long seedProject(BidMix bidMix) {
+        Project project = service.createProject(sellerId, "benchmark project", BidMix.MAX_BUDGET,
+                LocalDateTime.now().plusDays(1));
+        List<BidRequest> requests = new ArrayList<>();
+        for (int i = 0; i < bidsPerProject; i++) {
+            requests.add(bidMix.next(project.getId(), buyerId));
+            if (requests.size() == JobMarketplaceService.MAX_BATCH_SIZE) {
+                service.addNewBids(requests);
+                requests.clear();
+            }
+        }
+        if (!requests.isEmpty()) {
+            service.addNewBids(requests);
+        }
+        return project.getId();
+    }
+
+    private void resetProject(long projectId, ProjectOrderBook book) {
+        jdbcTemplate.update(RESET_PROJECT, Project.BidStatus.NONE.ordinal(), book.getMinBid(), book.getMinBidId(),
+                book.getAutoMinAmount1(), book.getAutoBidId1(), book.getAutoMinAmount2(), book.getAutoBidId2(),
+                book.getLastBidId(), projectId);
+    }
+
+    @Benchmark
+    public Bid addNewBid(ProjectState state) {
+        BidRequest request = state.bidMix.next(state.openProjectId, buyerId);
+        return service.addNewBid(request.getAmount(), request.getProjectId(), request.getBuyerId(),
+                request.isAutoBid(), request.getMinAmount());
+    }
+
+    @Benchmark
+    public Project getProjectById2Open(ProjectState state) {
+        return service.getProjectById2(state.openProjectId);
+    }
+
+    @State(Scope.Thread)
+    public static class UnfoldedProject {
+        /** none of the bids folded, the first reader after the deadline folds all of them */
+        @Setup(Level.Invocation)
+        public void reset(H2MarketplaceBenchmark benchmark, ProjectState state) {
+            benchmark.resetProject(state.closingProjectId, new ProjectOrderBook(state.closingProjectId));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FoldedProject {
+        /** all bids folded by addNewBids, closing is the auto bid resolution alone */
+        @Setup(Level.Invocation)
+        public void reset(H2MarketplaceBenchmark benchmark, ProjectState state) {
+            benchmark.resetProject(state.closingProjectId, state.closingBook);
+        }
+    }
+
+    @Benchmark
+    public Project getProjectById2AfterDeadline(ProjectState state, UnfoldedProject unfolded) {
+        return service.getProjectById2(state.closingProjectId);
+    }
+
+    @Benchmark
+    public Project closeProject(ProjectState state, FoldedProject folded) {
+        return service.closeProject(state.closingProjectId);
+    }
+}
@@ -0,0 +1,150 @@
+package com.intuit.cg.backendtechassessment.benchmark;
+
+import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.BidView;
+import com.intuit.cg.backendtechassessment.repository.BidRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * BidRepository stub. Bids are kept by id and in one list per project in id order, so findByProjectAfter() is a
+ * binary search plus a copy like the (projectId, id) index range scan it stands in for.
+ */
+public class InMemoryBidRepository implements BidRepository {
+    private final ConcurrentSkipListMap<Long, Bid> bids = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, List<Bid>> bidsByProject = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    @Override
+    public List<BidView> findPage(long projectId, long buyerId, long after, int limit) {
+        List<BidView> page = new ArrayList<>();
+        for (Bid bid : bids.tailMap(after, false).values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if ((projectId < 0 || bid.getProjectId() == projectId) && (buyerId < 0 || bid.getBuyerId() == buyerId)) {
+                page.add(BidView.of(bid));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void forEach(Consumer<Bid> consumer) {
+        bids.values().forEach(consumer);
+    }
+
+    @Override
+    public List<BidView> findAllByProject(long projectId) {
+        List<BidView> views = new ArrayList<>();
+        List<Bid> projectBids = projectBids(projectId);
+        synchronized (projectBids) {
+            for (Bid bid : projectBids) {
+                views.add(BidView.of(bid));
+            }
+        }
+        return views;
+    }
+
+    @Override
+    public List<BidView> findAllByProjects(Collection<Long> projectIds) {
+        List<BidView> views = new ArrayList<>();
+        for (long projectId : new TreeSet<>(projectIds)) {
+            views.addAll(findAllByProject(projectId));
+        }
+        return views;
+    }
+
+    @Override
+    public List<Bid> findByProjectAfter(long projectId, long afterId) {
+        List<Bid> projectBids = projectBids(projectId);
+        synchronized (projectBids) {
+            int from = indexAfter(projectBids, afterId);
+            return new ArrayList<>(projectBids.subList(from, projectBids.size()));
+        }
+    }
+
+    @Override
+    public long findMaxJournalSeq() {
+        long maxJournalSeq = 0;
+        for (Bid bid : bids.values()) {
+            maxJournalSeq = Math.max(maxJournalSeq, bid.getJournalSeq());
+        }
+        return maxJournalSeq;
+    }
+
+    @Override
+    public Bid find(long id) {
+        return bids.get(id);
+    }
+
+    @Override
+    public void save(Bid bid) {
+        if (bid != null && bid.getId() == 0) {
+            bid.setId(nextId.getAndIncrement());
+        }
+        persist(bid);
+    }
+
+    @Override
+    public void persist(Bid bid) {
+        if (bid != null && bids.put(bid.getId(), bid) == null) {
+            List<Bid> projectBids = projectBids(bid.getProjectId());
+            synchronized (projectBids) {
+                //ids come from one counter, a bid is out of order only if 2 threads bid on the same project
+                int index = indexAfter(projectBids, bid.getId());
+                projectBids.add(index, bid);
+            }
+        }
+    }
+
+    @Override
+    public void merge(Bid bid) {
+        persist(bid);
+    }
+
+    @Override
+    public void remove(long id) {
+        Bid bid = bids.remove(id);
+        if (bid != null) {
+            List<Bid> projectBids = projectBids(bid.getProjectId());
+            synchronized (projectBids) {
+                projectBids.remove(bid);
+            }
+        }
+    }
+
+    /** drops the bids of the project after the first size bids, used to undo the bids added by a measurement */
+    public void truncate(long projectId, int size) {
+        List<Bid> projectBids = projectBids(projectId);
+        synchronized (projectBids) {
+            List<Bid> added = projectBids.subList(Math.min(size, projectBids.size()), projectBids.size());
+            for (Bid bid : added) {
+                bids.remove(bid.getId());
+            }
+            added.clear();
+        }
+    }
+
+    private List<Bid> projectBids(long projectId) {
+        return bidsByProject.computeIfAbsent(projectId, id -> new ArrayList<>());
+    }
+
+    /** index of the first bid with id greater than afterId */
+    private static int indexAfter(List<Bid> projectBids, long afterId) {
+        int size = projectBids.size();
+        if (size == 0 || projectBids.get(size - 1).getId() <= afterId) {
+            return size;
+        }
+        int index = Collections.binarySearch(projectBids, null, (bid, key) -> Long.compare(bid.getId(), afterId));
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+}
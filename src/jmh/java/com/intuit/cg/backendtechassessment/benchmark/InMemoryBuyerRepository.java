@@ -0,0 +1,69 @@
+package com.intuit.cg.backendtechassessment.benchmark;
+
+import com.intuit.cg.backendtechassessment.models.Buyer;
+import com.intuit.cg.backendtechassessment.repository.BuyerRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** BuyerRepository stub holding the buyers in a map */
+public class InMemoryBuyerRepository implements BuyerRepository {
+    private final ConcurrentSkipListMap<Long, Buyer> buyers = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    @Override
+    public List<Buyer> findPage(long after, int limit) {
+        List<Buyer> page = new ArrayList<>();
+        for (Buyer buyer : buyers.tailMap(after, false).values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(buyer);
+        }
+        return page;
+    }
+
+    @Override
+    public Buyer find(long id) {
+        return buyers.get(id);
+    }
+
+    @Override
+    public List<Long> findExistingIds(Collection<Long> ids) {
+        List<Long> found = new ArrayList<>();
+        for (long id : ids) {
+            if (buyers.containsKey(id)) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void save(Buyer buyer) {
+        if (buyer != null && buyer.getId() == 0) {
+            buyer.setId(nextId.getAndIncrement());
+        }
+        persist(buyer);
+    }
+
+    @Override
+    public void persist(Buyer buyer) {
+        if (buyer != null) {
+            buyers.put(buyer.getId(), buyer);
+        }
+    }
+
+    @Override
+    public void merge(Buyer buyer) {
+        persist(buyer);
+    }
+
+    @Override
+    public void remove(long id) {
+        buyers.remove(id);
+    }
+}
@@ -0,0 +1,159 @@
+package com.intuit.cg.backendtechassessment.benchmark;
+
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.ProjectView;
+import com.intuit.cg.backendtechassessment.repository.ProjectRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ProjectRepository stub holding the projects in a map, so the benchmarks can measure JobMarketplaceService without
+ * the database. There are no row locks, the benchmarks give each thread its own projects.
+ */
+public class InMemoryProjectRepository implements ProjectRepository {
+    private final ConcurrentSkipListMap<Long, Project> projects = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    @Override
+    public List<ProjectView> findPage(long sellerId, Boolean open, LocalDateTime deadlineFrom, LocalDateTime deadlineTo,
+                                      long after, int limit) {
+        if (deadlineFrom != null || deadlineTo != null) {
+            return findPageByDeadline(sellerId, open, deadlineFrom, deadlineTo, after, limit);
+        }
+        List<ProjectView> page = new ArrayList<>();
+        for (Project project : projects.tailMap(after, false).values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (matches(project, sellerId, open, deadlineFrom, deadlineTo)) {
+                page.add(ProjectView.of(project));
+            }
+        }
+        return page;
+    }
+
+    /** (bidDeadline, id) order after the deadline and id of project after, like the (bidDeadline, id) index seek */
+    private List<ProjectView> findPageByDeadline(long sellerId, Boolean open, LocalDateTime deadlineFrom,
+                                                 LocalDateTime deadlineTo, long after, int limit) {
+        Project cursor = after > 0 ? projects.get(after) : null;
+        if (after > 0 && cursor == null) {
+            return new ArrayList<>();
+        }
+        Comparator<Project> order = Comparator.comparing(Project::getBidDeadline).thenComparingLong(Project::getId);
+        List<Project> found = new ArrayList<>();
+        for (Project project : projects.values()) {
+            if (matches(project, sellerId, open, deadlineFrom, deadlineTo)
+                    && (cursor == null || order.compare(project, cursor) > 0)) {
+                found.add(project);
+            }
+        }
+        found.sort(order);
+        List<ProjectView> page = new ArrayList<>();
+        for (Project project : found.subList(0, Math.min(limit, found.size()))) {
+            page.add(ProjectView.of(project));
+        }
+        return page;
+    }
+
+    private static boolean matches(Project project, long sellerId, Boolean open, LocalDateTime deadlineFrom,
+                                   LocalDateTime deadlineTo) {
+        if (sellerId >= 0 && project.getSellerId() != sellerId) {
+            return false;
+        }
+        if (open != null && open != (project.getBidStatus() == Project.BidStatus.NONE)) {
+            return false;
+        }
+        if (deadlineFrom != null && project.getBidDeadline().compareTo(deadlineFrom) < 0) {
+            return false;
+        }
+        return deadlineTo == null || project.getBidDeadline().compareTo(deadlineTo) < 0;
+    }
+
+    @Override
+    public List<Project> findByBidStatus(Project.BidStatus bidStatus) {
+        List<Project> found = new ArrayList<>();
+        for (Project project : projects.values()) {
+            if (project.getBidStatus() == bidStatus) {
+                found.add(project);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Map<Project.BidStatus, Long> countByBidStatus() {
+        Map<Project.BidStatus, Long> counts = new EnumMap<>(Project.BidStatus.class);
+        for (Project project : projects.values()) {
+            counts.merge(project.getBidStatus(), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public long findMaxClosedId() {
+        long maxId = 0;
+        for (Project project : projects.values()) {
+            if (project.getBidStatus() != Project.BidStatus.NONE) {
+                maxId = Math.max(maxId, project.getId());
+            }
+        }
+        return maxId;
+    }
+
+    @Override
+    public ProjectView findView(long id) {
+        Project project = projects.get(id);
+        return project == null ? null : ProjectView.of(project);
+    }
+
+    @Override
+    public Project find(long id) {
+        return projects.get(id);
+    }
+
+    @Override
+    public List<Project> findAllById(Collection<Long> ids) {
+        List<Project> found = new ArrayList<>();
+        for (long id : new TreeSet<>(ids)) {
+            Project project = projects.get(id);
+            if (project != null) {
+                found.add(project);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void save(Project project) {
+        if (project != null && project.getId() == 0) {
+            project.setId(nextId.getAndIncrement());
+        }
+        persist(project);
+    }
+
+    @Override
+    public void persist(Project project) {
+        if (project != null) {
+            projects.put(project.getId(), project);
+        }
+    }
+
+    @Override
+    public void merge(Project project) {
+        persist(project);
+    }
+
+    @Override
+    public void remove(long id) {
+        projects.remove(id);
+    }
+}
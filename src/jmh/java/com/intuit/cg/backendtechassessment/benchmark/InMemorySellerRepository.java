@@ -0,0 +1,57 @@
+package com.intuit.cg.backendtechassessment.benchmark;
+
+import com.intuit.cg.backendtechassessment.models.Seller;
+import com.intuit.cg.backendtechassessment.repository.SellerRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** SellerRepository stub holding the sellers in a map */
+public class InMemorySellerRepository implements SellerRepository {
+    private final ConcurrentSkipListMap<Long, Seller> sellers = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    @Override
+    public List<Seller> findPage(long after, int limit) {
+        List<Seller> page = new ArrayList<>();
+        for (Seller seller : sellers.tailMap(after, false).values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(seller);
+        }
+        return page;
+    }
+
+    @Override
+    public Seller find(long id) {
+        return sellers.get(id);
+    }
+
+    @Override
+    public void save(Seller seller) {
+        if (seller != null && seller.getId() == 0) {
+            seller.setId(nextId.getAndIncrement());
+        }
+        persist(seller);
+    }
+
+    @Override
+    public void persist(Seller seller) {
+        if (seller != null) {
+            sellers.put(seller.getId(), seller);
+        }
+    }
+
+    @Override
+    public void merge(Seller seller) {
+        persist(seller);
+    }
+
+    @Override
+    public void remove(long id) {
+        sellers.remove(id);
+    }
+}
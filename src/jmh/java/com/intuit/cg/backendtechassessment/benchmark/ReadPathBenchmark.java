@@ -0,0 +1,134 @@
+package com.intuit.cg.backendtechassessment.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intuit.cg.backendtechassessment.BackendTechAssessmentApplication;
+import com.intuit.cg.backendtechassessment.json.JsonPageResult;
+import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.BidRequest;
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The list reads (/bids, /projects) as served now, read-only transactions reading views, against the way they were
+ * served before: managed entities in a read-write transaction, flushed and dirty checked at commit. Both include the
+ * JSON serialization of the page.
+ *
+ * Run with -prof gc to compare the allocation per page (persistence context entries and entity snapshots), e.g.
+ * -Djmh.args="ReadPath -prof gc".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class ReadPathBenchmark {
+    private static final int PROJECTS = 2000;
+    private static final int BIDS = 2000;
+
+    @Param({"100", "1000"})
+    public int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private JobMarketplaceService service;
+    private ObjectMapper objectMapper;
+    private EntityManager em;
+    private TransactionTemplate transactionTemplate;
+    private long sellerId;
+    private long projectId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(BackendTechAssessmentApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.jpa.properties.hibernate.show_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--spring.devtools.livereload.enabled=false");
+        service = context.getBean(JobMarketplaceService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        em = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        sellerId = service.addSeller("benchmark seller").getId();
+        long buyerId = service.addBuyer("benchmark buyer").getId();
+        for (int i = 0; i < PROJECTS; i++) {
+            projectId = service.createProject(sellerId, "benchmark project " + i, BidMix.MAX_BUDGET,
+                    LocalDateTime.now().plusDays(1)).getId();
+        }
+        BidMix bidMix = new BidMix(50, 1);
+        List<BidRequest> requests = new ArrayList<>();
+        for (int i = 0; i < BIDS; i++) {
+            requests.add(bidMix.next(projectId, buyerId));
+        }
+        for (int from = 0; from < BIDS; from += JobMarketplaceService.MAX_BATCH_SIZE) {
+            service.addNewBids(requests.subList(from, Math.min(from + JobMarketplaceService.MAX_BATCH_SIZE, BIDS)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private byte[] toJson(List<?> page) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(new JsonPageResult<>(page, null));
+    }
+
+    @Benchmark
+    public byte[] bidsPageViews() throws JsonProcessingException {
+        return toJson(service.getBids(projectId, -1, 0, pageSize));
+    }
+
+    @Benchmark
+    public byte[] bidsPageEntities() {
+        return transactionTemplate.execute(status -> {
+            try {
+                return toJson(em.createQuery("SELECT p FROM Bid p WHERE p.id>:after and p.projectId=:projectId" +
+                        " order by p.id", Bid.class).
+                        setParameter("after", 0L).
+                        setParameter("projectId", projectId).
+                        setMaxResults(pageSize).
+                        getResultList());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Benchmark
+    public byte[] projectsPageViews() throws JsonProcessingException {
+        return toJson(service.getProjects(sellerId, null, null, null, 0, pageSize));
+    }
+
+    @Benchmark
+    public byte[] projectsPageEntities() {
+        return transactionTemplate.execute(status -> {
+            try {
+                return toJson(em.createQuery("SELECT p FROM Project p WHERE p.id>:after and p.sellerId=:sellerId" +
+                        " order by p.id", Project.class).
+                        setParameter("after", 0L).
+                        setParameter("sellerId", sellerId).
+                        setMaxResults(pageSize).
+                        getResultList());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
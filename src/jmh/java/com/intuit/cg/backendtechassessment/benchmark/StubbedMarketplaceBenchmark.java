@@ -0,0 +1,123 @@
+package com.intuit.cg.backendtechassessment.benchmark;
+
+import com.intuit.cg.backendtechassessment.journal.BidJournal;
+import com.intuit.cg.backendtechassessment.lock.ProjectLocks;
+import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.BidRequest;
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.orderbook.ProjectOrderBook;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JobMarketplaceService hot paths against the in-memory repository stubs, i.e. the cost of the service logic alone.
+ * Compare with H2MarketplaceBenchmark for the cost of the database.
+ *
+ * Every thread bids on and closes its own projects as the stubs have no row locks. Each thread holds 2 projects of
+ * bidsPerProject bids, run 1000000 with more than a few threads (-t) only with a larger heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class StubbedMarketplaceBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int bidsPerProject;
+
+    @Param({"0", "50", "100"})
+    public int autoBidPercent;
+
+    private InMemoryProjectRepository projectRepository;
+    private InMemoryBidRepository bidRepository;
+    private JobMarketplaceService service;
+    private long sellerId;
+    private long buyerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        projectRepository = new InMemoryProjectRepository();
+        bidRepository = new InMemoryBidRepository();
+        service = new JobMarketplaceService(projectRepository, bidRepository, new InMemoryBuyerRepository(),
+                new InMemorySellerRepository(), event -> {}, new ProjectLocks(256),
+                new NoOpTransactionManager(), new BidJournal(false, null, 0, false, new SimpleMeterRegistry()));
+        sellerId = service.addSeller("benchmark seller").getId();
+        buyerId = service.addBuyer("benchmark buyer").getId();
+    }
+
+    @State(Scope.Thread)
+    public static class ProjectState {
+        BidMix bidMix;
+        long openProjectId;
+        ProjectOrderBook openBook;  //fold state of the open project after seeding
+        Project closingProject;     //deadline passed, status NONE
+        ProjectOrderBook closingBook;
+
+        @Setup(Level.Trial)
+        public void setUp(StubbedMarketplaceBenchmark benchmark) {
+            bidMix = new BidMix(benchmark.autoBidPercent, Thread.currentThread().getId());
+            Project openProject = benchmark.seedProject(bidMix);
+            openProjectId = openProject.getId();
+            openBook = ProjectOrderBook.of(openProject);
+
+            closingProject = benchmark.seedProject(bidMix);
+            closingProject.setBidDeadline(LocalDateTime.now().minusMinutes(1));
+            closingBook = ProjectOrderBook.of(closingProject);
+        }
+
+        /** undo the bids added during the last iteration so every iteration sees bidsPerProject bids */
+        @TearDown(Level.Iteration)
+        public void reset(StubbedMarketplaceBenchmark benchmark) {
+            benchmark.bidRepository.truncate(openProjectId, benchmark.bidsPerProject);
+            openBook.copyTo(benchmark.projectRepository.find(openProjectId));
+        }
+    }
+
+    private Project seedProject(BidMix bidMix) {
+        Project project = service.createProject(sellerId, "benchmark project", BidMix.MAX_BUDGET,
+                LocalDateTime.now().plusDays(1));
+        for (int i = 0; i < bidsPerProject; i++) {
+            addNewBid(bidMix.next(project.getId(), buyerId));
+        }
+        return project;
+    }
+
+    private Bid addNewBid(BidRequest request) {
+        return service.addNewBid(request.getAmount(), request.getProjectId(), request.getBuyerId(),
+                request.isAutoBid(), request.getMinAmount());
+    }
+
+    @Benchmark
+    public Bid addNewBid(ProjectState state) {
+        return addNewBid(state.bidMix.next(state.openProjectId, buyerId));
+    }
+
+    @Benchmark
+    public Project getProjectById2Open(ProjectState state) {
+        return service.getProjectById2(state.openProjectId);
+    }
+
+    /** first reader after the deadline with none of the bids folded yet, folds all bidsPerProject bids */
+    @Benchmark
+    public Project getProjectById2AfterDeadline(ProjectState state) {
+        //a few field writes, cheap next to the fold that follows
+        Project project = state.closingProject;
+        new ProjectOrderBook(project.getId()).copyTo(project);
+        project.setBidStatus(Project.BidStatus.NONE);
+        return service.getProjectById2(project.getId());
+    }
+
+    /** AuctionCloser at the deadline, the bids are already folded so this is the auto bid resolution alone */
+    @Benchmark
+    public Project closeProject(ProjectState state) {
+        Project project = state.closingProject;
+        state.closingBook.copyTo(project);
+        project.setBidStatus(Project.BidStatus.NONE);
+        return service.closeProject(project.getId());
+    }
+}
@@ -0,0 +1,379 @@
+package com.intuit.cg.backendtechassessment.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intuit.cg.backendtechassessment.BackendTechAssessmentApplication;
+import com.intuit.cg.backendtechassessment.controller.requestmappings.RequestMappings;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import com.intuit.cg.backendtechassessment.web.TomcatVirtualThreadCustomizer;
+import com.intuit.cg.backendtechassessment.web.VirtualThreads;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * HTTP load test of JobMarketplaceController. Starts the application on a random port, seeds sellers, buyers and
+ * projects, then sends a mix of /add-new-bid, /get-project-by-id and /projects requests at a fixed rate (open model)
+ * from a pool of client threads, and reports throughput and latency percentiles per operation.
+ *
+ * Requests are sent on schedule whether or not earlier ones have returned, and the response time is measured from
+ * the scheduled send time. A server that falls behind shows up as queueing delay in the percentiles instead of a
+ * lower request rate (no coordinated omission). The service time, from the actual send, is reported next to it.
+ *
+ * Project deadlines are spread from min-deadline after the warmup to the end of the run so auctions close, and
+ * AuctionCloser resolves the auto bids, while bids keep coming in. Bids go to projects that are still open.
+ *
+ * With --connections=N it runs the closed model instead: N connections each send one request after another (after
+ * an optional think time) for the whole run, and the response time is the service time. This is how the server's
+ * thread-per-request modes are compared at a given concurrency, e.g. 1000 to 50000 connections with
+ * --virtual-threads=false (Tomcat pool of --server-threads platform threads) and --virtual-threads=true (see
+ * TomcatVirtualThreadCustomizer, needs Java 21). The connections run on virtual threads too when the JDK has them.
+ *
+ * With --api=async the requests go to the /async endpoints (AsyncJobMarketplaceController) instead, to compare them
+ * with the blocking ones. Requests the server turns away with HTTP 503 (busy) are counted as failures.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec@load-test -Dloadtest.args="--rate=1000 --duration=60"
+ * Percentile distributions are written as HdrHistogram .hgrm files to the output dir (target/loadtest).
+ */
+public class LoadTest {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    enum Operation {
+        ADD_NEW_BID, GET_PROJECT_BY_ID, PROJECTS
+    }
+
+    /** latencies and outcome counts of one operation, in microseconds */
+    static class Stats {
+        final Histogram responseTime = new ConcurrentHistogram(3);
+        final Histogram serviceTime = new ConcurrentHistogram(3);
+        final AtomicLong errors = new AtomicLong();   //answered with an error message, e.g. bid after deadline
+        final AtomicLong failures = new AtomicLong(); //no answer or HTTP status other than 200
+        final ConcurrentMap<String, AtomicLong> messages = new ConcurrentHashMap<>(); //error and failure counts
+
+        void count(String message) {
+            messages.computeIfAbsent(message, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private final LoadTestOptions options;
+    private final ConfigurableApplicationContext context;
+    private final String baseUrl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    private long[] buyerIds;
+    private long[] projectIds;
+    private long[] projectMaxBudgets;
+    private long[] projectDeadlineMillis; //ascending
+
+    public LoadTest(LoadTestOptions options, ConfigurableApplicationContext context) {
+        this.options = options;
+        this.context = context;
+        this.baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        //keep-alive connections per host, the default of 5 would open a new connection for most requests
+        int maxConnections = Math.max(options.clients, options.connections);
+        System.setProperty("http.maxConnections", String.valueOf(maxConnections));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BackendTechAssessmentApplication.class)
+                .run("--server.port=0",
+                        "--server.tomcat.max-threads=" + Math.max(options.serverThreads, options.clients),
+                        "--server.tomcat.max-connections=" + Math.max(10000, maxConnections + 1000),
+                        "--server.tomcat.accept-count=" + Math.max(100, maxConnections),
+                        "--marketplace.virtual-threads.enabled=" + options.virtualThreads,
+                        "--spring.jpa.properties.hibernate.show_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--spring.devtools.livereload.enabled=false");
+        try {
+            new LoadTest(options, context).run();
+        } finally {
+            context.close();
+        }
+    }
+
+    public void run() throws Exception {
+        System.out.println("load test " + options + " against " + baseUrl);
+        if (options.virtualThreads && !context.getBean(TomcatVirtualThreadCustomizer.class).isEnabled()) {
+            System.out.println("no virtual threads on java " + System.getProperty("java.version")
+                    + ", the server runs on platform threads");
+        }
+        seed();
+        if (options.isClosedModel()) {
+            runClosed();
+        } else {
+            runOpen();
+        }
+    }
+
+    private void runOpen() throws Exception {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate;
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        ExecutorService clients = Executors.newFixedThreadPool(options.clients);
+        long sent = 0;
+        for (long intended = start; intended < end; intended = start + (++sent) * intervalNanos) {
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long scheduled = intended;
+            Operation operation = nextOperation();
+            clients.execute(() -> send(operation, scheduled, scheduled >= measureStart));
+        }
+        clients.shutdown();
+        if (!clients.awaitTermination(1, TimeUnit.MINUTES)) {
+            System.out.println("requests still running after 1 minute, stopping");
+            clients.shutdownNow();
+        }
+        long drainNanos = System.nanoTime() - end;
+        report(drainNanos);
+    }
+
+    /** each connection sends its next request when the previous one returned, until the end of the run */
+    private void runClosed() throws Exception {
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        //thousands of platform threads would measure the client's scheduling more than the server
+        ExecutorService clients = VirtualThreads.isSupported() ? VirtualThreads.newThreadPerTaskExecutor("load-client-")
+                : Executors.newFixedThreadPool(options.connections);
+        for (int i = 0; i < options.connections; i++) {
+            clients.execute(() -> {
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    send(nextOperation(), now, now >= measureStart);
+                    if (options.thinkTimeMillis > 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(options.thinkTimeMillis));
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        if (!clients.awaitTermination(options.warmupSeconds + options.durationSeconds + 60, TimeUnit.SECONDS)) {
+            System.out.println("requests still running 1 minute after the end, stopping");
+            clients.shutdownNow();
+        }
+        long drainNanos = System.nanoTime() - end;
+        report(drainNanos);
+    }
+
+    /** sellers and buyers through the service, projects through /create-project */
+    private void seed() throws IOException {
+        JobMarketplaceService service = context.getBean(JobMarketplaceService.class);
+        long[] sellerIds = new long[options.sellers];
+        for (int i = 0; i < sellerIds.length; i++) {
+            sellerIds[i] = service.addSeller("load test seller " + i).getId();
+        }
+        buyerIds = new long[options.buyers];
+        for (int i = 0; i < buyerIds.length; i++) {
+            buyerIds[i] = service.addBuyer("load test buyer " + i).getId();
+        }
+
+        projectIds = new long[options.projects];
+        projectMaxBudgets = new long[options.projects];
+        projectDeadlineMillis = new long[options.projects];
+        LocalDateTime firstDeadline = LocalDateTime.now()
+                .plusSeconds(options.warmupSeconds + options.minDeadlineSeconds);
+        long spreadMillis = TimeUnit.SECONDS.toMillis(Math.max(0, options.durationSeconds - options.minDeadlineSeconds));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < projectIds.length; i++) {
+            LocalDateTime deadline = firstDeadline.plusNanos(
+                    TimeUnit.MILLISECONDS.toNanos(spreadMillis * i / projectIds.length));
+            long maxBudget = 100 + random.nextLong(10000);
+            String json = get(RequestMappings.CREATE_PROJECT + "?sellerId=" + sellerIds[i % sellerIds.length]
+                    + "&description=load+test+project+" + i + "&maxBudget=" + maxBudget
+                    + "&bidDeadline=" + DATE_TIME_FORMATTER.format(deadline));
+            JsonNode result = objectMapper.readTree(json).get("result");
+            if (result == null) {
+                throw new IllegalStateException("create project failed: " + json);
+            }
+            projectIds[i] = result.get("id").asLong();
+            projectMaxBudgets[i] = maxBudget;
+            //the deadline is sent in whole seconds
+            projectDeadlineMillis[i] = deadline.withNano(0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        System.out.println("seeded " + sellerIds.length + " sellers, " + buyerIds.length + " buyers, "
+                + projectIds.length + " projects");
+    }
+
+    private Operation nextOperation() {
+        int dice = ThreadLocalRandom.current().nextInt(100);
+        if (dice < options.bidPercent) {
+            return Operation.ADD_NEW_BID;
+        }
+        return dice < options.bidPercent + options.getPercent ? Operation.GET_PROJECT_BY_ID : Operation.PROJECTS;
+    }
+
+    private String nextPath(Operation operation) {
+        String path = nextBlockingPath(operation);
+        return options.asyncApi ? RequestMappings.ASYNC + path : path;
+    }
+
+    private String nextBlockingPath(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case ADD_NEW_BID:
+                int index = nextOpenProject(random);
+                long amount = projectMaxBudgets[index] / 2 + random.nextLong(projectMaxBudgets[index]);
+                boolean autoBid = random.nextInt(100) < options.autoBidPercent;
+                long minAmount = autoBid ? amount - random.nextLong(amount / 2 + 1) : 0;
+                return RequestMappings.ADD_NEW_BID + "?amount=" + amount + "&projectId=" + projectIds[index]
+                        + "&buyerId=" + buyerIds[random.nextInt(buyerIds.length)] + "&autoBid=" + autoBid
+                        + "&minAmount=" + minAmount;
+            case GET_PROJECT_BY_ID:
+                return RequestMappings.GET_PROJECT_BY_ID + "?projectId=" + projectIds[random.nextInt(projectIds.length)];
+            default:
+                return RequestMappings.PROJECTS + "?status=open&limit=20";
+        }
+    }
+
+    /** index of a random project whose deadline is at least 1s away, or of any project if all are closed */
+    private int nextOpenProject(ThreadLocalRandom random) {
+        int first = Arrays.binarySearch(projectDeadlineMillis, System.currentTimeMillis() + 1000);
+        first = first >= 0 ? first + 1 : -first - 1;
+        if (first >= projectIds.length) {
+            return random.nextInt(projectIds.length);
+        }
+        return first + random.nextInt(projectIds.length - first);
+    }
+
+    private void send(Operation operation, long scheduledNanos, boolean measured) {
+        Stats operationStats = stats.get(operation);
+        long sendNanos = System.nanoTime();
+        try {
+            String json = get(nextPath(operation));
+            if (measured && json.startsWith("{\"errors\"")) {
+                operationStats.errors.incrementAndGet();
+                operationStats.count(json);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (measured) {
+                operationStats.failures.incrementAndGet();
+                operationStats.count(e.toString());
+            }
+        }
+        long endNanos = System.nanoTime();
+        if (measured) {
+            operationStats.responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(endNanos - scheduledNanos));
+            operationStats.serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(endNanos - sendNanos));
+        }
+    }
+
+    /** GET the path and return the body. The body is read to the end so the connection is kept alive. */
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setConnectTimeout(10000);
+        connection.setReadTimeout(60000);
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in != null) {
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    body.write(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        if (status != 200) {
+            throw new IOException("HTTP " + status + " for " + path);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void report(long drainNanos) throws IOException {
+        File outputDir = new File(options.outputDir);
+        outputDir.mkdirs();
+        System.out.println();
+        System.out.printf("%-18s %9s %9s %9s %10s %10s %10s %10s %10s %12s%n", "operation", "requests", "errors",
+                "failures", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms");
+        Histogram all = new Histogram(3);
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            Histogram responseTime = operationStats.responseTime;
+            all.add(responseTime);
+            printRow(entry.getKey().name(), responseTime, operationStats.errors.get(), operationStats.failures.get(),
+                    operationStats.serviceTime);
+            writeDistribution(new File(outputDir, entry.getKey().name().toLowerCase() + ".hgrm"), responseTime);
+        }
+        printRow("ALL", all, -1, -1, null);
+        writeDistribution(new File(outputDir, "all.hgrm"), all);
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            entry.getValue().messages.entrySet().stream()
+                    .sorted((a, b) -> Long.compare(b.getValue().get(), a.getValue().get()))
+                    .limit(5)
+                    .forEach(message -> System.out.printf("%-18s %9d  %s%n", entry.getKey().name(),
+                            message.getValue().get(), message.getKey()));
+        }
+
+        if (options.isClosedModel()) {
+            System.out.printf("%d connections, requests still in flight %.1f s after the end%n",
+                    options.connections, drainNanos / 1e9);
+        } else {
+            System.out.printf("offered %d req/s, requests still in flight %.1f s after the last was scheduled%n",
+                    options.rate, drainNanos / 1e9);
+        }
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        Timer closeLag = meterRegistry.find("marketplace.auction.close.lag").timer();
+        if (closeLag != null) {
+            System.out.printf("auctions closed: %d, close lag max %.1f ms%n", closeLag.count(),
+                    closeLag.max(TimeUnit.MILLISECONDS));
+        }
+        System.out.println("percentile distributions in " + outputDir.getAbsolutePath());
+    }
+
+    private void printRow(String name, Histogram responseTime, long errors, long failures, Histogram serviceTime) {
+        System.out.printf("%-18s %9d %9s %9s %10.1f %10.2f %10.2f %10.2f %10.2f %12s%n", name,
+                responseTime.getTotalCount(), errors < 0 ? "" : String.valueOf(errors),
+                failures < 0 ? "" : String.valueOf(failures),
+                responseTime.getTotalCount() / (double) options.durationSeconds,
+                responseTime.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                responseTime.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                responseTime.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                responseTime.getMaxValue() / MICROS_PER_MILLI,
+                serviceTime == null ? "" : String.format("%.2f", serviceTime.getValueAtPercentile(99) / MICROS_PER_MILLI));
+    }
+
+    private static void writeDistribution(File file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(file, "UTF-8")) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.intuit.cg.backendtechassessment.loadtest;
+
+/**
+ * Options of a LoadTest run, given as --name=value arguments. See usage() for the list.
+ */
+public class LoadTestOptions {
+    int durationSeconds = 60;     //measured part of the run
+    int warmupSeconds = 20;       //traffic before the measurement, not recorded (JIT, pools)
+    int rate = 500;               //requests per second over all operations (open model)
+    int clients = 64;             //threads sending requests, i.e. max. requests in flight
+    int connections = 0;          //> 0 for the closed model instead: connections each sending one request after another
+    int thinkTimeMillis = 0;      //closed model, pause of a connection between requests
+    boolean virtualThreads = false; //serve requests on virtual threads (marketplace.virtual-threads.enabled)
+    int serverThreads = 200;      //Tomcat platform thread pool size, when not on virtual threads
+    boolean asyncApi = false;     //send to the /async endpoints (AsyncJobMarketplaceController)
+    int bidPercent = 60;          //mix of operations, the rest of 100 goes to /projects
+    int getPercent = 30;
+    int autoBidPercent = 30;      //share of the bids that are auto bids
+    int sellers = 20;
+    int buyers = 200;
+    int projects = 200;
+    int minDeadlineSeconds = 5;   //first deadline after the warmup, the others are spread up to the end of the run
+    String outputDir = "target/loadtest";
+
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("expected --name=value but got " + arg + "\n" + usage());
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "duration": options.durationSeconds = Integer.parseInt(value); break;
+                case "warmup": options.warmupSeconds = Integer.parseInt(value); break;
+                case "rate": options.rate = Integer.parseInt(value); break;
+                case "clients": options.clients = Integer.parseInt(value); break;
+                case "connections": options.connections = Integer.parseInt(value); break;
+                case "think-time": options.thinkTimeMillis = Integer.parseInt(value); break;
+                case "virtual-threads": options.virtualThreads = Boolean.parseBoolean(value); break;
+                case "server-threads": options.serverThreads = Integer.parseInt(value); break;
+                case "api":
+                    if (!"blocking".equals(value) && !"async".equals(value)) {
+                        throw new IllegalArgumentException("api must be blocking or async");
+                    }
+                    options.asyncApi = "async".equals(value);
+                    break;
+                case "bid-percent": options.bidPercent = Integer.parseInt(value); break;
+                case "get-percent": options.getPercent = Integer.parseInt(value); break;
+                case "auto-bid-percent": options.autoBidPercent = Integer.parseInt(value); break;
+                case "sellers": options.sellers = Integer.parseInt(value); break;
+                case "buyers": options.buyers = Integer.parseInt(value); break;
+                case "projects": options.projects = Integer.parseInt(value); break;
+                case "min-deadline": options.minDeadlineSeconds = Integer.parseInt(value); break;
+                case "output": options.outputDir = value; break;
+                default: throw new IllegalArgumentException("unknown option " + name + "\n" + usage());
+            }
+        }
+        if (options.rate <= 0 || options.clients <= 0 || options.durationSeconds <= 0 || options.projects <= 0
+                || options.sellers <= 0 || options.buyers <= 0 || options.serverThreads <= 0) {
+            throw new IllegalArgumentException(
+                    "rate, clients, duration, projects, sellers, buyers, server-threads must be > 0");
+        }
+        if (options.connections < 0 || options.thinkTimeMillis < 0) {
+            throw new IllegalArgumentException("connections, think-time must be >= 0");
+        }
+        if (options.bidPercent < 0 || options.getPercent < 0 || options.bidPercent + options.getPercent > 100) {
+            throw new IllegalArgumentException("bid-percent + get-percent must be within 0..100");
+        }
+        return options;
+    }
+
+    /** true for the closed model, a fixed no. of connections instead of a fixed request rate */
+    public boolean isClosedModel() {
+        return connections > 0;
+    }
+
+    public static String usage() {
+        return "options (--name=value): duration, warmup (seconds), rate (requests/s), clients, connections, "
+                + "think-time (ms), virtual-threads (true|false), server-threads, api (blocking|async), "
+                + "bid-percent, get-percent, auto-bid-percent, sellers, buyers, projects, min-deadline (seconds), "
+                + "output (dir)";
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder().append("duration=").append(durationSeconds).append("s,warmup=")
+                .append(warmupSeconds).append("s");
+        if (isClosedModel()) {
+            builder.append(",connections=").append(connections).append(",thinkTime=").append(thinkTimeMillis)
+                    .append("ms");
+        } else {
+            builder.append(",rate=").append(rate).append("/s,clients=").append(clients);
+        }
+        return builder.append(",server=").append(virtualThreads ? "virtual threads" : serverThreads + " threads")
+                .append(",api=").append(asyncApi ? "async" : "blocking")
+                .append(",mix=bid:").append(bidPercent).append("/get:").append(getPercent).append("/projects:")
+                .append(100 - bidPercent - getPercent).append(",autoBidPercent=").append(autoBidPercent)
+                .append(",sellers=").append(sellers).append(",buyers=").append(buyers).append(",projects=")
+                .append(projects).append(",minDeadline=").append(minDeadlineSeconds).append("s")
+                .toString();
+    }
+}
@@ -0,0 +1,255 @@
+package com.intuit.cg.backendtechassessment.analytics;
+
+import com.intuit.cg.backendtechassessment.event.BidAcceptedEvent;
+import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.BidStats;
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copy of the bid table in primitive columns, for scans over all bids such as the amounts per project or buyer
+ * (/bid-stats) without loading Bid entities. Row i of every column is the i-th bid added:
+ *
+ *    amounts, minAmounts   long[]
+ *    bidTimes              long[], epoch millis in the default time zone
+ *    autoBids              BitSet
+ *    projects, buyers      int[] of dictionary codes, the code is the index of the id in the dictionary's keys
+ *
+ * A bid takes about 32 bytes instead of the few hundred of a Bid with its LocalDateTime. The ids are dictionary
+ * encoded, so a group by is a counted loop over the columns that updates the arrays indexed by the code, with no
+ * hashing or boxing per row.
+ *
+ * Loaded from the bid table before the web server takes requests and kept up to date from the BidAcceptedEvent after
+ * commit. Bids are never updated or removed, except for winningBid which is not copied.
+ */
+@Component
+public class BidColumns {
+    private static Logger log = LoggerFactory.getLogger(BidColumns.class);
+    private static final int INITIAL_CAPACITY = 1024;
+
+    public enum GroupBy {
+        PROJECT,
+        BUYER
+    }
+
+    private final JobMarketplaceService jobMarketplaceService;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //columns, guarded by lock
+    private int size;
+    private long[] amounts;
+    private long[] minAmounts;
+    private long[] bidTimes;
+    private BitSet autoBids;
+    private Dictionary projects;
+    private Dictionary buyers;
+
+    public BidColumns(JobMarketplaceService jobMarketplaceService, MeterRegistry meterRegistry) {
+        assert(jobMarketplaceService != null);
+        assert(meterRegistry != null);
+        this.jobMarketplaceService = jobMarketplaceService;
+        clear();
+        Gauge.builder("marketplace.analytics.bids", this, BidColumns::size)
+                .description("bids in the columnar analytics store").register(meterRegistry);
+    }
+
+    /** load the bids from the bid table, runs before the web server takes requests */
+    @EventListener(ContextRefreshedEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            clear();
+            jobMarketplaceService.forEachBid(this::append);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("load() {} bids in {} ms, {} KB", size(), System.currentTimeMillis() - start,
+                getMemoryBytes() / 1024);
+    }
+
+    @TransactionalEventListener
+    public void onBidAccepted(BidAcceptedEvent event) {
+        lock.writeLock().lock();
+        try {
+            append(event.getBid());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** no. of bids */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** approximate heap use of the columns and dictionaries */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            return amounts.length * 3L * Long.BYTES + autoBids.size() / Byte.SIZE
+                    + projects.getMemoryBytes() + buyers.getMemoryBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * the amounts of the bids with from <= bidDate < to, by project or buyer in id order. Projects or buyers without
+     * such bids are left out.
+     *
+     * @param id only this project or buyer, ignored if < 0
+     * @param from ignored if null
+     * @param to ignored if null
+     */
+    public List<BidStats> statsBy(GroupBy groupBy, long id, LocalDateTime from, LocalDateTime to) {
+        long fromMillis = from == null ? Long.MIN_VALUE : toEpochMillis(from);
+        long toMillis = to == null ? Long.MAX_VALUE : toEpochMillis(to);
+        lock.readLock().lock();
+        try {
+            Dictionary dictionary = groupBy == GroupBy.PROJECT ? projects : buyers;
+            int only = -1; //scan a single code, or all
+            if (id >= 0) {
+                Integer code = dictionary.codes.get(id);
+                if (code == null) {
+                    return new ArrayList<>();
+                }
+                only = code;
+            }
+            int groups = dictionary.keyCount;
+            long[] counts = new long[groups];
+            long[] sums = new long[groups];
+            long[] lowest = new long[groups];
+            long[] highest = new long[groups];
+            Arrays.fill(lowest, Long.MAX_VALUE);
+            Arrays.fill(highest, Long.MIN_VALUE);
+            int[] codes = dictionary.rows;
+            for (int i = 0; i < size; i++) {
+                int code = codes[i];
+                long bidTime = bidTimes[i];
+                if ((only >= 0 && code != only) || bidTime < fromMillis || bidTime >= toMillis) {
+                    continue;
+                }
+                long amount = amounts[i];
+                counts[code]++;
+                sums[code] += amount;
+                lowest[code] = Math.min(lowest[code], amount);
+                highest[code] = Math.max(highest[code], amount);
+            }
+            long[] autoCounts = new long[groups];
+            long[] autoLimits = new long[groups];
+            Arrays.fill(autoLimits, Project.DEFAULT_MIN_BID);
+            for (int i = autoBids.nextSetBit(0); i >= 0 && i < size; i = autoBids.nextSetBit(i + 1)) {
+                int code = codes[i];
+                long bidTime = bidTimes[i];
+                if ((only >= 0 && code != only) || bidTime < fromMillis || bidTime >= toMillis) {
+                    continue;
+                }
+                autoCounts[code]++;
+                autoLimits[code] = Math.min(autoLimits[code], minAmounts[i]);
+            }
+
+            List<BidStats> stats = new ArrayList<>();
+            for (int code = 0; code < groups; code++) {
+                if (counts[code] > 0) {
+                    stats.add(new BidStats(dictionary.keys[code], counts[code], autoCounts[code], lowest[code],
+                            highest[code], sums[code], autoLimits[code]));
+                }
+            }
+            stats.sort(Comparator.comparingLong(BidStats::getId));
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    //callers hold the write lock
+    private void clear() {
+        size = 0;
+        amounts = new long[INITIAL_CAPACITY];
+        minAmounts = new long[INITIAL_CAPACITY];
+        bidTimes = new long[INITIAL_CAPACITY];
+        autoBids = new BitSet(INITIAL_CAPACITY);
+        projects = new Dictionary(INITIAL_CAPACITY);
+        buyers = new Dictionary(INITIAL_CAPACITY);
+    }
+
+    private void append(Bid bid) {
+        if (size == amounts.length) {
+            int capacity = size + (size >> 1);
+            amounts = Arrays.copyOf(amounts, capacity);
+            minAmounts = Arrays.copyOf(minAmounts, capacity);
+            bidTimes = Arrays.copyOf(bidTimes, capacity);
+            projects.grow(capacity);
+            buyers.grow(capacity);
+        }
+        amounts[size] = bid.getAmount();
+        minAmounts[size] = bid.getMinAmount();
+        bidTimes[size] = toEpochMillis(bid.getBidDate());
+        autoBids.set(size, bid.isAutoBid());
+        projects.append(size, bid.getProjectId());
+        buyers.append(size, bid.getBuyerId());
+        size++;
+    }
+
+    /** dictionary encoded id column, the code of an id is the index of the id in keys */
+    private static class Dictionary {
+        final Map<Long, Integer> codes = new HashMap<>();
+        long[] keys = new long[16];
+        int keyCount;
+        int[] rows;
+
+        Dictionary(int capacity) {
+            rows = new int[capacity];
+        }
+
+        void grow(int capacity) {
+            rows = Arrays.copyOf(rows, capacity);
+        }
+
+        void append(int row, long key) {
+            Integer code = codes.get(key);
+            if (code == null) {
+                if (keyCount == keys.length) {
+                    keys = Arrays.copyOf(keys, keyCount * 2);
+                }
+                code = keyCount;
+                keys[keyCount++] = key;
+                codes.put(key, code);
+            }
+            rows[row] = code;
+        }
+
+        long getMemoryBytes() {
+            //keys, rows and about 64 bytes per HashMap entry with its boxed key and value
+            return keys.length * (long) Long.BYTES + rows.length * (long) Integer.BYTES + keyCount * 64L;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.intuit.cg.backendtechassessment.analytics;
+
+import com.intuit.cg.backendtechassessment.datasource.ReplicaRoutingDataSource;
+import com.intuit.cg.backendtechassessment.event.ProjectFinalizedEvent;
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.ProjectView;
+import com.intuit.cg.backendtechassessment.models.SuggestedBid;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of the winning minimum bid relative to the project's maxBudget, over every project finalized with a
+ * minimum (MINIMUM_FOUND or MINIMUM_TOO_HIGH), for the /suggested-bid percentile bands. Kept in a QuantileSketch with
+ * 1% relative accuracy and at most MAX_BUCKETS buckets (16 KB) for any no. of projects, so a suggestion is a walk
+ * over the buckets instead of a scan of the projects.
+ *
+ * Updated from the ProjectFinalizedEvent after commit, a recomputed result takes the place of the previous one. On
+ * startup the sketch is read from marketplace.sketch.path if set and the file exists, otherwise it is built from the
+ * finalized projects. With a path, the sketch is written every marketplace.sketch.interval-seconds and on shutdown.
+ * The file holds the no. of finalized projects and their greatest id, then the sketch in QuantileSketch's format, so
+ * the files of several nodes can be merged (see merge()). A file whose count or id does not match the database, e.g.
+ * one written before a restore or cut off before the last events, is not trusted and the sketch is rebuilt.
+ */
+@Component
+public class BidPriceSketch {
+    private static Logger log = LoggerFactory.getLogger(BidPriceSketch.class);
+    private static final long MAGIC = 0x4d4b54534b544332L; //"MKTSKTC2"
+    public static final double RELATIVE_ACCURACY = 0.01;
+    public static final int MAX_BUCKETS = 2048;
+    public static final int[] PERCENTILES = {10, 25, 50, 75, 90};
+    private static final int PAGE_SIZE = 1000; //projects per read when building the sketch
+
+    private final JobMarketplaceService jobMarketplaceService;
+    private final Path path;          //null if not persisted
+    private final long intervalSeconds;
+    private QuantileSketch sketch = new QuantileSketch(RELATIVE_ACCURACY, MAX_BUCKETS); //guarded by this
+    private long closedCount; //finalized projects seen, with a minimum or not, guarded by this
+    private long maxClosedId; //greatest id among them, guarded by this
+    private ScheduledExecutorService scheduler;
+
+    public BidPriceSketch(JobMarketplaceService jobMarketplaceService,
+                          @Value("${marketplace.sketch.path:}") String path,
+                          @Value("${marketplace.sketch.interval-seconds:60}") long intervalSeconds) {
+        assert(jobMarketplaceService != null);
+        this.jobMarketplaceService = jobMarketplaceService;
+        this.path = path.isEmpty() ? null : Paths.get(path);
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /** read or build the sketch. runs before AuctionCloser starts, so no project is finalized meanwhile */
+    @EventListener(ContextRefreshedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void load() {
+        if (path == null || !Files.exists(path) || !read()) {
+            rebuild();
+        }
+        if (path != null && scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sketch-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    save();
+                } catch (IOException | RuntimeException e) {
+                    log.error("save() failed", e);
+                }
+            }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * returns false if the file cannot be read, e.g. cut short by a crash, or if it was not written for the finalized
+     * projects in the database, e.g. a file from before a restore or from another database
+     */
+    private boolean read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readLong() != MAGIC) {
+                throw new IOException("not a bid price sketch");
+            }
+            long fileClosedCount = in.readLong();
+            long fileMaxClosedId = in.readLong();
+            long dbClosedCount = ReplicaRoutingDataSource.onPrimary(this::countClosed);
+            long dbMaxClosedId = ReplicaRoutingDataSource.onPrimary(jobMarketplaceService::getMaxClosedProjectId);
+            if (fileClosedCount != dbClosedCount || fileMaxClosedId != dbMaxClosedId) {
+                log.warn("read() {} is for {} finalized projects up to id {}, the database has {} up to id {}, " +
+                        "rebuild the sketch", path, fileClosedCount, fileMaxClosedId, dbClosedCount, dbMaxClosedId);
+                return false;
+            }
+            sketch = QuantileSketch.readFrom(in);
+            closedCount = fileClosedCount;
+            maxClosedId = fileMaxClosedId;
+            log.info("read() {} from {}", sketch, path);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("read() {} failed, rebuild the sketch: {}", path, e.toString());
+            return false;
+        }
+    }
+
+    private long countClosed() {
+        long count = 0;
+        for (Map.Entry<Project.BidStatus, Long> entry : jobMarketplaceService.getProjectCountsByStatus().entrySet()) {
+            if (entry.getKey() != Project.BidStatus.NONE) {
+                count += entry.getValue();
+            }
+        }
+        return count;
+    }
+
+    /** builds the sketch from the finalized projects on the primary, a replica may be behind the watermark */
+    public synchronized void rebuild() {
+        sketch = new QuantileSketch(RELATIVE_ACCURACY, MAX_BUCKETS);
+        closedCount = 0;
+        long after = 0;
+        List<ProjectView> page;
+        do {
+            long pageAfter = after;
+            page = ReplicaRoutingDataSource.onPrimary(() ->
+                    jobMarketplaceService.getProjects(-1, false, null, null, pageAfter, PAGE_SIZE));
+            for (ProjectView project : page) {
+                add(project.getBidStatus(), project.getMinBid(), project.getMaxBudget());
+                closedCount++;
+                after = project.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+        maxClosedId = after;
+        log.info("rebuild() {}", sketch);
+    }
+
+    @TransactionalEventListener
+    public void onProjectFinalized(ProjectFinalizedEvent event) {
+        Project project = event.getProject();
+        if (event.isRecomputed()) {
+            ProjectView previous = event.getPrevious();
+            remove(previous.getBidStatus(), previous.getMinBid(), previous.getMaxBudget());
+        } else {
+            closed(project.getId());
+        }
+        add(project.getBidStatus(), project.getMinBid(), project.getMaxBudget());
+    }
+
+    private synchronized void add(Project.BidStatus bidStatus, long minBid, long maxBudget) {
+        if ((bidStatus == Project.BidStatus.MINIMUM_FOUND || bidStatus == Project.BidStatus.MINIMUM_TOO_HIGH)
+                && maxBudget > 0) {
+            sketch.add((double) minBid / maxBudget);
+        }
+    }
+
+    /** a status never goes back to NONE, so the count and max id only change when a project is first finalized */
+    private synchronized void closed(long id) {
+        closedCount++;
+        maxClosedId = Math.max(maxClosedId, id);
+    }
+
+    private synchronized void remove(Project.BidStatus bidStatus, long minBid, long maxBudget) {
+        if ((bidStatus == Project.BidStatus.MINIMUM_FOUND || bidStatus == Project.BidStatus.MINIMUM_TOO_HIGH)
+                && maxBudget > 0) {
+            sketch.remove((double) minBid / maxBudget);
+        }
+    }
+
+    /** adds the counts of another node's sketch */
+    public synchronized void merge(QuantileSketch other) {
+        sketch.merge(other);
+    }
+
+    /**
+     * percentile bands of minimum bid / maxBudget, with the amounts for maxBudget if it is >= 0
+     *
+     * @return null if no project was finalized with a minimum yet
+     */
+    public synchronized SuggestedBid suggest(long maxBudget) {
+        if (sketch.getCount() == 0) {
+            return null;
+        }
+        List<SuggestedBid.Band> bands = new ArrayList<>(PERCENTILES.length);
+        for (int percentile : PERCENTILES) {
+            double ratio = sketch.quantile(percentile / 100.0);
+            bands.add(new SuggestedBid.Band(percentile, ratio, maxBudget < 0 ? null : Math.round(ratio * maxBudget)));
+        }
+        return new SuggestedBid(sketch.getCount(), maxBudget < 0 ? null : maxBudget, bands);
+    }
+
+    /** writes the sketch to marketplace.sketch.path, replacing the file at once */
+    public void save() throws IOException {
+        if (path == null) {
+            return;
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeLong(MAGIC);
+            synchronized (this) {
+                out.writeLong(closedCount);
+                out.writeLong(maxClosedId);
+                sketch.writeTo(out);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            save();
+        }
+    }
+}
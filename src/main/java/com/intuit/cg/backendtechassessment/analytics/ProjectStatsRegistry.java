@@ -0,0 +1,92 @@
+package com.intuit.cg.backendtechassessment.analytics;
+
+import com.intuit.cg.backendtechassessment.event.BidAcceptedEvent;
+import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.ProjectBidStats;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bid statistics per project (count, distinct buyers, fixed and auto counts, lowest and average amount, last bid
+ * date) for /project-stats. Each accepted bid updates its project's running totals in O(1), so the stats are served
+ * without reading the bid table.
+ *
+ * Loaded from the bid table before the web server takes requests and kept up to date from the BidAcceptedEvent after
+ * commit. The stats of finalized projects are kept.
+ */
+@Component
+public class ProjectStatsRegistry {
+    private static Logger log = LoggerFactory.getLogger(ProjectStatsRegistry.class);
+
+    private final JobMarketplaceService jobMarketplaceService;
+    private final ConcurrentMap<Long, Totals> totals = new ConcurrentHashMap<>();
+
+    public ProjectStatsRegistry(JobMarketplaceService jobMarketplaceService) {
+        assert(jobMarketplaceService != null);
+        this.jobMarketplaceService = jobMarketplaceService;
+    }
+
+    /** load the stats from the bid table, runs before the web server takes requests */
+    @EventListener(ContextRefreshedEvent.class)
+    public void load() {
+        totals.clear();
+        jobMarketplaceService.forEachBid(this::add);
+        log.info("load() stats of {} projects", totals.size());
+    }
+
+    @TransactionalEventListener
+    public void onBidAccepted(BidAcceptedEvent event) {
+        add(event.getBid());
+    }
+
+    private void add(Bid bid) {
+        totals.computeIfAbsent(bid.getProjectId(), id -> new Totals()).add(bid);
+    }
+
+    /** returns the stats of the project, with counts of 0 if it has no bid (or does not exist) */
+    public ProjectBidStats get(long projectId) {
+        Totals projectTotals = totals.get(projectId);
+        return projectTotals == null ? new ProjectBidStats(projectId, 0, 0, 0, 0, null, 0, null)
+                : projectTotals.toStats(projectId);
+    }
+
+    /** running totals of a project's bids */
+    private static class Totals {
+        long bidCount;
+        long autoCount;
+        long sumAmount;
+        long lowestAmount = Long.MAX_VALUE;
+        LocalDateTime lastBidDate;
+        final Set<Long> buyerIds = new HashSet<>();
+
+        synchronized void add(Bid bid) {
+            bidCount++;
+            if (bid.isAutoBid()) {
+                autoCount++;
+            }
+            sumAmount += bid.getAmount();
+            lowestAmount = Math.min(lowestAmount, bid.getAmount());
+            //the latest, a batch of bids may commit after a bid stamped later
+            if (lastBidDate == null || bid.getBidDate().compareTo(lastBidDate) > 0) {
+                lastBidDate = bid.getBidDate();
+            }
+            buyerIds.add(bid.getBuyerId());
+        }
+
+        synchronized ProjectBidStats toStats(long projectId) {
+            return new ProjectBidStats(projectId, bidCount, buyerIds.size(), bidCount - autoCount, autoCount,
+                    lowestAmount, (double) sumAmount / bidCount, lastBidDate);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.intuit.cg.backendtechassessment.analytics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Streaming quantile sketch of non-negative values with a relative error bound (DDSketch). A value v > 0 is counted
+ * in bucket ceil(log(v) / log(gamma)) with gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy), so every value in
+ * a bucket is within relativeAccuracy of the bucket's value. Values below MIN_VALUE are counted as 0.
+ *
+ * The counts are kept in a dense array over the range of bucket indexes in use. At most maxBuckets are kept, beyond
+ * that the lowest buckets are collapsed into one, which only affects the accuracy of the lowest quantiles. Two
+ * sketches with the same relativeAccuracy merge by adding their counts, so merging the sketches of several nodes
+ * gives the sketch of all their values.
+ *
+ * Not thread safe.
+ */
+public class QuantileSketch {
+    public static final double MIN_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final int maxBuckets;
+    private final double gamma;
+    private final double logGamma;
+    private long zeroCount;
+    private long count;
+    private long[] counts = new long[0]; //counts[i] is the count of bucket offset + i
+    private int offset;
+
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be within (0, 1)");
+        }
+        if (maxBuckets < 2) {
+            throw new IllegalArgumentException("maxBuckets must be >= 2");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBuckets = maxBuckets;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** no. of buckets in use, the memory is about 8 bytes per bucket */
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, long n) {
+        if (value < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("value must be a non-negative number");
+        }
+        if (value < MIN_VALUE) {
+            zeroCount += n;
+        } else {
+            addToBucket((int) Math.ceil(Math.log(value) / logGamma), n);
+        }
+        count += n;
+    }
+
+    /**
+     * takes back a value that was added, e.g. a result that was recomputed. A value in a collapsed bucket is taken from
+     * the lowest bucket.
+     *
+     * @return false if no value is counted in the value's bucket
+     */
+    public boolean remove(double value) {
+        if (value < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("value must be a non-negative number");
+        }
+        if (value < MIN_VALUE) {
+            if (zeroCount == 0) {
+                return false;
+            }
+            zeroCount--;
+        } else {
+            int index = Math.max((int) Math.ceil(Math.log(value) / logGamma), offset);
+            if (index - offset >= counts.length || counts[index - offset] == 0) {
+                return false;
+            }
+            counts[index - offset]--;
+        }
+        count--;
+        return true;
+    }
+
+    /** adds the counts of other, which must have the same relativeAccuracy */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("cannot merge sketches of different relativeAccuracy");
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) {
+                addToBucket(other.offset + i, other.counts[i]);
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    /**
+     * returns the value at quantile q (0 to 1), within relativeAccuracy of the exact one unless lower buckets were
+     * collapsed.
+     *
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("quantile must be within 0..1");
+        }
+        if (count == 0) {
+            throw new IllegalStateException("empty sketch");
+        }
+        long rank = (long) (q * (count - 1)); //0 based rank of the value
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+            }
+        }
+        return 2 * Math.pow(gamma, offset + counts.length - 1) / (gamma + 1);
+    }
+
+    private void addToBucket(int index, long n) {
+        if (counts.length == 0) {
+            counts = new long[1];
+            offset = index;
+        } else if (index < offset) {
+            int grow = offset - index;
+            if (counts.length + grow > maxBuckets) {
+                //below the range that is kept, counts in the lowest bucket
+                index = Math.max(index, offset + counts.length - maxBuckets);
+                grow = offset - index;
+            }
+            if (grow > 0) {
+                long[] grown = new long[counts.length + grow];
+                System.arraycopy(counts, 0, grown, grow, counts.length);
+                counts = grown;
+                offset = index;
+            }
+        } else if (index >= offset + counts.length) {
+            counts = Arrays.copyOf(counts, index - offset + 1);
+            if (counts.length > maxBuckets) {
+                collapseLowest(counts.length - maxBuckets);
+            }
+        }
+        counts[index - offset] += n;
+    }
+
+    /** moves the counts of the lowest buckets into the bucket above them */
+    private void collapseLowest(int buckets) {
+        long collapsed = 0;
+        for (int i = 0; i < buckets; i++) {
+            collapsed += counts[i];
+        }
+        counts = Arrays.copyOfRange(counts, buckets, counts.length);
+        counts[0] += collapsed;
+        offset += buckets;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeDouble(relativeAccuracy);
+        out.writeInt(maxBuckets);
+        out.writeLong(zeroCount);
+        out.writeInt(offset);
+        out.writeInt(counts.length);
+        for (long bucketCount : counts) {
+            out.writeLong(bucketCount);
+        }
+    }
+
+    public static QuantileSketch readFrom(DataInput in) throws IOException {
+        QuantileSketch sketch = new QuantileSketch(in.readDouble(), in.readInt());
+        sketch.zeroCount = in.readLong();
+        if (sketch.zeroCount < 0) {
+            throw new IOException("bad zero count " + sketch.zeroCount);
+        }
+        sketch.count = sketch.zeroCount;
+        sketch.offset = in.readInt();
+        int buckets = in.readInt();
+        if (buckets < 0 || buckets > sketch.maxBuckets) {
+            throw new IOException("bad no. of buckets " + buckets);
+        }
+        sketch.counts = new long[buckets];
+        for (int i = 0; i < buckets; i++) {
+            sketch.counts[i] = in.readLong();
+            if (sketch.counts[i] < 0) {
+                throw new IOException("bad count " + sketch.counts[i] + " in bucket " + i);
+            }
+            sketch.count += sketch.counts[i];
+        }
+        return sketch;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("QuantileSketch{relativeAccuracy=").append(relativeAccuracy)
+                .append(",count=").append(count).append(",buckets=").append(counts.length).append("}").toString();
+    }
+}
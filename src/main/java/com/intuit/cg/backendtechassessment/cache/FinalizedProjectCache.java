@@ -0,0 +1,191 @@
+package com.intuit.cg.backendtechassessment.cache;
+
+import com.intuit.cg.backendtechassessment.event.ProjectFinalizedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized JSON responses of finalized projects (bidStatus other than NONE) by project id. The result of a
+ * finalized project only changes when ProjectResolver recomputes it, so a cached response is dropped on that
+ * ProjectFinalizedEvent and otherwise never goes stale. A lookup is a hash lookup plus a copy of the bytes to the
+ * response. The ETag of the response is kept with it, so a conditional GET is answered without the database.
+ *
+ * The cache is only correct as long as every change of a finalized project publishes a recomputed
+ * ProjectFinalizedEvent, as JobMarketplaceService.storeResults() does for each result it stores. Code that updates a
+ * finalized project without it leaves the old response, and its ETag, in the cache.
+ *
+ * A request that read the project before the recomputed result was stored may put its response after the event
+ * dropped the entry. So each response is put with the version of the row it was read from, the event keeps the new
+ * version of the project, and a put of an older version is ignored. The versions are kept for the last maxEntries
+ * dropped projects, far longer than a request that read the row before the event takes to put its response.
+ *
+ * The cache is bounded both by no. of entries and by bytes, and evicts the least recently used entries first.
+ * Hits, misses and evictions are counted in the "marketplace.cache.finalized.*" meters.
+ */
+@Component
+public class FinalizedProjectCache {
+    private static Logger log = LoggerFactory.getLogger(FinalizedProjectCache.class);
+    private static final int ENTRY_OVERHEAD_BYTES = 64; //rough size of the map entry, key and array header
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Long, Long> droppedVersions = new LinkedHashMap<>(); //projectId to the version
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public FinalizedProjectCache(@Value("${marketplace.cache.finalized.max-entries:10000}") int maxEntries,
+                                 @Value("${marketplace.cache.finalized.max-bytes:16777216}") long maxBytes,
+                                 MeterRegistry meterRegistry) {
+        assert(meterRegistry != null);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        FunctionCounter.builder("marketplace.cache.finalized.hits", hits, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("marketplace.cache.finalized.misses", misses, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("marketplace.cache.finalized.evictions", evictions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("marketplace.cache.finalized.size", this, FinalizedProjectCache::size).register(meterRegistry);
+        Gauge.builder("marketplace.cache.finalized.bytes", this, FinalizedProjectCache::getBytes).register(meterRegistry);
+    }
+
+    /** a cached response */
+    public static final class Entry {
+        private final byte[] json;
+        private final String eTag;
+        private final long version;
+
+        Entry(byte[] json, String eTag, long version) {
+            this.json = json;
+            this.eTag = eTag;
+            this.version = version;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        /** ETag of the response */
+        public String getETag() {
+            return eTag;
+        }
+
+        /** version of the project row the response was made from */
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /** returns the cached response of the project or null */
+    public synchronized Entry getEntry(long projectId) {
+        Entry entry = entries.get(projectId);
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * cache the JSON of a finalized project with its ETag and the version of the row it was made from. A response
+     * larger than the whole cache, or older than the cached one or than the result that dropped the project, is not
+     * cached.
+     */
+    public synchronized void put(long projectId, byte[] json, String eTag, long version) {
+        long weight = weigh(json);
+        if (weight > maxBytes) {
+            log.info("put() projectId={} {} bytes too large to cache", projectId, json.length);
+            return;
+        }
+        Long droppedVersion = droppedVersions.get(projectId);
+        Entry current = entries.get(projectId);
+        if ((droppedVersion != null && version < droppedVersion) || (current != null && version < current.version)) {
+            log.info("put() projectId={} version {} is stale, not cached", projectId, version);
+            return;
+        }
+        Entry previous = entries.put(projectId, new Entry(json, eTag, version));
+        if (previous != null) {
+            bytes -= weigh(previous.getJson());
+        }
+        bytes += weight;
+
+        Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            Map.Entry<Long, Entry> entry = eldest.next();
+            bytes -= weigh(entry.getValue().getJson());
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /** drop the project, e.g. when its stored result was recomputed */
+    public synchronized void invalidate(long projectId) {
+        Entry previous = entries.remove(projectId);
+        if (previous != null) {
+            bytes -= weigh(previous.getJson());
+        }
+    }
+
+    /** drop the project and ignore later puts of a version before the given one */
+    public synchronized void invalidate(long projectId, long version) {
+        invalidate(projectId);
+        droppedVersions.remove(projectId);
+        droppedVersions.put(projectId, version);
+        Iterator<Long> eldest = droppedVersions.values().iterator();
+        while (droppedVersions.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /** runs after commit, by then the project holds the version of the stored result */
+    @TransactionalEventListener
+    public void onProjectFinalized(ProjectFinalizedEvent event) {
+        if (event.isRecomputed()) {
+            invalidate(event.getProject().getId(), event.getProject().getVersion());
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        droppedVersions.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static long weigh(byte[] json) {
+        return json.length + ENTRY_OVERHEAD_BYTES;
+    }
+}
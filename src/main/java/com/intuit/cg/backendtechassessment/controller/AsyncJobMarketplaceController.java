@@ -0,0 +1,137 @@
+package com.intuit.cg.backendtechassessment.controller;
+
+import com.intuit.cg.backendtechassessment.controller.requestmappings.RequestMappings;
+import com.intuit.cg.backendtechassessment.models.BidRequest;
+import com.intuit.cg.backendtechassessment.models.ErrorMessage;
+import com.intuit.cg.backendtechassessment.web.AsyncRequestExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking variant of the bid and project endpoints under /async, e.g. /async/add-new-bid. The Tomcat thread
+ * returns as soon as the call is queued on AsyncRequestExecutor (servlet async), so a flood of bids does not take one
+ * Tomcat thread per request. When the executor's queue is full the request is answered at once with HTTP 503 and a
+ * Retry-After header, which is the backpressure to the clients while the database falls behind. A call that waited
+ * too long in the queue, or whose request timed out before it ran, is not run and answered the same way.
+ *
+ * Each call runs the same JobMarketplaceController method as the blocking endpoint, so the param checks, the bidding
+ * rules of JobMarketplaceService, the responses and the metrics are the same on both.
+ */
+@RestController
+@RequestMapping(RequestMappings.ASYNC)
+public class AsyncJobMarketplaceController {
+    private static Logger log = LoggerFactory.getLogger(AsyncJobMarketplaceController.class);
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private JobMarketplaceController jobMarketplaceController;
+    private AsyncRequestExecutor asyncRequestExecutor;
+
+    public AsyncJobMarketplaceController(JobMarketplaceController jobMarketplaceController,
+                                         AsyncRequestExecutor asyncRequestExecutor) {
+        assert(jobMarketplaceController != null);
+        assert(asyncRequestExecutor != null);
+        this.jobMarketplaceController = jobMarketplaceController;
+        this.asyncRequestExecutor = asyncRequestExecutor;
+    }
+
+    @RequestMapping(value = RequestMappings.PROJECTS, produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Object>> getProjects(
+            @RequestParam(value="sellerId", defaultValue="-1") long sellerId,
+            @RequestParam(value="status", defaultValue="") String status,
+            @RequestParam(value="deadlineFrom", defaultValue="") String deadlineFrom,
+            @RequestParam(value="deadlineTo", defaultValue="") String deadlineTo,
+            @RequestParam(value="after", defaultValue="0") long after,
+            @RequestParam(value="limit", defaultValue="" + JobMarketplaceController.DEFAULT_PAGE_LIMIT) int limit,
+            @RequestHeader(value=HttpHeaders.IF_NONE_MATCH, defaultValue="") String ifNoneMatch) {
+        return submit(RequestMappings.PROJECTS, () -> jobMarketplaceController.getProjects(
+                sellerId, status, deadlineFrom, deadlineTo, after, limit, ifNoneMatch));
+    }
+
+    @RequestMapping(value = RequestMappings.GET_PROJECT_BY_ID, produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Object>> getProjectById(
+            @RequestParam(value="projectId", defaultValue="-1") long projectId,
+            @RequestHeader(value=HttpHeaders.IF_NONE_MATCH, defaultValue="") String ifNoneMatch) {
+        return submit(RequestMappings.GET_PROJECT_BY_ID, () -> jobMarketplaceController.getProjectById(projectId,
+                ifNoneMatch));
+    }
+
+    @RequestMapping(value = RequestMappings.ADD_NEW_BID, produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Object>> addNewBid(
+            @RequestParam(value="amount", defaultValue="-1") long amount,
+            @RequestParam(value="projectId", defaultValue="-1") long projectId,
+            @RequestParam(value="buyerId", defaultValue="-1") long buyerId,
+            @RequestParam(value="autoBid", defaultValue="false") boolean autoBid,
+            @RequestParam(value="minAmount", defaultValue="-1") long minAmount) {
+        return submit(RequestMappings.ADD_NEW_BID, () -> jobMarketplaceController.addNewBid(
+                amount, projectId, buyerId, autoBid, minAmount));
+    }
+
+    @RequestMapping(value = RequestMappings.ADD_NEW_BIDS, method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Object>> addNewBids(@RequestBody List<BidRequest> requests) {
+        return submit(RequestMappings.ADD_NEW_BIDS, () -> jobMarketplaceController.addNewBids(requests));
+    }
+
+    /**
+     * queues the call and answers with its result. On the request timeout (spring.mvc.async.request-timeout) a call
+     * that has not started is cancelled, so it does not run and commit after the client gave up and maybe retried. A
+     * call that has started is left to finish, and the client is not told to retry
+     */
+    private DeferredResult<ResponseEntity<Object>> submit(String endpoint, Supplier<ResponseEntity<Object>> supplier) {
+        DeferredResult<ResponseEntity<Object>> deferred = new DeferredResult<>();
+        AsyncRequestExecutor.Call<ResponseEntity<Object>> call;
+        try {
+            call = asyncRequestExecutor.submit(supplier);
+        } catch (RejectedExecutionException e) {
+            log.info("submit() {} rejected, {} calls queued", endpoint, asyncRequestExecutor.getQueueSize());
+            deferred.setResult(serviceUnavailable("server busy, retry later", true));
+            return deferred;
+        }
+        deferred.onTimeout(() -> {
+            //a call that already started may still commit, the client is told so instead of to retry
+            boolean cancelled = call.cancel();
+            log.info("submit() {} timed out, {}", endpoint, cancelled ? "cancelled in the queue" : "still running");
+            deferred.setResult(cancelled ? serviceUnavailable("request timed out before it ran, retry later", true)
+                    : serviceUnavailable("request timed out while it ran, it may still complete", false));
+        });
+        call.getFuture().whenComplete((response, e) -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause == null) {
+                deferred.setResult(response);
+            } else
+            if (cause instanceof RejectedExecutionException) {
+                log.info("submit() {} not run, {}", endpoint, cause.getMessage());
+                deferred.setResult(serviceUnavailable("server busy, retry later", true));
+            } else
+            if (!(cause instanceof CancellationException)) {
+                deferred.setErrorResult(cause);
+            }
+        });
+        return deferred;
+    }
+
+    private static ResponseEntity<Object> serviceUnavailable(String message, boolean retry) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retry) {
+            headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        }
+        return new ResponseEntity<Object>(new ErrorMessage(message), headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
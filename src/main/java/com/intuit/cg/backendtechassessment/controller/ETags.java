@@ -0,0 +1,63 @@
+package com.intuit.cg.backendtechassessment.controller;
+
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.ProjectView;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Strong ETags of the project responses, derived from the version of the project rows instead of a hash of the
+ * serialized JSON. Every update of a project moves its version, also the bids SnapshotStore replays into a restored
+ * project, so the same id and version is the same response, and If-None-Match is checked before the project is
+ * resolved or serialized.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    /** ETag of a project response, e.g. "12-3" */
+    static String of(long projectId, long version) {
+        return "\"" + projectId + "-" + version + "\"";
+    }
+
+    static String of(Project project) {
+        return of(project.getId(), project.getVersion());
+    }
+
+    static String of(ProjectView project) {
+        return of(project.getId(), project.getVersion());
+    }
+
+    /** ETag of a page of projects, a digest of the ids and versions of its rows and of the next page cursor */
+    static String ofPage(List<ProjectView> page, Long next) {
+        StringBuilder watermark = new StringBuilder(page.size() * 12);
+        for (ProjectView project : page) {
+            watermark.append(project.getId()).append(':').append(project.getVersion()).append(',');
+        }
+        watermark.append(next);
+        return "\"p" + DigestUtils.md5DigestAsHex(watermark.toString().getBytes(StandardCharsets.US_ASCII)) + "\"";
+    }
+
+    /**
+     * true if the If-None-Match header value (a list of ETags or "*", empty if none) matches eTag. If-None-Match uses
+     * the weak comparison, a W/ prefix is ignored
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
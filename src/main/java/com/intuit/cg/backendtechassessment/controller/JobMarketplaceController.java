@@ -1,34 +1,99 @@
 package com.intuit.cg.backendtechassessment.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intuit.cg.backendtechassessment.analytics.BidColumns;
+import com.intuit.cg.backendtechassessment.analytics.BidPriceSketch;
+import com.intuit.cg.backendtechassessment.analytics.ProjectStatsRegistry;
+import com.intuit.cg.backendtechassessment.cache.FinalizedProjectCache;
 import com.intuit.cg.backendtechassessment.controller.requestmappings.RequestMappings;
+import com.intuit.cg.backendtechassessment.feed.MinBidFeed;
+import com.intuit.cg.backendtechassessment.json.JsonPageResult;
 import com.intuit.cg.backendtechassessment.json.JsonResult;
+import com.intuit.cg.backendtechassessment.metrics.MarketplaceMetrics;
 import com.intuit.cg.backendtechassessment.models.*;
 import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import com.intuit.cg.backendtechassessment.resolution.ProjectResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
 
 @RestController
 public class JobMarketplaceController {
     private static Logger log = LoggerFactory.getLogger(JobMarketplaceController.class);
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    //page size of the list endpoints
+    static final int DEFAULT_PAGE_LIMIT = 100;
+    private static final int MAX_PAGE_LIMIT = 1000;
     private JobMarketplaceService jobMarketplaceService;
+    private ObjectMapper objectMapper;
+    private FinalizedProjectCache finalizedProjectCache;
+    private MarketplaceMetrics marketplaceMetrics;
+    private MinBidFeed minBidFeed;
+    private BidColumns bidColumns;
+    private BidPriceSketch bidPriceSketch;
+    private ProjectStatsRegistry projectStatsRegistry;
+    private ProjectResolver projectResolver;
+    private long feedTimeoutMillis;
+    private CacheControl finalizedCacheControl;
 
-    public JobMarketplaceController(JobMarketplaceService jobMarketplaceService) {
+    public JobMarketplaceController(JobMarketplaceService jobMarketplaceService, ObjectMapper objectMapper,
+                                    FinalizedProjectCache finalizedProjectCache, MarketplaceMetrics marketplaceMetrics,
+                                    MinBidFeed minBidFeed, BidColumns bidColumns, BidPriceSketch bidPriceSketch,
+                                    ProjectStatsRegistry projectStatsRegistry, ProjectResolver projectResolver,
+                                    @Value("${marketplace.feed.timeout-millis:600000}") long feedTimeoutMillis,
+                                    @Value("${marketplace.cache.finalized.max-age-seconds:86400}")
+                                            long finalizedMaxAgeSeconds) {
         assert(jobMarketplaceService != null);
+        assert(objectMapper != null);
+        assert(finalizedProjectCache != null);
+        assert(marketplaceMetrics != null);
+        assert(minBidFeed != null);
+        assert(bidColumns != null);
+        assert(bidPriceSketch != null);
+        assert(projectStatsRegistry != null);
+        assert(projectResolver != null);
         this.jobMarketplaceService = jobMarketplaceService;
+        this.objectMapper = objectMapper;
+        this.finalizedProjectCache = finalizedProjectCache;
+        this.marketplaceMetrics = marketplaceMetrics;
+        this.minBidFeed = minBidFeed;
+        this.bidColumns = bidColumns;
+        this.bidPriceSketch = bidPriceSketch;
+        this.projectStatsRegistry = projectStatsRegistry;
+        this.projectResolver = projectResolver;
+        this.feedTimeoutMillis = feedTimeoutMillis;
+        //not immutable, ProjectResolver may still recompute a finalized result
+        this.finalizedCacheControl = CacheControl.maxAge(finalizedMaxAgeSeconds, TimeUnit.SECONDS).cachePublic();
     }
 
     @RequestMapping(value = RequestMappings.INIT, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -40,33 +105,316 @@ public class JobMarketplaceController {
         return new ResponseEntity<Object>(new JsonResult("ok"), HttpStatus.OK);
     }
 
+    /**
+     * a page of projects, in id order, or in (bidDeadline, id) order with deadlineFrom or deadlineTo. next is the id of
+     * the last project either way, see ProjectRepository.findPage(). The ETag is derived from the ids and versions of
+     * the page's rows, a matching If-None-Match is answered with 304 without serializing the page
+     */
     @RequestMapping(value = RequestMappings.PROJECTS, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> getProjects() {
-        return new ResponseEntity<Object>(new JsonResult(jobMarketplaceService.getProjects()), HttpStatus.OK);
+    public ResponseEntity<Object> getProjects(
+            @RequestParam(value="sellerId", defaultValue="-1") long sellerId,
+            @RequestParam(value="status", defaultValue="") String status,
+            @RequestParam(value="deadlineFrom", defaultValue="") String deadlineFrom,
+            @RequestParam(value="deadlineTo", defaultValue="") String deadlineTo,
+            @RequestParam(value="after", defaultValue="0") long after,
+            @RequestParam(value="limit", defaultValue="" + DEFAULT_PAGE_LIMIT) int limit,
+            @RequestHeader(value=HttpHeaders.IF_NONE_MATCH, defaultValue="") String ifNoneMatch) {
+        if (limit <= 0) {
+            return new ResponseEntity<Object>(new ErrorMessage("param limit must be > 0"), HttpStatus.OK);
+        }
+        Boolean open = null;
+        if ("open".equals(status)) {
+            open = true;
+        } else
+        if ("closed".equals(status)) {
+            open = false;
+        } else
+        if (!status.isEmpty()) {
+            return new ResponseEntity<Object>(new ErrorMessage("param status must be open or closed"), HttpStatus.OK);
+        }
+        try {
+            LocalDateTime from = deadlineFrom.isEmpty() ? null : LocalDateTime.parse(deadlineFrom, DATE_TIME_FORMATTER);
+            LocalDateTime to = deadlineTo.isEmpty() ? null : LocalDateTime.parse(deadlineTo, DATE_TIME_FORMATTER);
+            limit = Math.min(limit, MAX_PAGE_LIMIT);
+            JsonPageResult<ProjectView> page = toPage(jobMarketplaceService.getProjects(
+                    sellerId, open, from, to, after, limit), limit, ProjectView::getId);
+            String eTag = ETags.ofPage(page.getResult(), page.getNext());
+            return conditional(page, eTag, CacheControl.noCache(), ifNoneMatch);
+        } catch (DateTimeParseException e) {
+            return new ResponseEntity<Object> (new ErrorMessage(e.getMessage()), HttpStatus.OK);
+        }
     }
 
     @RequestMapping(value = RequestMappings.SELLERS, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> getSellers() {
-        return new ResponseEntity<Object>(new JsonResult(jobMarketplaceService.getSellers()), HttpStatus.OK);
+    public ResponseEntity<Object> getSellers(
+            @RequestParam(value="after", defaultValue="0") long after,
+            @RequestParam(value="limit", defaultValue="" + DEFAULT_PAGE_LIMIT) int limit) {
+        if (limit <= 0) {
+            return new ResponseEntity<Object>(new ErrorMessage("param limit must be > 0"), HttpStatus.OK);
+        }
+        limit = Math.min(limit, MAX_PAGE_LIMIT);
+        return new ResponseEntity<Object>(toPage(jobMarketplaceService.getSellers(after, limit), limit, Seller::getId),
+                HttpStatus.OK);
     }
 
     @RequestMapping(value = RequestMappings.BUYERS, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> getBuyers() {
-        return new ResponseEntity<Object>(new JsonResult(jobMarketplaceService.getBuyers()), HttpStatus.OK);
+    public ResponseEntity<Object> getBuyers(
+            @RequestParam(value="after", defaultValue="0") long after,
+            @RequestParam(value="limit", defaultValue="" + DEFAULT_PAGE_LIMIT) int limit) {
+        if (limit <= 0) {
+            return new ResponseEntity<Object>(new ErrorMessage("param limit must be > 0"), HttpStatus.OK);
+        }
+        limit = Math.min(limit, MAX_PAGE_LIMIT);
+        return new ResponseEntity<Object>(toPage(jobMarketplaceService.getBuyers(after, limit), limit, Buyer::getId),
+                HttpStatus.OK);
     }
 
     @RequestMapping(value = RequestMappings.BIDS, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> getBids() {
-        return new ResponseEntity<Object> (new JsonResult(jobMarketplaceService.getBids()), HttpStatus.OK);
+    public ResponseEntity<Object> getBids(
+            @RequestParam(value="projectId", defaultValue="-1") long projectId,
+            @RequestParam(value="buyerId", defaultValue="-1") long buyerId,
+            @RequestParam(value="after", defaultValue="0") long after,
+            @RequestParam(value="limit", defaultValue="" + DEFAULT_PAGE_LIMIT) int limit) {
+        if (limit <= 0) {
+            return new ResponseEntity<Object>(new ErrorMessage("param limit must be > 0"), HttpStatus.OK);
+        }
+        limit = Math.min(limit, MAX_PAGE_LIMIT);
+        return new ResponseEntity<Object> (toPage(jobMarketplaceService.getBids(projectId, buyerId, after, limit),
+                limit, BidView::getId), HttpStatus.OK);
+    }
+
+    /**
+     * exports every bid as {"result":[...]}. Bids are read through a cursor and written to the response one by one,
+     * so memory use is the same for any no. of bids.
+     */
+    @RequestMapping(value = RequestMappings.EXPORT_BIDS, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportBids() {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("result");
+                jobMarketplaceService.forEachBid(bid -> {
+                    try {
+                        generator.writeObject(bid);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+                generator.writeEndObject();
+            } catch (UncheckedIOException e) {
+                log.info("exportBids() stopped: {}", e.getMessage());
+                throw e.getCause();
+            }
+        };
+        return new ResponseEntity<StreamingResponseBody>(body, HttpStatus.OK);
+    }
+
+    /**
+     * count, lowest, highest and average amount of the bids by project or buyer, optionally for one id and a range
+     * of bid dates, e.g. groupBy=buyer&from=2018-05-01T00:00:00. Scans the BidColumns copy of the bid table.
+     */
+    @RequestMapping(value = RequestMappings.BID_STATS, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getBidStats(
+            @RequestParam(value="groupBy", defaultValue="project") String groupBy,
+            @RequestParam(value="id", defaultValue="-1") long id,
+            @RequestParam(value="from", defaultValue="") String from,
+            @RequestParam(value="to", defaultValue="") String to) {
+        BidColumns.GroupBy grouping;
+        if ("project".equals(groupBy)) {
+            grouping = BidColumns.GroupBy.PROJECT;
+        } else
+        if ("buyer".equals(groupBy)) {
+            grouping = BidColumns.GroupBy.BUYER;
+        } else {
+            return new ResponseEntity<Object>(new ErrorMessage("param groupBy must be project or buyer"),
+                    HttpStatus.OK);
+        }
+        try {
+            LocalDateTime fromDate = from.isEmpty() ? null : LocalDateTime.parse(from, DATE_TIME_FORMATTER);
+            LocalDateTime toDate = to.isEmpty() ? null : LocalDateTime.parse(to, DATE_TIME_FORMATTER);
+            return new ResponseEntity<Object>(new JsonResult(bidColumns.statsBy(grouping, id, fromDate, toDate)),
+                    HttpStatus.OK);
+        } catch (DateTimeParseException e) {
+            return new ResponseEntity<Object> (new ErrorMessage(e.getMessage()), HttpStatus.OK);
+        }
+    }
+
+    /**
+     * percentile bands of the winning minimum bid relative to maxBudget over the finalized projects, and the amounts
+     * for the given maxBudget if any, see BidPriceSketch
+     */
+    @RequestMapping(value = RequestMappings.SUGGESTED_BID, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getSuggestedBid(@RequestParam(value="maxBudget", defaultValue="-1") long maxBudget) {
+        SuggestedBid suggestedBid = bidPriceSketch.suggest(maxBudget);
+        if (suggestedBid == null) {
+            return new ResponseEntity<Object>(new ErrorMessage("no finalized project with a minimum bid yet"),
+                    HttpStatus.OK);
+        }
+        return new ResponseEntity<Object>(new JsonResult(suggestedBid), HttpStatus.OK);
     }
 
+    /** wraps a page of a list endpoint, a full page gets the id of its last item as cursor for the next page */
+    private static <T> JsonPageResult<T> toPage(List<T> result, int limit, ToLongFunction<T> idOf) {
+        Long next = result.size() == limit ? idOf.applyAsLong(result.get(result.size() - 1)) : null;
+        return new JsonPageResult<T>(result, next);
+    }
+
+    /**
+     * a project with its result once the deadline has passed. The ETag is the project's id and version. A matching
+     * If-None-Match is answered with 304 from the version alone, unless the project is still to be finalized. A
+     * finalized project may be cached for marketplace.cache.finalized.max-age-seconds, an open one is revalidated.
+     */
     @RequestMapping(value = RequestMappings.GET_PROJECT_BY_ID, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> getProjectById(@RequestParam(value="projectId", defaultValue="-1") long projectId) {
+    public ResponseEntity<Object> getProjectById(@RequestParam(value="projectId", defaultValue="-1") long projectId,
+            @RequestHeader(value=HttpHeaders.IF_NONE_MATCH, defaultValue="") String ifNoneMatch) {
         if (projectId < 0) {
             return new ResponseEntity<Object> (new ErrorMessage("param projectId undefined or invalid"), HttpStatus.OK);
         }
+        //a finalized project only changes when ProjectResolver stores a recomputed result, which drops it from the
+        //cache, answer from the cached JSON without a transaction
+        FinalizedProjectCache.Entry cached = finalizedProjectCache.getEntry(projectId);
+        if (cached != null) {
+            if (ETags.matches(ifNoneMatch, cached.getETag())) {
+                return notModified(cached.getETag(), finalizedCacheControl);
+            }
+            return jsonBytes(cached.getJson(), cached.getETag(), finalizedCacheControl);
+        }
+        if (!ifNoneMatch.isEmpty()) {
+            //an open project past its deadline is finalized below, which moves its version
+            ProjectView view = jobMarketplaceService.getProjectView(projectId);
+            if (view != null && ETags.matches(ifNoneMatch, ETags.of(view))
+                    && (view.getBidStatus() != Project.BidStatus.NONE
+                    || LocalDateTime.now().compareTo(view.getBidDeadline()) <= 0)) {
+                return notModified(ETags.of(view), cacheControl(view.getBidStatus()));
+            }
+        }
         //AY, use getProjectById() to handle bids as fixed, and getProjectById2() to handle auto bid
-        return new ResponseEntity<Object>(new JsonResult(jobMarketplaceService.getProjectById2(projectId)), HttpStatus.OK);
+        Project project = jobMarketplaceService.getProjectById2(projectId);
+        if (project != null && project.getBidStatus() != Project.BidStatus.NONE) {
+            //the cached response is only dropped by the next recomputed result, so it is read from the primary, a
+            //replica may be behind the last one
+            project = jobMarketplaceService.getProjectOnPrimary(projectId);
+        }
+        if (project == null) {
+            return new ResponseEntity<Object>(new JsonResult(project), HttpStatus.OK);
+        }
+        String eTag = ETags.of(project);
+        if (project.getBidStatus() != Project.BidStatus.NONE) {
+            try {
+                byte[] json = objectMapper.writeValueAsBytes(new JsonResult(project));
+                finalizedProjectCache.put(projectId, json, eTag, project.getVersion());
+                return jsonBytes(json, eTag, finalizedCacheControl);
+            } catch (JsonProcessingException e) {
+                log.error("getProjectById() projectId={} not cached", projectId, e);
+            }
+        }
+        return conditional(new JsonResult(project), eTag, cacheControl(project.getBidStatus()), ifNoneMatch);
+    }
+
+    /**
+     * Server-Sent Events stream of the minimum bid of the projects, e.g. projectIds=1,2,3. Sends a "min-bid" event
+     * with {"projectId":..,"minBid":..,"minBidId":..,"bidStatus":..} for each project on subscribe, each time its
+     * minimum bid goes down, and once with its final result. The stream ends when every project is final, or after
+     * marketplace.feed.timeout-millis (clients such as EventSource reconnect). A client too slow to keep up is
+     * disconnected. Invalid params are answered with a single "errors" event.
+     */
+    @RequestMapping(value = RequestMappings.SUBSCRIBE_MIN_BID, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeMinBid(@RequestParam(value="projectIds", defaultValue="") List<Long> projectIds) {
+        SseEmitter emitter = new SseEmitter(feedTimeoutMillis);
+        MinBidFeed.Sink sink = new MinBidFeed.Sink() {
+            @Override
+            public void send(String json) throws IOException {
+                //already serialized once for all subscribers, the String is written as is
+                emitter.send(SseEmitter.event().name("min-bid").data(json, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        };
+        try {
+            MinBidFeed.Subscription subscription = minBidFeed.subscribe(new LinkedHashSet<>(projectIds), sink);
+            emitter.onTimeout(subscription::cancel);
+            emitter.onCompletion(subscription::cancel);
+            emitter.onError(error -> subscription.cancel());
+        } catch (IllegalArgumentException e) {
+            marketplaceMetrics.rejected(RequestMappings.SUBSCRIBE_MIN_BID);
+            try {
+                emitter.send(SseEmitter.event().name("errors").data(new ErrorMessage(e.getMessage()),
+                        MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException sendError) {
+                emitter.completeWithError(sendError);
+            }
+        }
+        return emitter;
+    }
+
+    /** response with JSON that is already serialized */
+    private static ResponseEntity<Object> jsonBytes(byte[] json, String eTag, CacheControl cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        if (eTag != null) {
+            headers.setETag(eTag);
+            headers.setCacheControl(cacheControl.getHeaderValue());
+        }
+        return new ResponseEntity<Object>(json, headers, HttpStatus.OK);
+    }
+
+    /** 304 if ifNoneMatch matches eTag, otherwise the body. Both with the ETag and Cache-Control headers */
+    private static ResponseEntity<Object> conditional(Object body, String eTag, CacheControl cacheControl,
+                                                      String ifNoneMatch) {
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return notModified(eTag, cacheControl);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(eTag);
+        headers.setCacheControl(cacheControl.getHeaderValue());
+        return new ResponseEntity<Object>(body, headers, HttpStatus.OK);
+    }
+
+    private static ResponseEntity<Object> notModified(String eTag, CacheControl cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(eTag);
+        headers.setCacheControl(cacheControl.getHeaderValue());
+        return new ResponseEntity<Object>(headers, HttpStatus.NOT_MODIFIED);
+    }
+
+    /** a finalized result is kept for long, an open project changes with each bid and is revalidated */
+    private CacheControl cacheControl(Project.BidStatus bidStatus) {
+        return bidStatus == Project.BidStatus.NONE ? CacheControl.noCache() : finalizedCacheControl;
+    }
+
+    /**
+     * bid count, distinct buyers, fixed and auto counts, lowest and average amount and last bid date of a project,
+     * kept up to date as bids are accepted instead of aggregating the bids, see ProjectStatsRegistry
+     */
+    @RequestMapping(value = RequestMappings.PROJECT_STATS, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> getProjectStats(@RequestParam(value="projectId", defaultValue="-1") long projectId) {
+        if (projectId < 0) {
+            return new ResponseEntity<Object> (new ErrorMessage("param projectId undefined or invalid"), HttpStatus.OK);
+        }
+        return new ResponseEntity<Object>(new JsonResult(projectStatsRegistry.get(projectId)), HttpStatus.OK);
+    }
+
+    /**
+     * recomputes the results of the finalized projects with fromId <= id <= toId (all if not given) from their bids,
+     * and stores the ones that changed unless dryRun. Returns the counts, throughput and changed results, see
+     * ProjectResolver
+     */
+    @RequestMapping(value = RequestMappings.RESOLVE_PROJECTS, method = RequestMethod.POST,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> resolveProjects(@RequestParam(value="fromId", defaultValue="-1") long fromId,
+                                                  @RequestParam(value="toId", defaultValue="-1") long toId,
+                                                  @RequestParam(value="dryRun", defaultValue="false") boolean dryRun) {
+        try {
+            return new ResponseEntity<Object>(new JsonResult(projectResolver.resolve(fromId, toId, dryRun)),
+                    HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<Object> (new ErrorMessage(e.getMessage()), HttpStatus.OK);
+        }
     }
 
     //debugging use
@@ -94,11 +442,13 @@ public class JobMarketplaceController {
         }
 
         try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
-            LocalDateTime bidDeadlineConverted = LocalDateTime.parse(bidDeadline, formatter);
+            LocalDateTime bidDeadlineConverted = LocalDateTime.parse(bidDeadline, DATE_TIME_FORMATTER);
             return new ResponseEntity<Object>(new JsonResult(jobMarketplaceService.createProject(
                     sellerId, description, maxBudget, bidDeadlineConverted)), HttpStatus.OK);
-        } catch (DateTimeParseException | IllegalArgumentException e) {
+        } catch (DateTimeParseException e) {
+            return new ResponseEntity<Object> (new ErrorMessage(e.getMessage()), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            marketplaceMetrics.rejected(RequestMappings.CREATE_PROJECT);
             return new ResponseEntity<Object> (new ErrorMessage(e.getMessage()), HttpStatus.OK);
         }
     }
@@ -110,26 +460,77 @@ public class JobMarketplaceController {
             @RequestParam(value="buyerId", defaultValue="-1") long buyerId,
             @RequestParam(value="autoBid", defaultValue="false") boolean autoBid,
             @RequestParam(value="minAmount", defaultValue="-1") long minAmount) {
+        String error = checkBidParams(amount, projectId, buyerId, autoBid, minAmount);
+        if (error != null) {
+            return new ResponseEntity<Object> (new ErrorMessage(error), HttpStatus.OK);
+        }
+        log.info("addNewBid() amount={} projectId={} buyerId={} autoBid={} minAmount={}",
+                amount, projectId, buyerId, autoBid, minAmount);
+        try {
+            //in write-behind mode the bid is acknowledged once journaled, it has a journalSeq but no id yet
+            Bid bid = jobMarketplaceService.isJournalEnabled()
+                    ? jobMarketplaceService.journalBid(amount, projectId, buyerId, autoBid, minAmount)
+                    : jobMarketplaceService.addNewBid(amount, projectId, buyerId, autoBid, minAmount);
+            return new ResponseEntity<Object>(new JsonResult(bid), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            marketplaceMetrics.rejected(RequestMappings.ADD_NEW_BID);
+            return new ResponseEntity<Object> (new ErrorMessage(e.getMessage()), HttpStatus.OK);
+        }
+    }
+
+    /**
+     * adds a JSON array of bids, e.g. [{"amount":10,"projectId":1,"buyerId":2},...], in one transaction. Returns one
+     * result per bid in the same order, either {"bid":{...}} or {"errors":[...]}.
+     */
+    @RequestMapping(value = RequestMappings.ADD_NEW_BIDS, method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> addNewBids(@RequestBody List<BidRequest> requests) {
+        if (requests.size() > JobMarketplaceService.MAX_BATCH_SIZE) {
+            return new ResponseEntity<Object> (new ErrorMessage("more than " + JobMarketplaceService.MAX_BATCH_SIZE
+                    + " bids"), HttpStatus.OK);
+        }
+        log.info("addNewBids() {} bids", requests.size());
+        BidResult[] results = new BidResult[requests.size()];
+        List<BidRequest> validRequests = new ArrayList<>(requests.size());
+        List<Integer> validIndexes = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            BidRequest request = requests.get(i);
+            String error = checkBidParams(request.getAmount(), request.getProjectId(), request.getBuyerId(),
+                    request.isAutoBid(), request.getMinAmount());
+            if (error != null) {
+                results[i] = new BidResult(error);
+            } else {
+                validRequests.add(request);
+                validIndexes.add(i);
+            }
+        }
+        List<BidResult> added = jobMarketplaceService.addNewBids(validRequests);
+        int rejected = 0;
+        for (int i = 0; i < added.size(); i++) {
+            results[validIndexes.get(i)] = added.get(i);
+            if (added.get(i).getErrors() != null) {
+                rejected++;
+            }
+        }
+        marketplaceMetrics.rejected(RequestMappings.ADD_NEW_BIDS, rejected);
+        return new ResponseEntity<Object>(new JsonResult(Arrays.asList(results)), HttpStatus.OK);
+    }
+
+    /** returns why the bid params are invalid or null if they are fine */
+    private static String checkBidParams(long amount, long projectId, long buyerId, boolean autoBid, long minAmount) {
         if (amount < 0) {
-            return new ResponseEntity<Object> (new ErrorMessage("param amount undefined"), HttpStatus.OK);
+            return "param amount undefined";
         }
         if (projectId < 0) {
-            return new ResponseEntity<Object> (new ErrorMessage("param projectId undefined or invalid"), HttpStatus.OK);
+            return "param projectId undefined or invalid";
         }
         if (buyerId < 0) {
-            return new ResponseEntity<Object> (new ErrorMessage("param buyerId undefined"), HttpStatus.OK);
+            return "param buyerId undefined";
         }
         if (autoBid && minAmount < 0) {
-            return new ResponseEntity<Object> (new ErrorMessage("param minAmount undefined"), HttpStatus.OK);
-        }
-        log.info("addNewBid() amount={} projectId={} buyerId={} autoBid={} minAmount={}",
-                amount, projectId, buyerId, autoBid, minAmount);
-        try {
-            return new ResponseEntity<Object>(new JsonResult(jobMarketplaceService.addNewBid(
-                    amount, projectId, buyerId, autoBid, minAmount)), HttpStatus.OK);
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<Object> (new ErrorMessage(e.getMessage()), HttpStatus.OK);
+            return "param minAmount undefined";
         }
+        return null;
     }
 
-}
\ No newline at end of file
+}
@@ -5,11 +5,21 @@ public class RequestMappings {
     public static final String SELLERS = "/sellers";
     public static final String BUYERS = "/buyers";
     public static final String BIDS = "/bids";
+    public static final String EXPORT_BIDS = "/export-bids";
+    public static final String BID_STATS = "/bid-stats";
+    public static final String SUGGESTED_BID = "/suggested-bid";
+    public static final String PROJECT_STATS = "/project-stats";
 
     public static final String INIT = "/init";
     public static final String GET_PROJECT_BY_ID = "/get-project-by-id";
     public static final String CREATE_PROJECT = "/create-project";
     public static final String ADD_NEW_BID = "/add-new-bid";
+    public static final String ADD_NEW_BIDS = "/add-new-bids";
+    public static final String SUBSCRIBE_MIN_BID = "/subscribe-min-bid";
+    public static final String RESOLVE_PROJECTS = "/admin/resolve-projects";
+
+    //prefix of the non-blocking variants, e.g. /async/add-new-bid
+    public static final String ASYNC = "/async";
 
     private RequestMappings() {
     }
@@ -0,0 +1,171 @@
+package com.intuit.cg.backendtechassessment.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stands in for database replication where there is none, e.g. a second in-memory H2 instance in tests and local
+ * runs. Not meant for production, where the replica is fed by the database's own replication.
+ *
+ * createSchema() copies the schema of the primary (H2 "SCRIPT NODATA"). Each replicate() pass then copies the new
+ * sellers and buyers, and the projects whose version changed since the last pass (every update of a project moves its
+ * version) with their bids after the project's last copied lastBidId. The bids of a changed finalized project are
+ * copied again for their winningBid. Rows written with plain SQL that leave the version alone are not seen. A pass is
+ * applied in one replica transaction, so readers of the replica see whole passes, and the replica is marked caught
+ * up to the time the pass started.
+ */
+public class H2ReplicationStandIn {
+    private static Logger log = LoggerFactory.getLogger(H2ReplicationStandIn.class);
+    private static final int IN_LIST_SIZE = 500; //ids per "id in (...)" query
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replicaJdbc;
+    private final TransactionTemplate replicaTransaction;
+    private final Replica replica;
+
+    //what was copied so far, guarded by this
+    private final Set<Long> sellerIds = new HashSet<>();
+    private final Set<Long> buyerIds = new HashSet<>();
+    private final Map<Long, long[]> projects = new HashMap<>(); //version, bid_status, last_bid_id by project id
+    private static final int VERSION = 0;
+    private static final int BID_STATUS = 1;
+    private static final int LAST_BID_ID = 2;
+    private long passes;
+
+    public H2ReplicationStandIn(DataSource primary, Replica replica) {
+        assert(primary != null);
+        assert(replica != null);
+        this.primary = new JdbcTemplate(primary);
+        this.replicaJdbc = new JdbcTemplate(replica.getDataSource());
+        this.replicaTransaction = new TransactionTemplate(new DataSourceTransactionManager(replica.getDataSource()));
+        this.replica = replica;
+    }
+
+    /** creates the tables, indexes and sequences of the primary in the replica */
+    public synchronized void createSchema() {
+        List<String> statements = primary.queryForList("SCRIPT NODATA", String.class);
+        for (String statement : statements) {
+            if (statement.startsWith("CREATE USER")) {
+                continue;
+            }
+            replicaJdbc.execute(statement);
+        }
+        log.info("createSchema() {} {} statements", replica.getName(), statements.size());
+    }
+
+    /** copies the changes of the primary since the last pass, then marks the replica caught up */
+    public synchronized void replicate() {
+        long start = System.currentTimeMillis();
+        int rows = replicaTransaction.execute(status -> {
+            int copied = copyNew("seller", sellerIds) + copyNew("buyer", buyerIds);
+            Map<Long, long[]> projects = new HashMap<>();
+            primary.query("SELECT id, version, bid_status, last_bid_id FROM project", rs -> {
+                projects.put(rs.getLong(1), new long[]{rs.getLong(2), rs.getInt(3), rs.getLong(4)});
+            });
+            List<Long> changed = new ArrayList<>();
+            List<Long> finalized = new ArrayList<>();
+            for (Map.Entry<Long, long[]> entry : projects.entrySet()) {
+                long[] previous = this.projects.get(entry.getKey());
+                if (previous != null && previous[VERSION] == entry.getValue()[VERSION]) {
+                    continue;
+                }
+                changed.add(entry.getKey());
+                if (entry.getValue()[BID_STATUS] != 0) {
+                    finalized.add(entry.getKey()); //copy all bids again for their winningBid
+                } else {
+                    //a bid is inserted in the transaction that folds it into its project, moving the version
+                    copied += copy("bid", "project_id=? and id>?", entry.getKey(),
+                            previous == null ? 0 : previous[LAST_BID_ID]);
+                }
+            }
+            copied += copyIn("project", "id", changed);
+            copied += copyIn("bid", "project_id", finalized);
+            for (long id : this.projects.keySet()) {
+                if (!projects.containsKey(id)) {
+                    replicaJdbc.update("DELETE FROM project WHERE id=?", id);
+                }
+            }
+            this.projects.clear();
+            this.projects.putAll(projects);
+            return copied;
+        });
+        replica.caughtUp(start);
+        passes++;
+        log.debug("replicate() {} {} rows in {} ms", replica.getName(), rows, System.currentTimeMillis() - start);
+    }
+
+    public synchronized long getPasses() {
+        return passes;
+    }
+
+    /** copies the rows with an id that is not in known yet, and adds their ids to it */
+    private int copyNew(String table, Set<Long> known) {
+        List<Long> ids = new ArrayList<>();
+        for (long id : primary.queryForList("SELECT id FROM " + table, Long.class)) {
+            if (!known.contains(id)) {
+                ids.add(id);
+            }
+        }
+        int copied = copyIn(table, "id", ids);
+        known.addAll(ids);
+        return copied;
+    }
+
+    /** copies the rows of ids in batches of IN_LIST_SIZE */
+    private int copyIn(String table, String column, List<Long> ids) {
+        int copied = 0;
+        Collections.sort(ids);
+        for (int from = 0; from < ids.size(); from += IN_LIST_SIZE) {
+            List<Long> part = ids.subList(from, Math.min(ids.size(), from + IN_LIST_SIZE));
+            StringBuilder where = new StringBuilder(column).append(" in (");
+            for (int i = 0; i < part.size(); i++) {
+                where.append(i == 0 ? "?" : ",?");
+            }
+            copied += copy(table, where.append(")").toString(), part.toArray());
+        }
+        return copied;
+    }
+
+    /** copies the primary's rows of the table matching where into the replica, replacing rows with the same id */
+    private int copy(String table, String where, Object... args) {
+        List<Object[]> rows = new ArrayList<>();
+        StringBuilder merge = new StringBuilder();
+        primary.query("SELECT * FROM " + table + " WHERE " + where, rs -> {
+            ResultSetMetaData meta = rs.getMetaData();
+            int columns = meta.getColumnCount();
+            if (merge.length() == 0) {
+                merge.append("MERGE INTO ").append(table).append(" (");
+                for (int i = 1; i <= columns; i++) {
+                    merge.append(i == 1 ? "" : ",").append(meta.getColumnName(i));
+                }
+                merge.append(") KEY(id) VALUES (");
+                for (int i = 1; i <= columns; i++) {
+                    merge.append(i == 1 ? "?" : ",?");
+                }
+                merge.append(")");
+            }
+            Object[] row = new Object[columns];
+            for (int i = 1; i <= columns; i++) {
+                row[i - 1] = rs.getObject(i);
+            }
+            rows.add(row);
+        }, args);
+        if (!rows.isEmpty()) {
+            replicaJdbc.batchUpdate(merge.toString(), rows);
+        }
+        return rows.size();
+    }
+}
@@ -0,0 +1,65 @@
+package com.intuit.cg.backendtechassessment.datasource;
+
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * The time of the last committed write of the current caller, so ReplicaRoutingDataSource does not send its reads to
+ * a replica that has not caught up with it yet. A caller is a request (see ReadYourWritesFilter, which carries the time
+ * over to the caller's next requests in a cookie), or the thread itself outside of requests.
+ */
+public final class ReadYourWrites {
+    public static final String COOKIE = "marketplace-last-write";
+    private static final ThreadLocal<Context> CURRENT = ThreadLocal.withInitial(() -> new Context(0, null));
+
+    private ReadYourWrites() {
+    }
+
+    /** the writes of one caller. Shared by the threads a request runs on */
+    public static final class Context {
+        private volatile long lastWriteMillis;
+        private final LongConsumer onWrite;
+
+        /** @param onWrite called with the time of each write after its commit, null for none */
+        public Context(long lastWriteMillis, LongConsumer onWrite) {
+            this.lastWriteMillis = lastWriteMillis;
+            this.onWrite = onWrite;
+        }
+
+        public long getLastWriteMillis() {
+            return lastWriteMillis;
+        }
+
+        void written(long millis) {
+            lastWriteMillis = Math.max(lastWriteMillis, millis);
+            if (onWrite != null) {
+                onWrite.accept(millis);
+            }
+        }
+    }
+
+    public static Context current() {
+        return CURRENT.get();
+    }
+
+    /** runs the call with the context as the current one, e.g. the call of a request on another thread */
+    public static <T> T callWith(Context context, Supplier<T> call) {
+        Context previous = enter(context);
+        try {
+            return call.get();
+        } finally {
+            exit(previous);
+        }
+    }
+
+    /** makes context the current one, returns the previous one for exit() */
+    static Context enter(Context context) {
+        Context previous = CURRENT.get();
+        CURRENT.set(context);
+        return previous;
+    }
+
+    static void exit(Context previous) {
+        CURRENT.set(previous);
+    }
+}
@@ -0,0 +1,62 @@
+package com.intuit.cg.backendtechassessment.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Gives a request the ReadYourWrites context of its caller. The time of a write committed by the request (e.g. a new
+ * bid) is sent back in the ReadYourWrites.COOKIE cookie, and the caller's next requests read from the primary until a
+ * replica has caught up with it. The cookie expires after the staleness bound: by then any replica that takes reads
+ * holds the write.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    private final int cookieMaxAgeSeconds;
+
+    public ReadYourWritesFilter(long maxStalenessMillis) {
+        this.cookieMaxAgeSeconds = (int) Math.max(1, (maxStalenessMillis + 999) / 1000);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReadYourWrites.Context context = new ReadYourWrites.Context(lastWriteMillis(request), millis -> {
+            if (!response.isCommitted()) {
+                Cookie cookie = new Cookie(ReadYourWrites.COOKIE, Long.toString(millis));
+                cookie.setPath("/");
+                cookie.setMaxAge(cookieMaxAgeSeconds);
+                cookie.setHttpOnly(true);
+                response.addCookie(cookie);
+            }
+        });
+        ReadYourWrites.Context previous = ReadYourWrites.enter(context);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.exit(previous);
+        }
+    }
+
+    private static long lastWriteMillis(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (ReadYourWrites.COOKIE.equals(cookie.getName())) {
+                try {
+                    //a time in the future would keep the caller off the replicas
+                    return Math.min(Long.parseLong(cookie.getValue()), System.currentTimeMillis());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
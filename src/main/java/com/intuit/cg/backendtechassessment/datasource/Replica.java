@@ -0,0 +1,53 @@
+package com.intuit.cg.backendtechassessment.datasource;
+
+import javax.sql.DataSource;
+
+/**
+ * A read replica of the primary database and how far it has caught up. caughtUpMillis is the time up to which every
+ * commit on the primary is visible on the replica. It is moved by ReplicaMonitor, either after a pass of the
+ * H2ReplicationStandIn or from the replication lag the replica reports.
+ */
+public class Replica {
+    private final String name;
+    private final DataSource dataSource;
+    private volatile long caughtUpMillis; //0 until the replica has reported, it takes no reads before
+
+    public Replica(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public long getCaughtUpMillis() {
+        return caughtUpMillis;
+    }
+
+    /** the replica holds every commit made on the primary before caughtUpMillis */
+    public void caughtUp(long caughtUpMillis) {
+        if (caughtUpMillis > this.caughtUpMillis) {
+            this.caughtUpMillis = caughtUpMillis;
+        }
+    }
+
+    /**
+     * true if the replica is at most maxStalenessMillis behind now and holds the writes up to lastWriteMillis
+     * (0 if the caller has not written)
+     */
+    public boolean isFresh(long now, long maxStalenessMillis, long lastWriteMillis) {
+        long caughtUp = caughtUpMillis;
+        return caughtUp > 0 && now - caughtUp <= maxStalenessMillis && caughtUp > lastWriteMillis;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("Replica{").append(name).append(",caughtUpMillis=").append(caughtUpMillis)
+                .append("}").toString();
+    }
+}
@@ -0,0 +1,74 @@
+package com.intuit.cg.backendtechassessment.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read/write split, on when marketplace.datasource.replicas lists the JDBC urls of one or more read replicas (same
+ * driver, username and password as spring.datasource). The application's DataSource then routes read-only
+ * transactions to the replicas, see ReplicaRoutingDataSource. Without it the single spring.datasource is used as is.
+ *
+ * marketplace.datasource.max-staleness-millis (default 1000) bounds how far behind the primary a read may be.
+ * marketplace.datasource.replication-stand-in feeds H2 replicas from the primary (tests and local runs), otherwise
+ * marketplace.datasource.replica-lag-query tells how far behind a replica is, see ReplicaMonitor.
+ */
+@Configuration
+@ConditionalOnProperty("marketplace.datasource.replicas")
+public class ReplicaDataSourceConfiguration {
+
+    /**
+     * the routing is not a bean of its own, the DataSource initializer would take any DataSource bean for the
+     * application's. The key is looked up on first use of a connection, after the transaction's read-only flag is set
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+            @Value("${marketplace.datasource.replicas}") String[] replicaUrls,
+            @Value("${marketplace.datasource.max-staleness-millis:1000}") long maxStalenessMillis) {
+        DataSource primary = properties.initializeDataSourceBuilder().build();
+        List<Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.length; i++) {
+            DataSource replica = DataSourceBuilder.create().driverClassName(properties.determineDriverClassName())
+                    .url(replicaUrls[i].trim()).username(properties.determineUsername())
+                    .password(properties.determinePassword()).build();
+            replicas.add(new Replica("replica" + (i + 1), replica));
+        }
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(primary, replicas,
+                maxStalenessMillis);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource) {
+            //called on shutdown
+            public void close() {
+                routingDataSource.close();
+            }
+        };
+    }
+
+    @Bean
+    public ReplicaMonitor replicaMonitor(DataSource dataSource,
+            @Value("${marketplace.datasource.replication-interval-millis:100}") long intervalMillis,
+            @Value("${marketplace.datasource.replication-stand-in:false}") boolean standIn,
+            @Value("${marketplace.datasource.replica-lag-query:}") String lagQuery,
+            MeterRegistry meterRegistry) throws SQLException {
+        return new ReplicaMonitor(dataSource.unwrap(ReplicaRoutingDataSource.class), intervalMillis, standIn, lagQuery,
+                meterRegistry);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(
+            @Value("${marketplace.datasource.max-staleness-millis:1000}") long maxStalenessMillis) {
+        return new ReadYourWritesFilter(maxStalenessMillis);
+    }
+}
@@ -0,0 +1,122 @@
+package com.intuit.cg.backendtechassessment.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the caughtUpMillis of the replicas current, every intervalMillis on a daemon thread. With the stand-in on,
+ * each replica is fed by an H2ReplicationStandIn pass. Otherwise, if a lag query is set, the replica is asked for its
+ * replication lag in milliseconds (e.g. on PostgreSQL
+ * "SELECT extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000"). Without either the replicas never
+ * count as caught up and every read goes to the primary.
+ *
+ * The time since each replica caught up is in the "marketplace.datasource.replica.lag" gauge, the routed read-only
+ * transactions in the "marketplace.datasource.reads" counter tagged by target.
+ */
+public class ReplicaMonitor {
+    private static Logger log = LoggerFactory.getLogger(ReplicaMonitor.class);
+
+    private final ReplicaRoutingDataSource routingDataSource;
+    private final long intervalMillis;
+    private final boolean standIn;
+    private final String lagQuery;
+    private final List<H2ReplicationStandIn> standIns = new ArrayList<>();
+    private Thread worker;
+
+    public ReplicaMonitor(ReplicaRoutingDataSource routingDataSource, long intervalMillis, boolean standIn,
+                          String lagQuery, MeterRegistry meterRegistry) {
+        assert(routingDataSource != null);
+        assert(meterRegistry != null);
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("marketplace.datasource.replication-interval-millis must be > 0");
+        }
+        this.routingDataSource = routingDataSource;
+        this.intervalMillis = intervalMillis;
+        this.standIn = standIn;
+        this.lagQuery = lagQuery == null || lagQuery.isEmpty() ? null : lagQuery;
+        for (Replica replica : routingDataSource.getReplicas()) {
+            Gauge.builder("marketplace.datasource.replica.lag", replica,
+                    r -> r.getCaughtUpMillis() == 0 ? Double.NaN : System.currentTimeMillis() - r.getCaughtUpMillis())
+                    .tag("replica", replica.getName())
+                    .description("milliseconds since the replica caught up with the primary").register(meterRegistry);
+        }
+        FunctionCounter.builder("marketplace.datasource.reads", routingDataSource,
+                ReplicaRoutingDataSource::getReplicaReads).tag("target", "replica")
+                .description("read-only transactions by target").register(meterRegistry);
+        FunctionCounter.builder("marketplace.datasource.reads", routingDataSource,
+                ReplicaRoutingDataSource::getPrimaryReads).tag("target", "primary")
+                .description("read-only transactions by target").register(meterRegistry);
+    }
+
+    /** starts feeding the replicas once the schema of the primary is created */
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        if (standIn) {
+            for (Replica replica : routingDataSource.getReplicas()) {
+                H2ReplicationStandIn replication = new H2ReplicationStandIn(routingDataSource.getPrimary(), replica);
+                replication.createSchema();
+                standIns.add(replication);
+            }
+        }
+        worker = new Thread(this::run, "replica-monitor");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("start() {} replicas, stand-in {}, lag query {}", routingDataSource.getReplicas().size(), standIn,
+                lagQuery);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /** one round over the replicas */
+    public void refresh() {
+        if (standIn) {
+            for (H2ReplicationStandIn replication : standIns) {
+                replication.replicate();
+            }
+        } else if (lagQuery != null) {
+            for (Replica replica : routingDataSource.getReplicas()) {
+                long now = System.currentTimeMillis();
+                Number lag = new JdbcTemplate(replica.getDataSource()).queryForObject(lagQuery, Number.class);
+                if (lag != null) {
+                    replica.caughtUp(now - lag.longValue());
+                }
+            }
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                //the replicas fall behind and stop taking reads once over the staleness bound
+                log.error("run() failed to refresh the replicas", e);
+            }
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.intuit.cg.backendtechassessment.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sends the connections of read-only transactions (@Transactional(readOnly = true), the read-only TransactionTemplate
+ * of JobMarketplaceService) to a read replica and everything else to the primary.
+ *
+ * A replica only takes a read if it is at most maxStalenessMillis behind (the staleness bound of any read) and it has
+ * caught up with the caller's last write (read-your-writes, see ReadYourWrites). Otherwise the read goes to the
+ * primary. The replicas that qualify take turns. Reads whose result is kept past the staleness bound, e.g. a response
+ * that is cached or a watermark checked on recovery, are pinned to the primary with onPrimary().
+ *
+ * The key is looked up when the connection is first used, so this must be wrapped in a LazyConnectionDataSourceProxy:
+ * the transaction manager opens the connection before the read-only flag of the transaction is set. Writes outside of
+ * a transaction (auto-commit) go to the primary but are not recorded for read-your-writes.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private static Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    public static final String PRIMARY = "primary";
+    private static final ThreadLocal<Boolean> ON_PRIMARY = ThreadLocal.withInitial(() -> false);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxStalenessMillis;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, long maxStalenessMillis) {
+        assert(primary != null);
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.maxStalenessMillis = maxStalenessMillis;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Replica replica : replicas) {
+            if (targets.put(replica.getName(), replica.getDataSource()) != null) {
+                throw new IllegalArgumentException("duplicate replica name " + replica.getName());
+            }
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                ReadYourWrites.Context caller = ReadYourWrites.current();
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        //after the commit, a replica that caught up later holds the write
+                        caller.written(System.currentTimeMillis());
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+        if (ON_PRIMARY.get()) {
+            return PRIMARY;
+        }
+        Replica replica = selectReplica(ReadYourWrites.current().getLastWriteMillis());
+        if (replica == null) {
+            primaryReads.incrementAndGet();
+            return PRIMARY;
+        }
+        replicaReads.incrementAndGet();
+        return replica.getName();
+    }
+
+    /**
+     * runs the call with its read-only transactions on the primary. Unlike a read in a read-write transaction, this is
+     * not recorded as a write of the caller
+     */
+    public static <T> T onPrimary(Supplier<T> call) {
+        boolean previous = ON_PRIMARY.get();
+        ON_PRIMARY.set(true);
+        try {
+            return call.get();
+        } finally {
+            ON_PRIMARY.set(previous);
+        }
+    }
+
+    /** the next replica that is fresh enough for a caller whose last write was at lastWriteMillis, or null */
+    private Replica selectReplica(long lastWriteMillis) {
+        int count = replicas.size();
+        if (count == 0) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        int start = nextReplica.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((start + i) % count);
+            if (replica.isFresh(now, maxStalenessMillis, lastWriteMillis)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+
+    /** read-only transactions sent to a replica */
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    /** read-only transactions sent to the primary as no replica was fresh enough */
+    public long getPrimaryReads() {
+        return primaryReads.get();
+    }
+
+    /** closes the pools of the primary and the replicas */
+    public void close() {
+        List<DataSource> dataSources = new ArrayList<>();
+        dataSources.add(primary);
+        for (Replica replica : replicas) {
+            dataSources.add(replica.getDataSource());
+        }
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) dataSource).close();
+                } catch (IOException e) {
+                    log.warn("close() failed to close {}", dataSource, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.intuit.cg.backendtechassessment.event;
+
+import com.intuit.cg.backendtechassessment.models.Bid;
+
+/**
+ * published by JobMarketplaceService.addNewBid() once a bid is stored. Listeners that keep in-memory state should
+ * use @TransactionalEventListener so that a rolled back bid is never seen.
+ */
+public class BidAcceptedEvent {
+    private final Bid bid;
+
+    public BidAcceptedEvent(Bid bid) {
+        this.bid = bid;
+    }
+
+    public Bid getBid() {
+        return bid;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("BidAcceptedEvent{").append(bid).append("}").toString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.intuit.cg.backendtechassessment.event;
+
+import com.intuit.cg.backendtechassessment.models.Buyer;
+
+/**
+ * published by JobMarketplaceService.addBuyer() once a buyer is stored.
+ */
+public class BuyerCreatedEvent {
+    private final Buyer buyer;
+
+    public BuyerCreatedEvent(Buyer buyer) {
+        this.buyer = buyer;
+    }
+
+    public Buyer getBuyer() {
+        return buyer;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("BuyerCreatedEvent{").append(buyer).append("}").toString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.intuit.cg.backendtechassessment.event;
+
+import com.intuit.cg.backendtechassessment.models.Project;
+
+/**
+ * published by JobMarketplaceService.createProject() once a project is stored.
+ */
+public class ProjectCreatedEvent {
+    private final Project project;
+
+    public ProjectCreatedEvent(Project project) {
+        this.project = project;
+    }
+
+    public Project getProject() {
+        return project;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("ProjectCreatedEvent{").append(project).append("}").toString();
+    }
+}
@@ -0,0 +1,53 @@
+package com.intuit.cg.backendtechassessment.event;
+
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.ProjectView;
+
+/**
+ * published once the final result (bidStatus other than NONE) of a project is stored. The result does not change
+ * after this event, unless ProjectResolver recomputes it. The event is then published again with the previous result.
+ */
+public class ProjectFinalizedEvent {
+    private final Project project;
+    private final int foldedBids;
+    private final ProjectView previous;
+
+    public ProjectFinalizedEvent(Project project) {
+        this(project, 0);
+    }
+
+    /** @param foldedBids no. of bids that were not folded yet and had to be folded to finalize the project */
+    public ProjectFinalizedEvent(Project project, int foldedBids) {
+        this(project, foldedBids, null);
+    }
+
+    /** @param previous the result replaced by a recomputed one, null when the project is finalized */
+    public ProjectFinalizedEvent(Project project, int foldedBids, ProjectView previous) {
+        this.project = project;
+        this.foldedBids = foldedBids;
+        this.previous = previous;
+    }
+
+    public Project getProject() {
+        return project;
+    }
+
+    public int getFoldedBids() {
+        return foldedBids;
+    }
+
+    /** the replaced result, or null if the project was open before */
+    public ProjectView getPrevious() {
+        return previous;
+    }
+
+    public boolean isRecomputed() {
+        return previous != null;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("ProjectFinalizedEvent{").append(project).append(",foldedBids=")
+                .append(foldedBids).append(",previous=").append(previous).append("}").toString();
+    }
+}
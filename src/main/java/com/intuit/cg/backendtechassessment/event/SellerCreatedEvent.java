@@ -0,0 +1,23 @@
+package com.intuit.cg.backendtechassessment.event;
+
+import com.intuit.cg.backendtechassessment.models.Seller;
+
+/**
+ * published by JobMarketplaceService.addSeller() once a seller is stored.
+ */
+public class SellerCreatedEvent {
+    private final Seller seller;
+
+    public SellerCreatedEvent(Seller seller) {
+        this.seller = seller;
+    }
+
+    public Seller getSeller() {
+        return seller;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("SellerCreatedEvent{").append(seller).append("}").toString();
+    }
+}
@@ -0,0 +1,327 @@
+package com.intuit.cg.backendtechassessment.feed;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intuit.cg.backendtechassessment.event.BidAcceptedEvent;
+import com.intuit.cg.backendtechassessment.event.ProjectFinalizedEvent;
+import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.MinBidUpdate;
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes the minimum bid of projects to subscribers (e.g. the /subscribe-min-bid SSE stream) instead of them polling
+ * /get-project-by-id. A subscriber gets the current state of each of its projects on subscribe, a MinBidUpdate each
+ * time a committed bid lowers a project's minimum, and the final result when the project is finalized. It is closed
+ * once all its projects are final.
+ *
+ * Fan-out: an update is serialized to JSON once and the same string is queued to every subscriber of the project.
+ * The bid's thread only queues, a small pool ("min-bid-feed-*") writes to the subscribers. Each subscriber has a
+ * bounded buffer, a subscriber that falls that far behind is dropped (closed) instead of holding up bidders or
+ * buffering without bound. Subscribers, updates and drops are in the "marketplace.feed.*" meters.
+ *
+ * Updates are taken from the BidAcceptedEvent/ProjectFinalizedEvent after commit. These run while the bid holds the
+ * project's ProjectLocks stripe, so the updates of a project are queued in commit order.
+ */
+@Component
+public class MinBidFeed {
+    private static Logger log = LoggerFactory.getLogger(MinBidFeed.class);
+
+    public static final int MAX_PROJECTS = 100; //per subscription
+
+    /** where the updates of a subscriber go, e.g. an SSE connection */
+    public interface Sink {
+        void send(String json) throws IOException;
+        void close();
+    }
+
+    public interface Subscription {
+        /** stop the updates and close the sink */
+        void cancel();
+    }
+
+    private final JobMarketplaceService jobMarketplaceService;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final ExecutorService senders;
+    private final ConcurrentMap<Long, Topic> topics = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public MinBidFeed(JobMarketplaceService jobMarketplaceService, ObjectMapper objectMapper,
+                      @Value("${marketplace.feed.buffer:64}") int bufferSize,
+                      @Value("${marketplace.feed.threads:2}") int threads,
+                      MeterRegistry meterRegistry) {
+        assert(jobMarketplaceService != null);
+        assert(objectMapper != null);
+        assert(meterRegistry != null);
+        this.jobMarketplaceService = jobMarketplaceService;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        AtomicInteger threadNo = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "min-bid-feed-" + threadNo.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("marketplace.feed.subscribers", subscribers, Set::size)
+                .description("open min bid feed subscriptions").register(meterRegistry);
+        FunctionCounter.builder("marketplace.feed.updates", updates, AtomicLong::get)
+                .description("min bid updates published, each serialized once").register(meterRegistry);
+        FunctionCounter.builder("marketplace.feed.dropped", dropped, AtomicLong::get)
+                .description("subscribers dropped because their buffer was full").register(meterRegistry);
+    }
+
+    /**
+     * subscribes the sink to the projects. The current state of each project is sent first.
+     *
+     * @throws IllegalArgumentException if a projectId does not map to a project or there are more than MAX_PROJECTS
+     */
+    public Subscription subscribe(Collection<Long> projectIds, Sink sink) {
+        if (projectIds.isEmpty() || projectIds.size() > MAX_PROJECTS) {
+            throw new IllegalArgumentException("subscribe to 1 to " + MAX_PROJECTS + " projects");
+        }
+        Subscriber subscriber = new Subscriber(sink, projectIds);
+        subscribers.add(subscriber);
+        //register first, so a bid committed while reading the projects is not missed
+        List<Topic> subscribed = new ArrayList<>();
+        for (long projectId : projectIds) {
+            subscribed.add(topics.compute(projectId, (id, topic) -> {
+                topic = topic == null ? new Topic(id) : topic;
+                topic.subscribers.add(subscriber);
+                return topic;
+            }));
+        }
+        try {
+            for (Topic topic : subscribed) {
+                Project project = jobMarketplaceService.getProjectById2(topic.projectId);
+                if (project == null) {
+                    throw new IllegalArgumentException("project for projectId " + topic.projectId + " not found");
+                }
+                topic.join(subscriber, project);
+            }
+        } catch (RuntimeException e) {
+            subscriber.close();
+            throw e;
+        }
+        log.info("subscribe() projectIds={} {} subscribers", projectIds, subscribers.size());
+        return subscriber;
+    }
+
+    @TransactionalEventListener
+    public void onBidAccepted(BidAcceptedEvent event) {
+        Topic topic = topics.get(event.getBid().getProjectId());
+        if (topic != null) {
+            topic.offer(event.getBid());
+        }
+    }
+
+    @TransactionalEventListener
+    public void onProjectFinalized(ProjectFinalizedEvent event) {
+        Topic topic = topics.remove(event.getProject().getId());
+        if (topic != null) {
+            topic.finish(event.getProject());
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        senders.shutdown();
+    }
+
+    private String toJson(MinBidUpdate update) {
+        try {
+            return objectMapper.writeValueAsString(update);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** the subscribers of one project and its minimum bid as last published */
+    private class Topic {
+        final long projectId;
+        final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+        long minBid = Project.DEFAULT_MIN_BID;
+        long minBidId = Project.DEFAULT_MIN_BID_ID;
+        boolean loaded; //minBid includes the stored project, updates are published
+        boolean finished;
+
+        Topic(long projectId) {
+            this.projectId = projectId;
+        }
+
+        /** merge the stored project into the min bid and send the current state to the new subscriber */
+        synchronized void join(Subscriber subscriber, Project project) {
+            if (finished) {
+                return; //the subscriber got the final result with the other subscribers
+            }
+            if (project.getBidStatus() != Project.BidStatus.NONE) {
+                subscriber.offerFinal(projectId, toJson(MinBidUpdate.of(project)));
+                unsubscribe(subscriber, projectId);
+                return;
+            }
+            if (!loaded) {
+                lower(project.getMinBid(), project.getMinBidId());
+                loaded = true;
+            }
+            subscriber.offer(toJson(new MinBidUpdate(projectId, minBid, minBidId, Project.BidStatus.NONE)));
+        }
+
+        synchronized void offer(Bid bid) {
+            if (!finished && lower(bid.getAmount(), bid.getId()) && loaded) {
+                publish(toJson(new MinBidUpdate(projectId, minBid, minBidId, Project.BidStatus.NONE)), false);
+            }
+        }
+
+        synchronized void finish(Project project) {
+            finished = true;
+            publish(toJson(MinBidUpdate.of(project)), true);
+        }
+
+        /** an equal amount does not replace the earlier bid */
+        private boolean lower(long amount, long bidId) {
+            if (amount < minBid || (amount == minBid && bidId < minBidId)) {
+                minBid = amount;
+                minBidId = bidId;
+                return true;
+            }
+            return false;
+        }
+
+        private void publish(String json, boolean last) {
+            updates.incrementAndGet();
+            for (Subscriber subscriber : subscribers) {
+                if (last) {
+                    subscriber.offerFinal(projectId, json);
+                } else {
+                    subscriber.offer(json);
+                }
+            }
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber, long projectId) {
+        topics.computeIfPresent(projectId, (id, topic) -> {
+            topic.subscribers.remove(subscriber);
+            return topic.subscribers.isEmpty() ? null : topic;
+        });
+    }
+
+    /** a sink with its bounded buffer, drained by one sender thread at a time */
+    private class Subscriber implements Subscription {
+        final Sink sink;
+        final Set<Long> openProjectIds = ConcurrentHashMap.newKeySet();
+        final ArrayBlockingQueue<String> buffer = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(Sink sink, Collection<Long> projectIds) {
+            this.sink = sink;
+            this.openProjectIds.addAll(projectIds);
+        }
+
+        void offer(String json) {
+            if (enqueue(json)) {
+                schedule();
+            }
+        }
+
+        /** the last update of the project, the subscriber is closed once it has the last update of every project */
+        void offerFinal(long projectId, String json) {
+            if (enqueue(json)) {
+                openProjectIds.remove(projectId);
+                schedule();
+            }
+        }
+
+        private boolean enqueue(String json) {
+            if (closed.get()) {
+                return false;
+            }
+            if (!buffer.offer(json)) {
+                log.info("enqueue() subscriber of {} too slow, dropped", openProjectIds);
+                dropped.incrementAndGet();
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                String json;
+                while ((json = buffer.poll()) != null && !closed.get()) {
+                    try {
+                        sink.send(json);
+                    } catch (IOException | RuntimeException e) {
+                        log.info("drain() subscriber of {} gone: {}", openProjectIds, e.toString());
+                        close();
+                    }
+                }
+                if (openProjectIds.isEmpty() && buffer.isEmpty()) {
+                    close();
+                }
+                scheduled.set(false);
+            } while (!buffer.isEmpty() && !closed.get() && scheduled.compareAndSet(false, true));
+        }
+
+        @Override
+        public void cancel() {
+            close();
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscribers.remove(this);
+                for (long projectId : openProjectIds) {
+                    unsubscribe(this, projectId);
+                }
+                buffer.clear();
+                sink.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.intuit.cg.backendtechassessment.journal;
+
+import com.intuit.cg.backendtechassessment.models.Bid;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of accepted bids in a memory-mapped file, for the write-behind ingestion mode
+ * (marketplace.journal.enabled, off by default). A bid is acknowledged once it is appended, and
+ * JobMarketplaceService.applyJournal() stores the pending entries in the bid table later, in batches.
+ *
+ * File layout: a 64 byte header (magic, sequence no. of the first entry, last applied sequence no.) followed by fixed
+ * size 64 byte entries. An entry also holds the bid deadline of its project (in seconds), so a replayed bid is not
+ * stored into another project that took the same id, e.g. after the database was lost. Each entry holds its sequence
+ * no. and a CRC32 of its content, so on open the file is scanned up to the first entry that is torn, corrupt or left
+ * over from before the last reset. When all entries are applied and the file is half full it is reset, and entries are
+ * written from the start again.
+ *
+ * With marketplace.journal.sync the mapped pages are forced to disk before append() returns, one force for all the
+ * appends that are waiting (group commit). Without it an acknowledged bid survives a crash of the process but not of
+ * the machine.
+ */
+@Component
+public class BidJournal {
+    private static Logger log = LoggerFactory.getLogger(BidJournal.class);
+    private static final long MAGIC = 0x4249444a524e4c31L; //"BIDJRNL1"
+    static final int HEADER_SIZE = 64;
+    static final int ENTRY_SIZE = 64;
+    private static final int CRC_OFFSET = ENTRY_SIZE - 4;
+    private static final long FULL_WAIT_MILLIS = 10000; //max. wait of an append for the applier to free space
+
+    private final boolean enabled;
+    private final boolean sync;
+    private final long capacity; //no. of entries that fit in the file
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE); //guarded by this
+    private final CRC32 crc = new CRC32(); //guarded by this
+
+    private long firstSeq;    //sequence no. of the entry at HEADER_SIZE
+    private long nextSeq;     //sequence no. of the next append
+    private long appliedSeq;  //entries up to this one are stored in the bid table
+    private final Object forceLock = new Object();
+    private volatile long forcedSeq;
+    private final Counter replayRejected;
+    private final Counter applyRejected;
+
+    /** a journaled bid with the bid deadline its project had when the bid was acknowledged */
+    public static final class Entry {
+        private final Bid bid;
+        private final LocalDateTime projectDeadline;
+
+        Entry(Bid bid, LocalDateTime projectDeadline) {
+            this.bid = bid;
+            this.projectDeadline = projectDeadline;
+        }
+
+        public Bid getBid() {
+            return bid;
+        }
+
+        /** truncated to seconds */
+        public LocalDateTime getProjectDeadline() {
+            return projectDeadline;
+        }
+    }
+
+    public BidJournal(@Value("${marketplace.journal.enabled:false}") boolean enabled,
+                      @Value("${marketplace.journal.path:bids.journal}") String path,
+                      @Value("${marketplace.journal.size-mb:64}") int sizeMb,
+                      @Value("${marketplace.journal.sync:true}") boolean sync,
+                      MeterRegistry meterRegistry) {
+        assert(meterRegistry != null);
+        this.enabled = enabled;
+        this.sync = sync;
+        //an acknowledged bid that is not stored, an alert
+        this.replayRejected = Counter.builder("marketplace.journal.rejected").tag("phase", "replay")
+                .description("journaled bids rejected when stored").register(meterRegistry);
+        this.applyRejected = Counter.builder("marketplace.journal.rejected").tag("phase", "apply")
+                .description("journaled bids rejected when stored").register(meterRegistry);
+        if (!enabled) {
+            this.capacity = 0;
+            return;
+        }
+        if (sizeMb <= 0 || sizeMb > 1024) {
+            throw new IllegalArgumentException("marketplace.journal.size-mb must be within 1..1024");
+        }
+        long size = sizeMb * 1024L * 1024L;
+        this.capacity = (size - HEADER_SIZE) / ENTRY_SIZE;
+        open(Paths.get(path), size);
+        Gauge.builder("marketplace.journal.pending", this, BidJournal::getPendingCount)
+                .description("bids acknowledged but not stored in the bid table yet").register(meterRegistry);
+        FunctionCounter.builder("marketplace.journal.appended", this, journal -> journal.getLastSeq())
+                .description("bids appended to the journal").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void open(Path path, long size) {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot map bid journal " + path, e);
+        }
+        if (buffer.getLong(0) != MAGIC) {
+            firstSeq = 1;
+            appliedSeq = 0;
+            writeHeader();
+            nextSeq = firstSeq;
+            log.info("open() new journal {}", path);
+        } else {
+            firstSeq = buffer.getLong(8);
+            appliedSeq = buffer.getLong(16);
+            nextSeq = firstSeq;
+            while (nextSeq - firstSeq < capacity && isValid(position(nextSeq), nextSeq)) {
+                nextSeq++;
+            }
+            log.info("open() journal {} entries {}..{}, applied up to {}", path, firstSeq, nextSeq - 1, appliedSeq);
+        }
+        //a checkpoint is never ahead of the entries, unless the file was reset after it
+        appliedSeq = Math.max(Math.min(appliedSeq, nextSeq - 1), firstSeq - 1);
+        forcedSeq = nextSeq - 1;
+    }
+
+    /**
+     * appends the bid and sets its bidDate and journalSeq. The bidDate is taken under the journal's lock, so entries
+     * are in bidDate order and a bid stamped before the deadline is appended before any reader after the deadline
+     * looks at the journal. bidDeadline is the project's and is stored with the entry as the project's identity.
+     *
+     * @return the bid
+     * @throws IllegalArgumentException if the bid is stamped after bidDeadline
+     * @throws IllegalStateException if the journal stays full
+     */
+    public Bid append(Bid bid, LocalDateTime bidDeadline) {
+        long seq;
+        synchronized (this) {
+            long waitUntil = System.currentTimeMillis() + FULL_WAIT_MILLIS;
+            while (nextSeq - firstSeq >= capacity) {
+                //the applier resets the file once it has caught up
+                long wait = waitUntil - System.currentTimeMillis();
+                if (wait <= 0) {
+                    throw new IllegalStateException("bid journal full");
+                }
+                try {
+                    wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted waiting for bid journal space");
+                }
+            }
+            LocalDateTime bidDate = LocalDateTime.now();
+            if (bidDate.compareTo(bidDeadline) > 0) {
+                log.info("append() currentDate after bid deadline");
+                throw new IllegalArgumentException("new bid after deadline");
+            }
+            seq = nextSeq;
+            bid.setBidDate(bidDate);
+            bid.setJournalSeq(seq);
+            write(position(seq), bid, bidDeadline);
+            nextSeq++;
+            notifyAll();
+        }
+        if (sync) {
+            force(seq);
+        }
+        return bid;
+    }
+
+    /** forces the pages of all appended entries to disk, unless another thread already did it for seq */
+    private void force(long seq) {
+        synchronized (forceLock) {
+            if (forcedSeq >= seq) {
+                return;
+            }
+            long lastSeq = getLastSeq();
+            buffer.force();
+            forcedSeq = lastSeq;
+        }
+    }
+
+    /** returns up to maxEntries entries that are not applied yet, in sequence order */
+    public synchronized List<Entry> readPending(int maxEntries) {
+        List<Entry> bids = new ArrayList<>();
+        for (long seq = appliedSeq + 1; seq < nextSeq && bids.size() < maxEntries; seq++) {
+            bids.add(read(position(seq)));
+        }
+        return bids;
+    }
+
+    /**
+     * called once on startup with the highest journalSeq in the bid table, which is exact while the header's
+     * checkpoint may be behind it. If the journal has nothing after it (new or deleted file), it continues after it.
+     */
+    public synchronized void recover(long storedSeq) {
+        if (storedSeq >= nextSeq - 1 && nextSeq - firstSeq == 0) {
+            firstSeq = storedSeq + 1;
+            nextSeq = firstSeq;
+            forcedSeq = storedSeq;
+        }
+        appliedSeq = Math.max(appliedSeq, Math.min(storedSeq, nextSeq - 1));
+        writeHeader();
+        log.info("recover() stored up to {}, {} entries to replay", storedSeq, getPendingCount());
+    }
+
+    /** records that the entries up to seq are stored in the bid table */
+    public synchronized void markApplied(long seq) {
+        if (seq <= appliedSeq) {
+            return;
+        }
+        appliedSeq = Math.min(seq, nextSeq - 1);
+        if (appliedSeq == nextSeq - 1 && nextSeq - firstSeq >= capacity / 2) {
+            //caught up, write from the start again. Left over entries fail the sequence check on open
+            log.info("markApplied() reset journal after {} entries", nextSeq - firstSeq);
+            firstSeq = nextSeq;
+        }
+        writeHeader();
+        notifyAll();
+    }
+
+    /** counts a journaled bid that was rejected when stored, replay for the entries left by the last run */
+    public void rejected(boolean replay) {
+        (replay ? replayRejected : applyRejected).increment();
+    }
+
+    /** waits up to timeout for entries that are not applied yet, returns true if there are any */
+    public synchronized boolean awaitPending(long timeout, TimeUnit unit) throws InterruptedException {
+        long waitUntil = System.currentTimeMillis() + unit.toMillis(timeout);
+        while (getPendingCount() == 0) {
+            long wait = waitUntil - System.currentTimeMillis();
+            if (wait <= 0) {
+                return false;
+            }
+            wait(wait);
+        }
+        return true;
+    }
+
+    public synchronized long getPendingCount() {
+        return nextSeq - 1 - appliedSeq;
+    }
+
+    /** sequence no. of the last appended entry, 0 if none */
+    public synchronized long getLastSeq() {
+        return nextSeq - 1;
+    }
+
+    public synchronized long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (channel != null) {
+            synchronized (forceLock) {
+                buffer.force();
+            }
+            channel.close();
+        }
+    }
+
+    private long position(long seq) {
+        return HEADER_SIZE + (seq - firstSeq) * ENTRY_SIZE;
+    }
+
+    private void writeHeader() {
+        buffer.putLong(0, MAGIC);
+        buffer.putLong(8, firstSeq);
+        buffer.putLong(16, appliedSeq);
+    }
+
+    private void write(long position, Bid bid, LocalDateTime projectDeadline) {
+        entry.clear();
+        entry.putLong(bid.getJournalSeq())
+                .putLong(bid.getProjectId())
+                .putLong(bid.getBuyerId())
+                .putLong(bid.getAmount())
+                .putLong(bid.getMinAmount())
+                .putLong(bid.getBidDate().toLocalTime().toNanoOfDay())
+                .putInt((int) bid.getBidDate().toLocalDate().toEpochDay())
+                .put((byte) (bid.isAutoBid() ? 1 : 0))
+                .putInt((int) projectDeadline.toEpochSecond(ZoneOffset.UTC)); //unsigned, up to 2106
+        crc.reset();
+        crc.update(entry.array(), 0, CRC_OFFSET);
+        entry.putInt(CRC_OFFSET, (int) crc.getValue());
+        ByteBuffer target = buffer.duplicate();
+        target.position((int) position);
+        target.put(entry.array());
+    }
+
+    private boolean isValid(long position, long seq) {
+        ByteBuffer source = buffer.duplicate();
+        source.position((int) position);
+        source.get(entry.array());
+        crc.reset();
+        crc.update(entry.array(), 0, CRC_OFFSET);
+        return entry.getLong(0) == seq && entry.getInt(CRC_OFFSET) == (int) crc.getValue();
+    }
+
+    private Entry read(long position) {
+        int p = (int) position;
+        LocalDateTime bidDate = LocalDateTime.of(LocalDate.ofEpochDay(buffer.getInt(p + 48)),
+                LocalTime.ofNanoOfDay(buffer.getLong(p + 40)));
+        Bid bid = new Bid(buffer.getLong(p + 24), bidDate, buffer.getLong(p + 8), buffer.getLong(p + 16),
+                buffer.get(p + 52) == 1, buffer.getLong(p + 32));
+        bid.setJournalSeq(buffer.getLong(p));
+        return new Entry(bid, LocalDateTime.ofEpochSecond(Integer.toUnsignedLong(buffer.getInt(p + 53)), 0,
+                ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,97 @@
+package com.intuit.cg.backendtechassessment.journal;
+
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the BidJournal into the bid table when the write-behind mode is on. A single daemon thread replays what the
+ * last run left in the journal, then calls JobMarketplaceService.applyJournal() whenever bids are appended. Under
+ * load the bids appended while a batch is stored make up the next batch.
+ *
+ * Starts once the application is ready, and does nothing if the journal is not
+ * enabled. A failed batch stays in the journal and is retried.
+ *
+ * The journal only holds the bids that are not stored yet, the rest must outlive a restart too. With the journal on,
+ * the application does not start unless the datasource is persistent (not in-memory and not created on startup by
+ * spring.jpa.hibernate.ddl-auto) or marketplace.snapshot.enabled restores it, see SnapshotStore.
+ */
+@Component
+public class BidJournalWriter {
+    private static Logger log = LoggerFactory.getLogger(BidJournalWriter.class);
+    private static final long IDLE_WAIT_MILLIS = 1000;   //wait for new entries before checking again
+    private static final long RETRY_DELAY_MILLIS = 1000; //wait before retrying a batch that failed
+
+    private final JobMarketplaceService jobMarketplaceService;
+    private final BidJournal bidJournal;
+    private Thread worker;
+
+    public BidJournalWriter(JobMarketplaceService jobMarketplaceService, BidJournal bidJournal,
+                            @Value("${spring.datasource.url:}") String datasourceUrl,
+                            @Value("${spring.jpa.hibernate.ddl-auto:}") String ddlAuto,
+                            @Value("${marketplace.snapshot.enabled:false}") boolean snapshotEnabled) {
+        assert(jobMarketplaceService != null);
+        assert(bidJournal != null);
+        if (bidJournal.isEnabled() && !snapshotEnabled && !isPersistent(datasourceUrl, ddlAuto)) {
+            throw new IllegalStateException("marketplace.journal.enabled needs a persistent spring.datasource or "
+                    + "marketplace.snapshot.enabled, the journaled bids would be replayed into empty tables");
+        }
+        this.jobMarketplaceService = jobMarketplaceService;
+        this.bidJournal = bidJournal;
+    }
+
+    /** false if the tables do not outlive the process */
+    static boolean isPersistent(String datasourceUrl, String ddlAuto) {
+        return !datasourceUrl.isEmpty() && !datasourceUrl.contains(":mem:")
+                && !"create".equals(ddlAuto) && !"create-drop".equals(ddlAuto);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!bidJournal.isEnabled() || worker != null) {
+            return;
+        }
+        worker = new Thread(this::run, "bid-journal-writer");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("start() {} journal entries pending", bidJournal.getPendingCount());
+    }
+
+    /** stops the writer, entries still pending are replayed on the next start */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(RETRY_DELAY_MILLIS);
+            worker = null;
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                int applied = jobMarketplaceService.applyJournal();
+                log.debug("run() applied {} journal entries", applied);
+                bidJournal.awaitPending(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("run() failed to apply journal entries, retry later", e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
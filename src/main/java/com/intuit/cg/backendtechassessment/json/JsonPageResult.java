@@ -0,0 +1,21 @@
+package com.intuit.cg.backendtechassessment.json;
+
+import java.util.List;
+
+/**
+ * one page of a list endpoint. next is the cursor to pass as "after" for the following page, or null when this is
+ * the last page.
+ */
+public class JsonPageResult<T> extends JsonResult<List<T>> {
+
+    Long next;
+
+    public JsonPageResult(List<T> result, Long next) {
+        super(result);
+        this.next = next;
+    }
+    public Long getNext() {
+        return next;
+    }
+
+}
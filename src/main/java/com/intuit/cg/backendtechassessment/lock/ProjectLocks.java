@@ -0,0 +1,107 @@
+package com.intuit.cg.backendtechassessment.lock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped in-process locks by project id. JobMarketplaceService holds the lock of a project around each write
+ * transaction on it (until after commit), so writers of the same project in this process take turns instead of
+ * failing the optimistic version check of Project and retrying. Projects on other stripes are not blocked, and no
+ * database lock is held while waiting.
+ *
+ * Several projects are locked in stripe order, so 2 callers locking overlapping sets cannot deadlock. The locks are
+ * reentrant, a write that calls another write on the same project does not block itself. A write that joins an outer
+ * transaction holds its locks until that transaction completes (lockUntilCompletion()). The outer transaction then
+ * takes stripes write by write, not in one ordered step, so it should be the only writer of its projects, like init().
+ */
+@Component
+public class ProjectLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /** @param stripes no. of locks, rounded up to a power of 2 */
+    public ProjectLocks(@Value("${marketplace.locks.stripes:256}") int stripes) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public <T> T withLock(long projectId, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripe(projectId)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** runs the action holding the locks of all the projects */
+    public <T> T withLocks(Collection<Long> projectIds, Supplier<T> action) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (long projectId : projectIds) {
+            indexes.add(stripe(projectId));
+        }
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                stripes[index].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int index : indexes) {
+                if (locked-- == 0) {
+                    break;
+                }
+                stripes[index].unlock();
+            }
+        }
+    }
+
+    /**
+     * takes the locks of all the projects until the current transaction completes, they are released after its commit
+     * or rollback on the same thread
+     *
+     * @throws IllegalStateException if no transaction synchronization is active
+     */
+    public void lockUntilCompletion(Collection<Long> projectIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("no transaction to hold the project locks until");
+        }
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (long projectId : projectIds) {
+            indexes.add(stripe(projectId));
+        }
+        for (int index : indexes) {
+            stripes[index].lock();
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                for (int index : indexes.descendingSet()) {
+                    stripes[index].unlock();
+                }
+            }
+        });
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    private int stripe(long projectId) {
+        long hash = projectId * 0x9E3779B97F4A7C15L; //spread consecutive ids over the stripes
+        return (int) (hash >>> 32) & mask;
+    }
+}
@@ -0,0 +1,132 @@
+package com.intuit.cg.backendtechassessment.metrics;
+
+import com.intuit.cg.backendtechassessment.event.BidAcceptedEvent;
+import com.intuit.cg.backendtechassessment.event.ProjectCreatedEvent;
+import com.intuit.cg.backendtechassessment.event.ProjectFinalizedEvent;
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Marketplace meters that are not covered by the Spring MVC (http.server.requests) and @Timed service timers
+ * (marketplace.service). Exported by the actuator, e.g. in Prometheus format on /actuator/prometheus.
+ *
+ * marketplace.bids.accepted        bids stored, tagged type=fixed|auto
+ * marketplace.requests.rejected    requests the service rejected with IllegalArgumentException, tagged by endpoint
+ * marketplace.resolution.folded    bids that were not folded yet when a project was finalized, per project
+ * marketplace.auction.close.lag    time from a project's bid deadline until its result is committed
+ * marketplace.projects             no. of projects, tagged by bidStatus
+ *
+ * The counts are taken from the events after commit, so rolled back bids and projects are not counted. The project
+ * counts are loaded from the database on startup and kept up to date from the events.
+ */
+@Component
+public class MarketplaceMetrics {
+    private static Logger log = LoggerFactory.getLogger(MarketplaceMetrics.class);
+
+    private final JobMarketplaceService jobMarketplaceService;
+    private final Counter fixedBids;
+    private final Counter autoBids;
+    private final DistributionSummary foldedBids;
+    private final Timer closeLag;
+    private final Map<Project.BidStatus, AtomicLong> projectCounts = new EnumMap<>(Project.BidStatus.class);
+    private final MeterRegistry meterRegistry;
+
+    public MarketplaceMetrics(JobMarketplaceService jobMarketplaceService, MeterRegistry meterRegistry) {
+        assert(jobMarketplaceService != null);
+        assert(meterRegistry != null);
+        this.jobMarketplaceService = jobMarketplaceService;
+        this.meterRegistry = meterRegistry;
+        this.fixedBids = Counter.builder("marketplace.bids.accepted").tag("type", "fixed")
+                .description("bids stored").register(meterRegistry);
+        this.autoBids = Counter.builder("marketplace.bids.accepted").tag("type", "auto")
+                .description("bids stored").register(meterRegistry);
+        this.foldedBids = DistributionSummary.builder("marketplace.resolution.folded")
+                .description("bids folded when a project was finalized, bids are normally folded when added")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.closeLag = Timer.builder("marketplace.auction.close.lag")
+                .description("time from a project's bid deadline until its result is stored")
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        for (Project.BidStatus bidStatus : Project.BidStatus.values()) {
+            AtomicLong count = new AtomicLong();
+            projectCounts.put(bidStatus, count);
+            Gauge.builder("marketplace.projects", count, AtomicLong::get).tag("bidStatus", bidStatus.name())
+                    .description("no. of projects by bid status").register(meterRegistry);
+        }
+    }
+
+    /** load the no. of projects by status, runs before the web server takes requests */
+    @EventListener(ContextRefreshedEvent.class)
+    public void loadProjectCounts() {
+        Map<Project.BidStatus, Long> counts = jobMarketplaceService.getProjectCountsByStatus();
+        for (Map.Entry<Project.BidStatus, AtomicLong> entry : projectCounts.entrySet()) {
+            entry.getValue().set(counts.getOrDefault(entry.getKey(), 0L));
+        }
+        log.info("loadProjectCounts() {}", counts);
+    }
+
+    @TransactionalEventListener
+    public void onBidAccepted(BidAcceptedEvent event) {
+        (event.getBid().isAutoBid() ? autoBids : fixedBids).increment();
+    }
+
+    @TransactionalEventListener
+    public void onProjectCreated(ProjectCreatedEvent event) {
+        projectCounts.get(Project.BidStatus.NONE).incrementAndGet();
+    }
+
+    @TransactionalEventListener
+    public void onProjectFinalized(ProjectFinalizedEvent event) {
+        Project project = event.getProject();
+        if (event.isRecomputed()) {
+            //the project moves from its previous result, it was not closed now
+            projectCounts.get(event.getPrevious().getBidStatus()).decrementAndGet();
+            projectCounts.get(project.getBidStatus()).incrementAndGet();
+            return;
+        }
+        projectCounts.get(Project.BidStatus.NONE).decrementAndGet();
+        projectCounts.get(project.getBidStatus()).incrementAndGet();
+        foldedBids.record(event.getFoldedBids());
+        closeLag.record(Math.max(0, Duration.between(project.getBidDeadline(), LocalDateTime.now()).toMillis()),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /** count a request the service rejected with IllegalArgumentException */
+    public void rejected(String endpoint) {
+        rejected(endpoint, 1);
+    }
+
+    /** count the requests of a batch the service rejected */
+    public void rejected(String endpoint, int count) {
+        if (count > 0) {
+            Counter.builder("marketplace.requests.rejected").tag("endpoint", endpoint)
+                    .tag("exception", IllegalArgumentException.class.getSimpleName())
+                    .description("requests rejected with IllegalArgumentException").register(meterRegistry)
+                    .increment(count);
+        }
+    }
+
+    public long getProjectCount(Project.BidStatus bidStatus) {
+        return projectCounts.get(bidStatus).get();
+    }
+}
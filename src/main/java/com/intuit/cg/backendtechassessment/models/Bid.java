@@ -1,24 +1,32 @@
 package com.intuit.cg.backendtechassessment.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import javax.persistence.*;
 import java.time.LocalDateTime;
 import java.util.Date;
 
 @Entity
-@Table(name="bid", uniqueConstraints = {@UniqueConstraint(columnNames={"id"})})
+@Table(name="bid", uniqueConstraints = {@UniqueConstraint(columnNames={"id"})},
+        indexes = {@Index(name="idx_bid_project", columnList="projectId,id"),
+                @Index(name="idx_bid_buyer", columnList="buyerId,id")})
 public class Bid {
+    //pooled sequence, ids are taken from the database in blocks of 50 instead of one round trip per insert
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bid_seq")
+    @SequenceGenerator(name = "bid_seq", sequenceName = "bid_seq", allocationSize = 50)
     long id;
     long amount;
     LocalDateTime bidDate;
     long projectId;
     long buyerId;
 
-    boolean processed;
     boolean autoBid;
     long minAmount;   //minimum amount for auto bid mode
     long winningBid;  //remember the winning bid for auto bid mode
+    //sequence no. in the BidJournal for bids taken in write-behind mode, 0 otherwise
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    long journalSeq;
 
     public Bid() {
 
@@ -101,14 +109,6 @@ public class Bid {
         this.buyerId = buyerId;
     }
 
-    public boolean isProcessed() {
-        return processed;
-    }
-
-    public void setProcessed(boolean processed) {
-        this.processed = processed;
-    }
-
     public boolean isAutoBid() {
         return autoBid;
     }
@@ -124,13 +124,25 @@ public class Bid {
     public void setWinningBid(long winningBid) {
         this.winningBid = winningBid;
     }
+
+    public long getJournalSeq() {
+        return journalSeq;
+    }
+
+    public void setJournalSeq(long journalSeq) {
+        this.journalSeq = journalSeq;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("id=");
         sb.append(id).append(",amount=").append(amount).append(",bidDate=").append(bidDate)
                 .append(",projectId=").append(projectId).append(",buyerId=").append(buyerId)
-                .append(",processed=").append(processed).append(",autoBid=").append(autoBid)
+                .append(",autoBid=").append(autoBid)
                 .append(",minAmount=").append(minAmount).append(",winningBid=").append(winningBid);
+        if (journalSeq != 0) {
+            sb.append(",journalSeq=").append(journalSeq);
+        }
         return sb.toString();
     }
 }
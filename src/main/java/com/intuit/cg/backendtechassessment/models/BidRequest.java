@@ -0,0 +1,69 @@
+package com.intuit.cg.backendtechassessment.models;
+
+/** one bid of a /add-new-bids request. Fields default to the same "undefined" values as the /add-new-bid params. */
+public class BidRequest {
+    long amount = -1;
+    long projectId = -1;
+    long buyerId = -1;
+    boolean autoBid;
+    long minAmount = -1;
+
+    public BidRequest() {
+
+    }
+
+    public BidRequest(long amount, long projectId, long buyerId, boolean autoBid, long minAmount) {
+        this.amount = amount;
+        this.projectId = projectId;
+        this.buyerId = buyerId;
+        this.autoBid = autoBid;
+        this.minAmount = minAmount;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(long amount) {
+        this.amount = amount;
+    }
+
+    public long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(long projectId) {
+        this.projectId = projectId;
+    }
+
+    public long getBuyerId() {
+        return buyerId;
+    }
+
+    public void setBuyerId(long buyerId) {
+        this.buyerId = buyerId;
+    }
+
+    public boolean isAutoBid() {
+        return autoBid;
+    }
+
+    public void setAutoBid(boolean autoBid) {
+        this.autoBid = autoBid;
+    }
+
+    public long getMinAmount() {
+        return minAmount;
+    }
+
+    public void setMinAmount(long minAmount) {
+        this.minAmount = minAmount;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("amount=").append(amount).append(",projectId=").append(projectId)
+                .append(",buyerId=").append(buyerId).append(",autoBid=").append(autoBid)
+                .append(",minAmount=").append(minAmount).toString();
+    }
+}
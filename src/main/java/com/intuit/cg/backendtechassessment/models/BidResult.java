@@ -0,0 +1,30 @@
+package com.intuit.cg.backendtechassessment.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** result of one bid of a /add-new-bids request, either the stored bid or the errors that rejected it. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BidResult {
+    Bid bid;
+    List<String> errors;
+
+    public BidResult(Bid bid) {
+        this.bid = bid;
+    }
+
+    public BidResult(String error) {
+        this.errors = new ArrayList<String>();
+        errors.add(error);
+    }
+
+    public Bid getBid() {
+        return bid;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
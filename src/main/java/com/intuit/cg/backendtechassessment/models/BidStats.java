@@ -0,0 +1,71 @@
+package com.intuit.cg.backendtechassessment.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * bid amounts of one project or buyer (id), see BidColumns. Amounts are the bid amounts as entered, in unit of
+ * dollar; an auto bid counts with its starting amount.
+ */
+public class BidStats {
+    long id;
+    long count;
+    long autoCount;
+    long lowestAmount;
+    long highestAmount;
+    double averageAmount;
+    long lowestAutoLimit;
+
+    public BidStats(long id, long count, long autoCount, long lowestAmount, long highestAmount, long sumAmount,
+                    long lowestAutoLimit) {
+        this.id = id;
+        this.count = count;
+        this.autoCount = autoCount;
+        this.lowestAmount = lowestAmount;
+        this.highestAmount = highestAmount;
+        this.averageAmount = count == 0 ? 0 : (double) sumAmount / count;
+        this.lowestAutoLimit = lowestAutoLimit;
+    }
+
+    /** projectId or buyerId, depending on the grouping */
+    public long getId() {
+        return id;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** no. of auto bids among count */
+    public long getAutoCount() {
+        return autoCount;
+    }
+
+    public long getLowestAmount() {
+        return lowestAmount;
+    }
+
+    public long getHighestAmount() {
+        return highestAmount;
+    }
+
+    public double getAverageAmount() {
+        return averageAmount;
+    }
+
+    /**
+     * lowest minimum amount of the auto bids, Project.DEFAULT_MIN_BID if none. not part of the JSON response as it
+     * would reveal the auto bidder's limit
+     */
+    @JsonIgnore
+    public long getLowestAutoLimit() {
+        return lowestAutoLimit;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("BidStats{id=").append(id).append(",count=").append(count)
+                .append(",autoCount=").append(autoCount).append(",lowestAmount=").append(lowestAmount)
+                .append(",highestAmount=").append(highestAmount).append(",averageAmount=").append(averageAmount)
+                .append("}").toString();
+    }
+}
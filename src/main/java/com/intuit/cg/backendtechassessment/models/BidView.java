@@ -0,0 +1,91 @@
+package com.intuit.cg.backendtechassessment.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
+/**
+ * read-only copy of a Bid row for the list endpoints, filled by a JPQL constructor expression (see
+ * BidRepository.findPage()) instead of loading managed entities. Serialized to the same JSON as a Bid.
+ */
+public final class BidView {
+    private final long id;
+    private final long amount;
+    private final LocalDateTime bidDate;
+    private final long projectId;
+    private final long buyerId;
+    private final boolean autoBid;
+    private final long minAmount;
+    private final long winningBid;
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private final long journalSeq;
+
+    public BidView(long id, long amount, LocalDateTime bidDate, long projectId, long buyerId, boolean autoBid,
+                   long minAmount, long winningBid, long journalSeq) {
+        this.id = id;
+        this.amount = amount;
+        this.bidDate = bidDate;
+        this.projectId = projectId;
+        this.buyerId = buyerId;
+        this.autoBid = autoBid;
+        this.minAmount = minAmount;
+        this.winningBid = winningBid;
+        this.journalSeq = journalSeq;
+    }
+
+    public static BidView of(Bid bid) {
+        return new BidView(bid.getId(), bid.getAmount(), bid.getBidDate(), bid.getProjectId(), bid.getBuyerId(),
+                bid.isAutoBid(), bid.getMinAmount(), bid.getWinningBid(), bid.getJournalSeq());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /** fixed bid's amount in unit of dollar */
+    public long getAmount() {
+        return amount;
+    }
+
+    public LocalDateTime getBidDate() {
+        return bidDate;
+    }
+
+    public long getProjectId() {
+        return projectId;
+    }
+
+    public long getBuyerId() {
+        return buyerId;
+    }
+
+    public boolean isAutoBid() {
+        return autoBid;
+    }
+
+    /** auto bid's minimum amount in unit of dollar */
+    public long getMinAmount() {
+        return minAmount;
+    }
+
+    public long getWinningBid() {
+        return winningBid;
+    }
+
+    public long getJournalSeq() {
+        return journalSeq;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("id=");
+        sb.append(id).append(",amount=").append(amount).append(",bidDate=").append(bidDate)
+                .append(",projectId=").append(projectId).append(",buyerId=").append(buyerId)
+                .append(",autoBid=").append(autoBid)
+                .append(",minAmount=").append(minAmount).append(",winningBid=").append(winningBid);
+        if (journalSeq != 0) {
+            sb.append(",journalSeq=").append(journalSeq);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package com.intuit.cg.backendtechassessment.models;
+
+/**
+ * event of the min bid feed: the current minimum bid of a project, and its final result once bidStatus is other than
+ * NONE. minBid is Project.DEFAULT_MIN_BID and minBidId Project.DEFAULT_MIN_BID_ID while there is no bid.
+ */
+public class MinBidUpdate {
+    long projectId;
+    long minBid;
+    long minBidId;
+    Project.BidStatus bidStatus;
+
+    public MinBidUpdate(long projectId, long minBid, long minBidId, Project.BidStatus bidStatus) {
+        this.projectId = projectId;
+        this.minBid = minBid;
+        this.minBidId = minBidId;
+        this.bidStatus = bidStatus;
+    }
+
+    public static MinBidUpdate of(Project project) {
+        return new MinBidUpdate(project.getId(), project.getMinBid(), project.getMinBidId(), project.getBidStatus());
+    }
+
+    public long getProjectId() {
+        return projectId;
+    }
+
+    public long getMinBid() {
+        return minBid;
+    }
+
+    public long getMinBidId() {
+        return minBidId;
+    }
+
+    public Project.BidStatus getBidStatus() {
+        return bidStatus;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("MinBidUpdate{projectId=").append(projectId).append(",minBid=")
+                .append(minBid).append(",minBidId=").append(minBidId).append(",bidStatus=").append(bidStatus)
+                .append("}").toString();
+    }
+}
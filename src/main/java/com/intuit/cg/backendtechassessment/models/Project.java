@@ -1,11 +1,15 @@
 package com.intuit.cg.backendtechassessment.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name="project", uniqueConstraints = {@UniqueConstraint(columnNames={"id"})})
+@Table(name="project", uniqueConstraints = {@UniqueConstraint(columnNames={"id"})},
+        indexes = {@Index(name="idx_project_seller", columnList="sellerId,id"),
+                @Index(name="idx_project_status", columnList="bidStatus,id"),
+                @Index(name="idx_project_deadline", columnList="bidDeadline,id")})
 public class Project {
     public static final long DEFAULT_MIN_BID = Long.MAX_VALUE;
     public static final long DEFAULT_MIN_BID_ID = -1;
@@ -21,6 +25,19 @@ public class Project {
     LocalDateTime bidDeadline;
     BidStatus bidStatus;
 
+    //2 lowest auto bid limits, kept up to date by addNewBid for the auto bid resolution at deadline
+    long autoMinAmount1;
+    long autoBidId1;
+    long autoMinAmount2;
+    long autoBidId2;
+
+    //watermark, id of the last bid folded into minBid and the auto bid limits
+    long lastBidId;
+
+    //optimistic lock, an update based on a stale project fails instead of overwriting a concurrent write
+    @Version
+    long version;
+
     public enum BidStatus {
         NONE,             //No result yet (this usually the case the deadline is not reached yet.)
         MINIMUM_FOUND,    //found minimum after deadline
@@ -42,6 +59,11 @@ public class Project {
         this.minBid = DEFAULT_MIN_BID;
         this.minBidId = DEFAULT_MIN_BID_ID;
         this.bidStatus = BidStatus.NONE;
+        this.autoMinAmount1 = DEFAULT_MIN_BID;
+        this.autoBidId1 = DEFAULT_MIN_BID_ID;
+        this.autoMinAmount2 = DEFAULT_MIN_BID;
+        this.autoBidId2 = DEFAULT_MIN_BID_ID;
+        this.lastBidId = 0;
     }
 
     public long getId() {
@@ -101,6 +123,43 @@ public class Project {
 
     public void setBidStatus(BidStatus bidStatus) { this.bidStatus = bidStatus; }
 
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /** lowest auto bid limit. not part of the JSON response as it would reveal the auto bidder's limit */
+    @JsonIgnore
+    public long getAutoMinAmount1() { return autoMinAmount1; }
+
+    public void setAutoMinAmount1(long autoMinAmount1) { this.autoMinAmount1 = autoMinAmount1; }
+
+    @JsonIgnore
+    public long getAutoBidId1() { return autoBidId1; }
+
+    public void setAutoBidId1(long autoBidId1) { this.autoBidId1 = autoBidId1; }
+
+    /** second lowest auto bid limit */
+    @JsonIgnore
+    public long getAutoMinAmount2() { return autoMinAmount2; }
+
+    public void setAutoMinAmount2(long autoMinAmount2) { this.autoMinAmount2 = autoMinAmount2; }
+
+    @JsonIgnore
+    public long getAutoBidId2() { return autoBidId2; }
+
+    public void setAutoBidId2(long autoBidId2) { this.autoBidId2 = autoBidId2; }
+
+    /** id of the last bid folded into this project, bids with a greater id still need to be folded */
+    @JsonIgnore
+    public long getLastBidId() { return lastBidId; }
+
+    public void setLastBidId(long lastBidId) { this.lastBidId = lastBidId; }
+
     @Override
     public String toString() {
         return new StringBuilder().append("id=").append(id).append(",description=").append(description)
@@ -0,0 +1,72 @@
+package com.intuit.cg.backendtechassessment.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * bid statistics of a project, see ProjectStatsRegistry. Amounts are the bid amounts as entered, in unit of dollar;
+ * an auto bid counts with its starting amount. lowestAmount and lastBidDate are null while there is no bid.
+ */
+public class ProjectBidStats {
+    long projectId;
+    long bidCount;
+    long buyerCount;
+    long fixedCount;
+    long autoCount;
+    Long lowestAmount;
+    double averageAmount;
+    LocalDateTime lastBidDate;
+
+    public ProjectBidStats(long projectId, long bidCount, long buyerCount, long fixedCount, long autoCount,
+                           Long lowestAmount, double averageAmount, LocalDateTime lastBidDate) {
+        this.projectId = projectId;
+        this.bidCount = bidCount;
+        this.buyerCount = buyerCount;
+        this.fixedCount = fixedCount;
+        this.autoCount = autoCount;
+        this.lowestAmount = lowestAmount;
+        this.averageAmount = averageAmount;
+        this.lastBidDate = lastBidDate;
+    }
+
+    public long getProjectId() {
+        return projectId;
+    }
+
+    public long getBidCount() {
+        return bidCount;
+    }
+
+    /** no. of distinct buyers that bid on the project */
+    public long getBuyerCount() {
+        return buyerCount;
+    }
+
+    public long getFixedCount() {
+        return fixedCount;
+    }
+
+    public long getAutoCount() {
+        return autoCount;
+    }
+
+    public Long getLowestAmount() {
+        return lowestAmount;
+    }
+
+    public double getAverageAmount() {
+        return averageAmount;
+    }
+
+    public LocalDateTime getLastBidDate() {
+        return lastBidDate;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("ProjectBidStats{projectId=").append(projectId).append(",bidCount=")
+                .append(bidCount).append(",buyerCount=").append(buyerCount).append(",fixedCount=").append(fixedCount)
+                .append(",autoCount=").append(autoCount).append(",lowestAmount=").append(lowestAmount)
+                .append(",averageAmount=").append(averageAmount).append(",lastBidDate=").append(lastBidDate)
+                .append("}").toString();
+    }
+}
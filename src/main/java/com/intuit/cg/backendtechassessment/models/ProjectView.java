@@ -0,0 +1,89 @@
+package com.intuit.cg.backendtechassessment.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+
+/**
+ * read-only copy of the public columns of a Project, the rows of the list endpoints. Filled by a JPQL constructor
+ * expression (see ProjectRepository.findPage()), so listing projects puts no entity in the persistence context and
+ * leaves nothing to dirty check. Serialized to the same JSON as a Project.
+ */
+public final class ProjectView {
+    private final long id;
+    private final long sellerId;
+    private final String description;
+    private final long maxBudget;
+    private final long minBid;
+    private final long minBidId;
+    private final LocalDateTime bidDeadline;
+    private final Project.BidStatus bidStatus;
+    private final long version;
+
+    public ProjectView(long id, long sellerId, String description, long maxBudget, long minBid, long minBidId,
+                       LocalDateTime bidDeadline, Project.BidStatus bidStatus, long version) {
+        this.id = id;
+        this.sellerId = sellerId;
+        this.description = description;
+        this.maxBudget = maxBudget;
+        this.minBid = minBid;
+        this.minBidId = minBidId;
+        this.bidDeadline = bidDeadline;
+        this.bidStatus = bidStatus;
+        this.version = version;
+    }
+
+    public static ProjectView of(Project project) {
+        return new ProjectView(project.getId(), project.getSellerId(), project.getDescription(),
+                project.getMaxBudget(), project.getMinBid(), project.getMinBidId(), project.getBidDeadline(),
+                project.getBidStatus(), project.getVersion());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getSellerId() {
+        return sellerId;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public long getMaxBudget() {
+        return maxBudget;
+    }
+
+    /** minimum bid up to this moment in time, see getBidStatus() to determine if it is final */
+    public long getMinBid() {
+        return minBid;
+    }
+
+    public long getMinBidId() {
+        return minBidId;
+    }
+
+    public LocalDateTime getBidDeadline() {
+        return bidDeadline;
+    }
+
+    public Project.BidStatus getBidStatus() {
+        return bidStatus;
+    }
+
+    /** the project's version, moved by every update of the row, see ETags */
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("id=").append(id).append(",description=").append(description)
+                .append(",maxBudget=").append(maxBudget).append(",minBid=").append(minBid)
+                .append(",bidDeadline=").append(bidDeadline)
+                .append(",bidStatus=").append(bidStatus)
+                .toString();
+    }
+}
@@ -0,0 +1,181 @@
+package com.intuit.cg.backendtechassessment.models;
+
+import java.util.List;
+
+/**
+ * outcome of recomputing the results of finalized projects, see ProjectResolver. changes lists the projects whose
+ * recomputed result differs from the stored one, up to ProjectResolver.MAX_REPORTED_CHANGES of them in id order;
+ * changedCount is the total.
+ */
+public class ResolutionReport {
+    long fromId;
+    long toId;
+    boolean dryRun;
+    int partitions;
+    long projectCount;
+    long bidCount;
+    long changedCount;
+    long storedCount;
+    long skippedCount;
+    long elapsedMillis;
+    List<Change> changes;
+
+    public ResolutionReport(long fromId, long toId, boolean dryRun, int partitions, long projectCount, long bidCount,
+                            long changedCount, long storedCount, long skippedCount, long elapsedMillis,
+                            List<Change> changes) {
+        this.fromId = fromId;
+        this.toId = toId;
+        this.dryRun = dryRun;
+        this.partitions = partitions;
+        this.projectCount = projectCount;
+        this.bidCount = bidCount;
+        this.changedCount = changedCount;
+        this.storedCount = storedCount;
+        this.skippedCount = skippedCount;
+        this.elapsedMillis = elapsedMillis;
+        this.changes = changes;
+    }
+
+    /** first project id of the range, -1 for the first project */
+    public long getFromId() {
+        return fromId;
+    }
+
+    /** last project id of the range, -1 for the last project */
+    public long getToId() {
+        return toId;
+    }
+
+    /** true if the changes were only reported, not stored */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /** no. of fork-join leaf tasks the projects were split into */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /** no. of finalized projects recomputed */
+    public long getProjectCount() {
+        return projectCount;
+    }
+
+    /** no. of bids read */
+    public long getBidCount() {
+        return bidCount;
+    }
+
+    public long getChangedCount() {
+        return changedCount;
+    }
+
+    /** no. of changed results stored, 0 on a dry run */
+    public long getStoredCount() {
+        return storedCount;
+    }
+
+    /**
+     * no. of changed results not stored: the stored result changed while the project was recomputed, or the rules
+     * give no final status (bidStatus NONE)
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getProjectsPerSecond() {
+        return perSecond(projectCount);
+    }
+
+    public double getBidsPerSecond() {
+        return perSecond(bidCount);
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    private double perSecond(long count) {
+        return count * 1000.0 / Math.max(1, elapsedMillis);
+    }
+
+    /** the stored (previous) and the recomputed result of a project */
+    public static class Change {
+        long projectId;
+        Project.BidStatus previousBidStatus;
+        long previousMinBid;
+        long previousMinBidId;
+        Project.BidStatus bidStatus;
+        long minBid;
+        long minBidId;
+        boolean autoBidApplied;
+
+        public Change(long projectId, Project.BidStatus previousBidStatus, long previousMinBid,
+                      long previousMinBidId, Project.BidStatus bidStatus, long minBid, long minBidId,
+                      boolean autoBidApplied) {
+            this.projectId = projectId;
+            this.previousBidStatus = previousBidStatus;
+            this.previousMinBid = previousMinBid;
+            this.previousMinBidId = previousMinBidId;
+            this.bidStatus = bidStatus;
+            this.minBid = minBid;
+            this.minBidId = minBidId;
+            this.autoBidApplied = autoBidApplied;
+        }
+
+        public long getProjectId() {
+            return projectId;
+        }
+
+        public Project.BidStatus getPreviousBidStatus() {
+            return previousBidStatus;
+        }
+
+        public long getPreviousMinBid() {
+            return previousMinBid;
+        }
+
+        public long getPreviousMinBidId() {
+            return previousMinBidId;
+        }
+
+        public Project.BidStatus getBidStatus() {
+            return bidStatus;
+        }
+
+        public long getMinBid() {
+            return minBid;
+        }
+
+        public long getMinBidId() {
+            return minBidId;
+        }
+
+        /** true if an auto bid won below its own amount, see AuctionResult */
+        public boolean isAutoBidApplied() {
+            return autoBidApplied;
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder().append("Change{projectId=").append(projectId).append(",")
+                    .append(previousBidStatus).append("/").append(previousMinBid).append("/").append(previousMinBidId)
+                    .append("->").append(bidStatus).append("/").append(minBid).append("/").append(minBidId)
+                    .append("}").toString();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("ResolutionReport{fromId=").append(fromId).append(",toId=").append(toId)
+                .append(",dryRun=").append(dryRun).append(",partitions=").append(partitions)
+                .append(",projectCount=").append(projectCount).append(",bidCount=").append(bidCount)
+                .append(",changedCount=").append(changedCount).append(",storedCount=").append(storedCount)
+                .append(",skippedCount=").append(skippedCount).append(",elapsedMillis=").append(elapsedMillis)
+                .append("}").toString();
+    }
+}
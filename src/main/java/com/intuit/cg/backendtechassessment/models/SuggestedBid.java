@@ -0,0 +1,74 @@
+package com.intuit.cg.backendtechassessment.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * percentile bands of the winning minimum bid relative to maxBudget over the finalized projects, see BidPriceSketch.
+ * A band with ratio 0.8 at percentile 50 means half of the projects were won at 80% of their maxBudget or less.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SuggestedBid {
+    long count;
+    Long maxBudget;
+    List<Band> bands;
+
+    public SuggestedBid(long count, Long maxBudget, List<Band> bands) {
+        this.count = count;
+        this.maxBudget = maxBudget;
+        this.bands = bands;
+    }
+
+    /** no. of finalized projects with a minimum bid the bands are based on */
+    public long getCount() {
+        return count;
+    }
+
+    /** the maxBudget the amounts are for, null if none was given */
+    public Long getMaxBudget() {
+        return maxBudget;
+    }
+
+    public List<Band> getBands() {
+        return bands;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Band {
+        int percentile;
+        double ratio;
+        Long amount;
+
+        public Band(int percentile, double ratio, Long amount) {
+            this.percentile = percentile;
+            this.ratio = ratio;
+            this.amount = amount;
+        }
+
+        public int getPercentile() {
+            return percentile;
+        }
+
+        /** winning minimum bid / maxBudget */
+        public double getRatio() {
+            return ratio;
+        }
+
+        /** ratio applied to the maxBudget in unit of dollar, null if no maxBudget was given */
+        public Long getAmount() {
+            return amount;
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder().append("p").append(percentile).append("=").append(ratio).toString();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("SuggestedBid{count=").append(count).append(",maxBudget=")
+                .append(maxBudget).append(",bands=").append(bands).append("}").toString();
+    }
+}
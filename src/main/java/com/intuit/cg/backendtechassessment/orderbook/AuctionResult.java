@@ -0,0 +1,49 @@
+package com.intuit.cg.backendtechassessment.orderbook;
+
+import com.intuit.cg.backendtechassessment.models.Project;
+
+/**
+ * the result of the auction rules for a project's bids, see ProjectOrderBook.resolve(). Immutable.
+ */
+public final class AuctionResult {
+    private final long minBid;
+    private final long minBidId;
+    private final boolean autoBidApplied;
+    private final Project.BidStatus bidStatus;
+
+    public AuctionResult(long minBid, long minBidId, boolean autoBidApplied, Project.BidStatus bidStatus) {
+        this.minBid = minBid;
+        this.minBidId = minBidId;
+        this.autoBidApplied = autoBidApplied;
+        this.bidStatus = bidStatus;
+    }
+
+    /** the final minimum bid, Project.DEFAULT_MIN_BID if there were no bids */
+    public long getMinBid() {
+        return minBid;
+    }
+
+    public long getMinBidId() {
+        return minBidId;
+    }
+
+    /**
+     * true if an auto bid won below its own amount. The winning bid then stores the final minimum in its winningBid,
+     * see JobMarketplaceService.updateBidAndProject()
+     */
+    public boolean isAutoBidApplied() {
+        return autoBidApplied;
+    }
+
+    /** the final status, never NONE. A minimum equal to maxBudget is MINIMUM_FOUND, see ProjectOrderBook.bidStatus() */
+    public Project.BidStatus getBidStatus() {
+        return bidStatus;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("AuctionResult{minBid=").append(minBid).append(",minBidId=").append(minBidId)
+                .append(",autoBidApplied=").append(autoBidApplied).append(",bidStatus=").append(bidStatus)
+                .append("}").toString();
+    }
+}
@@ -0,0 +1,204 @@
+package com.intuit.cg.backendtechassessment.orderbook;
+
+import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.Project;
+
+/**
+ * Folds bids into the minimum bid and the 2 lowest auto bid limits of one project. A book is short lived: a write
+ * builds it from the project row (of()), offers the new bids and copies it back (copyTo()), ProjectResolver folds a
+ * finalized project's bids into a new one. It is used by one thread at a time and is not thread safe. Bids are never
+ * withdrawn so a running minimum is enough, there is no need to keep every amount in a heap. Only the 2 lowest auto
+ * bid limits are kept as they are all the auto bid resolution (resolve()) needs.
+ *
+ * Ties are broken by the lower bid id, which is the same result as folding the bids in insert order. That keeps the
+ * book independent of the order the bids are offered in (e.g. when 2 transactions commit out of order).
+ */
+public class ProjectOrderBook {
+    private static final long BID_OFFSET = 1; //value to reduce amount in each round of auto bid
+
+    private final long projectId;
+
+    private long minBid = Project.DEFAULT_MIN_BID;
+    private long minBidId = Project.DEFAULT_MIN_BID_ID;
+
+    //lowest auto bid limit
+    private long autoMinAmount1 = Project.DEFAULT_MIN_BID;
+    private long autoBidId1 = Project.DEFAULT_MIN_BID_ID;
+    //second lowest auto bid limit
+    private long autoMinAmount2 = Project.DEFAULT_MIN_BID;
+    private long autoBidId2 = Project.DEFAULT_MIN_BID_ID;
+
+    //greatest bid id folded so far
+    private long lastBidId;
+
+    public ProjectOrderBook(long projectId) {
+        this.projectId = projectId;
+    }
+
+    /** creates a book holding the folded state stored in the project row */
+    public static ProjectOrderBook of(Project project) {
+        ProjectOrderBook book = new ProjectOrderBook(project.getId());
+        book.minBid = project.getMinBid();
+        book.minBidId = project.getMinBidId();
+        book.autoMinAmount1 = project.getAutoMinAmount1();
+        book.autoBidId1 = project.getAutoBidId1();
+        book.autoMinAmount2 = project.getAutoMinAmount2();
+        book.autoBidId2 = project.getAutoBidId2();
+        book.lastBidId = project.getLastBidId();
+        return book;
+    }
+
+    /** copies the folded state back into the project row */
+    public void copyTo(Project project) {
+        project.setMinBid(minBid);
+        project.setMinBidId(minBidId);
+        project.setAutoMinAmount1(autoMinAmount1);
+        project.setAutoBidId1(autoBidId1);
+        project.setAutoMinAmount2(autoMinAmount2);
+        project.setAutoBidId2(autoBidId2);
+        project.setLastBidId(lastBidId);
+    }
+
+    public long getProjectId() {
+        return projectId;
+    }
+
+    /** fold a bid into the book. returns true if the current minimum changed. */
+    public boolean offer(Bid bid) {
+        return offer(bid.getId(), bid.getAmount(), bid.isAutoBid(), bid.getMinAmount());
+    }
+
+    public boolean offer(long bidId, long amount, boolean autoBid, long minAmount) {
+        if (bidId == minBidId || bidId == autoBidId1 || bidId == autoBidId2) {
+            return false; //already folded, offering the same bid again is a no-op
+        }
+        lastBidId = Math.max(lastBidId, bidId);
+        if (autoBid) {
+            offerAutoLimit(bidId, minAmount);
+        }
+        if (isLower(amount, bidId, minBid, minBidId)) {
+            minBid = amount;
+            minBidId = bidId;
+            return true;
+        }
+        return false;
+    }
+
+    private void offerAutoLimit(long bidId, long minAmount) {
+        if (isLower(minAmount, bidId, autoMinAmount1, autoBidId1)) {
+            autoMinAmount2 = autoMinAmount1;
+            autoBidId2 = autoBidId1;
+            autoMinAmount1 = minAmount;
+            autoBidId1 = bidId;
+        } else
+        if (isLower(minAmount, bidId, autoMinAmount2, autoBidId2)) {
+            autoMinAmount2 = minAmount;
+            autoBidId2 = bidId;
+        }
+    }
+
+    private static boolean isLower(long amount, long id, long currentAmount, long currentId) {
+        if (currentId == Project.DEFAULT_MIN_BID_ID) {
+            return true;
+        }
+        return amount < currentAmount || (amount == currentAmount && id < currentId);
+    }
+
+    public long getMinBid() {
+        return minBid;
+    }
+
+    public long getMinBidId() {
+        return minBidId;
+    }
+
+    public long getAutoMinAmount1() {
+        return autoMinAmount1;
+    }
+
+    public long getAutoBidId1() {
+        return autoBidId1;
+    }
+
+    public long getAutoMinAmount2() {
+        return autoMinAmount2;
+    }
+
+    public long getAutoBidId2() {
+        return autoBidId2;
+    }
+
+    public long getLastBidId() {
+        return lastBidId;
+    }
+
+    /** no. of auto bids known to the book, capped at 2 */
+    public int getAutoBidCount() {
+        if (autoBidId1 == Project.DEFAULT_MIN_BID_ID) {
+            return 0;
+        }
+        return autoBidId2 == Project.DEFAULT_MIN_BID_ID ? 1 : 2;
+    }
+
+    /**
+     * applies the auto bid rules to the folded bids, see the cases in JobMarketplaceService. Used both to finalize a
+     * project and to recompute the result of a finalized one (ProjectResolver), so a fix of the rules applies to both.
+     */
+    public AuctionResult resolve(long maxBudget) {
+        long resultBid = minBid;
+        long resultBidId = minBidId;
+        boolean autoBidApplied = false;
+        if (autoBidId1 != Project.DEFAULT_MIN_BID_ID && autoBidId2 == Project.DEFAULT_MIN_BID_ID) {
+            //case 2
+            //if minimum bid is the same as the auto bid, skip update amount
+            if (minBidId != autoBidId1) {
+                if (autoMinAmount1 <= (minBid - BID_OFFSET)) {
+                    resultBid = minBid - BID_OFFSET;
+                    resultBidId = autoBidId1;
+                    autoBidApplied = true;
+                } else {
+                    //minBid, fixed bid already wins, no action
+                }
+            }
+        } else
+        if (autoBidId2 != Project.DEFAULT_MIN_BID_ID) {
+            //case 3
+            long autoMinBid = Project.DEFAULT_MIN_BID;
+            if (autoMinAmount1 <= (autoMinAmount2 - BID_OFFSET)) {
+                autoMinBid = autoMinAmount2 - BID_OFFSET;
+            } else
+            if (autoMinAmount1 == autoMinAmount2) {
+                autoMinBid = autoMinAmount1;
+            }
+            if (autoMinBid < minBid) {
+                resultBid = autoMinBid;
+                resultBidId = autoBidId1;
+                autoBidApplied = true;
+            }
+        }
+        return new AuctionResult(resultBid, resultBidId, autoBidApplied, bidStatus(resultBid, maxBudget));
+    }
+
+    /**
+     * the final bid status for the minimum bid, never NONE. A minimum bid equal to maxBudget is within the budget, so
+     * MINIMUM_FOUND
+     */
+    public static Project.BidStatus bidStatus(long minBid, long maxBudget) {
+        if (minBid == Project.DEFAULT_MIN_BID) {
+            return Project.BidStatus.MINIMUM_NOT_FOUND;
+        }
+        if (minBid > maxBudget) {
+            return Project.BidStatus.MINIMUM_TOO_HIGH;
+        }
+        return Project.BidStatus.MINIMUM_FOUND;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append("projectId=").append(projectId).append(",minBid=").append(minBid)
+                .append(",minBidId=").append(minBidId).append(",autoMinAmount1=").append(autoMinAmount1)
+                .append(",autoBidId1=").append(autoBidId1).append(",autoMinAmount2=").append(autoMinAmount2)
+                .append(",autoBidId2=").append(autoBidId2).append(",lastBidId=").append(lastBidId)
+                .toString();
+    }
+}
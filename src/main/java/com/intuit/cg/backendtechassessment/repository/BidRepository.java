@@ -1,20 +1,40 @@
 package com.intuit.cg.backendtechassessment.repository;
 
 import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.BidView;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public interface BidRepository {
-    public List<Bid> findAll();
-    public List<Bid> findAllByProject(long projectId);
-    /** filter out bids that are processed or not processed (includes auto and non auto bids) */
-    public List<Bid> findProcessedByProject(long projectId, boolean processed);
-    /** filter out auto bids. */
-    public List<Bid> findNonAutoProcessedByProject(long projectId, boolean processed);
-    /** filter out non auto bids and sort auto bids (minimum bid) in ascending order. */
-    public List<Bid> findAutoByProject(long projectId);
+    /**
+     * returns up to limit bids with id greater than after, in id order (keyset pagination). The rows are read into
+     * BidView copies, no entity is loaded.
+     *
+     * @param projectId only bids on this project, ignored if < 0
+     * @param buyerId only bids of this buyer, ignored if < 0
+     */
+    public List<BidView> findPage(long projectId, long buyerId, long after, int limit);
+    /**
+     * passes every bid in id order to the consumer, reading them through a forward only cursor. Each bid is detached
+     * after the consumer returns so memory use does not grow with the no. of bids.
+     */
+    public void forEach(Consumer<Bid> consumer);
+    /** bids of the project in id order, as BidView copies */
+    public List<BidView> findAllByProject(long projectId);
+    /** bids of the projects ordered by projectId then id, as BidView copies. One range scan per project */
+    public List<BidView> findAllByProjects(Collection<Long> projectIds);
+    /**
+     * bids of the project with id greater than afterId in id order (includes auto and non auto bids). An index range
+     * scan on (projectId, id), used to fold the bids after a project's lastBidId watermark.
+     */
+    public List<Bid> findByProjectAfter(long projectId, long afterId);
+
+    /** the highest journalSeq of the stored bids, 0 if none came through the BidJournal */
+    public long findMaxJournalSeq();
 
     public Bid find(long id);
     public void save(Bid bid);
@@ -1,7 +1,10 @@
 package com.intuit.cg.backendtechassessment.repository;
 
 import com.intuit.cg.backendtechassessment.models.Bid;
-import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.BidView;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
@@ -9,11 +12,20 @@ import org.springframework.stereotype.Repository;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public class BidRepositoryImpl implements BidRepository{
     private static Logger log = LoggerFactory.getLogger(BidRepositoryImpl.class);
+    private static final int SCROLL_FETCH_SIZE = 1000; //rows the JDBC driver fetches per round trip when scrolling
+    //constructor expression of the list queries, the rows are copied into BidView without creating entities
+    private static final String SELECT_VIEW = "SELECT new com.intuit.cg.backendtechassessment.models.BidView(" +
+            "p.id, p.amount, p.bidDate, p.projectId, p.buyerId, p.autoBid, p.minAmount, p.winningBid, p.journalSeq)" +
+            " FROM Bid p";
 
     private EntityManager em;
 
@@ -28,39 +40,78 @@ public class BidRepositoryImpl implements BidRepository{
     }
 
     @Override
-    public List<Bid> findAll() {
-        Query query = this.getEntityManager().createQuery("SELECT p FROM Bid p");
+    public List<BidView> findPage(long projectId, long buyerId, long after, int limit) {
+        StringBuilder jpql = new StringBuilder(SELECT_VIEW).append(" WHERE p.id>:after");
+        if (projectId >= 0) {
+            jpql.append(" and p.projectId=:projectId");
+        }
+        if (buyerId >= 0) {
+            jpql.append(" and p.buyerId=:buyerId");
+        }
+        jpql.append(" order by p.id");
+
+        TypedQuery<BidView> query = this.getEntityManager().createQuery(jpql.toString(), BidView.class).
+                setParameter("after", after).
+                setMaxResults(limit);
+        if (projectId >= 0) {
+            query.setParameter("projectId", projectId);
+        }
+        if (buyerId >= 0) {
+            query.setParameter("buyerId", buyerId);
+        }
         return query.getResultList();
     }
 
     @Override
-    public List<Bid> findAllByProject(long projectId) {
-        Query query = this.getEntityManager().createQuery("SELECT p FROM Bid p WHERE p.projectId=:projectId").
-                setParameter("projectId", projectId);
-        return query.getResultList();
+    public void forEach(Consumer<Bid> consumer) {
+        Session session = this.getEntityManager().unwrap(Session.class);
+        ScrollableResults results = session.createQuery("SELECT p FROM Bid p order by p.id").
+                setFetchSize(SCROLL_FETCH_SIZE).
+                setReadOnly(true).
+                scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            while (results.next()) {
+                Bid bid = (Bid) results.get(0);
+                consumer.accept(bid);
+                session.evict(bid);
+            }
+        } finally {
+            results.close();
+        }
     }
 
     @Override
-    public List<Bid> findProcessedByProject(long projectId, boolean processed) {
-        Query query = this.getEntityManager().createQuery("SELECT p FROM Bid p WHERE p.projectId=:projectId and p.processed=:processed").
+    public List<BidView> findAllByProject(long projectId) {
+        return this.getEntityManager().createQuery(SELECT_VIEW + " WHERE p.projectId=:projectId order by p.id",
+                BidView.class).
                 setParameter("projectId", projectId).
-                setParameter("processed", processed);
-        return query.getResultList();
+                getResultList();
+    }
+
+    @Override
+    public List<BidView> findAllByProjects(Collection<Long> projectIds) {
+        if (projectIds.isEmpty()) {
+            return new ArrayList<BidView>();
+        }
+        return this.getEntityManager().createQuery(SELECT_VIEW +
+                " WHERE p.projectId in :projectIds order by p.projectId, p.id", BidView.class).
+                setParameter("projectIds", projectIds).
+                getResultList();
     }
 
     @Override
-    public List<Bid> findNonAutoProcessedByProject(long projectId, boolean processed) {
-        Query query = this.getEntityManager().createQuery("SELECT p FROM Bid p WHERE p.projectId=:projectId and p.processed=:processed and p.autoBid=false").
+    public List<Bid> findByProjectAfter(long projectId, long afterId) {
+        Query query = this.getEntityManager().createQuery("SELECT p FROM Bid p WHERE p.projectId=:projectId and p.id>:afterId order by p.id").
                 setParameter("projectId", projectId).
-                setParameter("processed", processed);
+                setParameter("afterId", afterId);
         return query.getResultList();
     }
 
     @Override
-    public List<Bid> findAutoByProject(long projectId){
-        Query query = this.getEntityManager().createQuery("SELECT p FROM Bid p WHERE p.projectId=:projectId and p.autoBid=true order by p.minAmount").
-                setParameter("projectId", projectId);
-        return query.getResultList();
+    public long findMaxJournalSeq() {
+        Long maxJournalSeq = (Long) this.getEntityManager().createQuery("SELECT max(p.journalSeq) FROM Bid p").
+                getSingleResult();
+        return maxJournalSeq == null ? 0 : maxJournalSeq;
     }
 
     @Override
@@ -4,12 +4,16 @@ import com.intuit.cg.backendtechassessment.models.Bid;
 import com.intuit.cg.backendtechassessment.models.Buyer;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface BuyerRepository {
-    public List<Buyer> findAll();
+    /** returns up to limit buyers with id greater than after, in id order (keyset pagination). */
+    public List<Buyer> findPage(long after, int limit);
     public Buyer find(long id);
+    /** returns the ids of the given ids that belong to a buyer */
+    public List<Long> findExistingIds(Collection<Long> ids);
     public void save(Buyer project);
     public void persist(Buyer project);
     public void merge(Buyer project);
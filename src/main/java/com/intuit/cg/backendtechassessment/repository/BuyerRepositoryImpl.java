@@ -9,6 +9,8 @@ import org.springframework.stereotype.Repository;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -28,8 +30,10 @@ public class BuyerRepositoryImpl implements BuyerRepository{
     }
 
     @Override
-    public List<Buyer> findAll() {
-        Query query = this.getEntityManager().createQuery("SELECT p FROM Buyer p");
+    public List<Buyer> findPage(long after, int limit) {
+        Query query = this.getEntityManager().createQuery("SELECT p FROM Buyer p WHERE p.id>:after order by p.id").
+                setParameter("after", after).
+                setMaxResults(limit);
         return query.getResultList();
     }
 
@@ -38,6 +42,16 @@ public class BuyerRepositoryImpl implements BuyerRepository{
         return this.getEntityManager().find(Buyer.class, id);
     }
 
+    @Override
+    public List<Long> findExistingIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<Long>();
+        }
+        Query query = this.getEntityManager().createQuery("SELECT p.id FROM Buyer p WHERE p.id in :ids").
+                setParameter("ids", ids);
+        return query.getResultList();
+    }
+
     @Override
     public void save(Buyer buyer) {
         if(buyer != null && buyer.getId() == 0) {
@@ -1,24 +1,66 @@
 package com.intuit.cg.backendtechassessment.repository;
 
+import com.intuit.cg.backendtechassessment.datasource.ReplicaRoutingDataSource;
+import com.intuit.cg.backendtechassessment.event.BidAcceptedEvent;
+import com.intuit.cg.backendtechassessment.event.BuyerCreatedEvent;
+import com.intuit.cg.backendtechassessment.event.ProjectCreatedEvent;
+import com.intuit.cg.backendtechassessment.event.ProjectFinalizedEvent;
+import com.intuit.cg.backendtechassessment.event.SellerCreatedEvent;
 import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.BidRequest;
+import com.intuit.cg.backendtechassessment.models.BidResult;
+import com.intuit.cg.backendtechassessment.models.BidView;
 import com.intuit.cg.backendtechassessment.models.Buyer;
 import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.ProjectView;
+import com.intuit.cg.backendtechassessment.models.ResolutionReport;
 import com.intuit.cg.backendtechassessment.models.Seller;
+import com.intuit.cg.backendtechassessment.journal.BidJournal;
+import com.intuit.cg.backendtechassessment.lock.ProjectLocks;
+import com.intuit.cg.backendtechassessment.orderbook.AuctionResult;
+import com.intuit.cg.backendtechassessment.orderbook.ProjectOrderBook;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * assume time is measured with default timezone and locale
  *
  * Note: we might want to factor out min bid calculation so that the getProjects method can call it as well.
  *
- * Optimization: In getProjectById we used a query to get new bids that are added after last calculation to save
- * processing time
+ * Optimization: addNewBid folds each new bid into Project.minBid/minBidId and the 2 lowest auto bid limits in the
+ * same transaction as the bid insert. So reading an open project is a single primary key read with no writes.
+ * AuctionCloser finalizes each project as soon as its deadline passes by calling closeProject(), so readers after the
+ * deadline normally get the stored result. The project row is the order book: a write builds a ProjectOrderBook from
+ * it (ProjectOrderBook.of()) and copies it back, no copy is kept in memory.
+ *
+ * Concurrency: Project has a @Version, a write based on a stale project fails at commit instead of losing an update.
+ * Every write on projects (bids, closing) runs in a transaction of its own through writeProjects(), which holds the
+ * projects' ProjectLocks stripes until after commit and retries the transaction on a version conflict, up to
+ * MAX_WRITE_ATTEMPTS times. A write inside an outer transaction (init()) joins it instead, see writeProjects(). Within
+ * this process writers of one project take turns on its stripe, so a conflict only comes from another process (or a
+ * write outside this class) and a hot project does not hold up the others. The stripes are taken before the transaction
+ * begins, so a thread waiting for one holds no database connection (spring.jpa.open-in-view is off). Otherwise the
+ * writers holding the stripes could wait for the pool's connections held by the waiting threads.
+ *
+ * Write-behind: with marketplace.journal.enabled, journalBid() validates a bid with reads only and acknowledges it
+ * once it is appended to the BidJournal. applyJournal() stores the journaled bids through the same path as
+ * addNewBids(), in journal order and with the time they were acknowledged, and is called by BidJournalWriter and
+ * before a project is finalized so no acknowledged bid is left out of its result.
  *
  * Auto Bid:
  * calculate the final minimum bid only when the deadline is passed.
@@ -31,29 +73,55 @@ import java.util.*;
  *       the minimum of the auto bids, fixed bid won. If auto bids minimum is lower than fixed bid, the 2 lowest
  *       auto bid minimum values will be used to define the minimum bid.
  *    4. only auto bids (a special case of case 3)
+ *
+ * The rules are applied by ProjectOrderBook.resolve(). After a fix of the rules, ProjectResolver recomputes the
+ * results of projects finalized before it.
  */
 @Service("jobMarketplaceService")
 public class JobMarketplaceService {
 
     private static Logger log = LoggerFactory.getLogger(JobMarketplaceService.class);
-    private static final long BID_OFFSET = 1; //value to reduce amount in each round of auto bid
+    public static final int MAX_BATCH_SIZE = 1000; //max. no. of bids per addNewBids() call
+    //latency of the @Timed methods, tagged by class and method
+    public static final String SERVICE_TIMER = "marketplace.service";
+    public static final int MAX_WRITE_ATTEMPTS = 5; //tries of a project write that fails the version check
 
     private ProjectRepository projectRepository;
     private BidRepository bidRepository;
     private BuyerRepository buyerRepository;
     private SellerRepository sellerRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private ProjectLocks projectLocks;
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTransactionTemplate;
+    private BidJournal bidJournal;
+    private final ReentrantLock journalLock = new ReentrantLock(); //one applier of the journal at a time
+    private boolean journalRecovered; //guarded by journalLock
+    private long replayUntilSeq; //entries left in the journal by the last run, guarded by journalLock
 
     public JobMarketplaceService(ProjectRepository projectRepository, BidRepository bidRepository,
-                                 BuyerRepository buyerRepository, SellerRepository sellerRepository) {
+                                 BuyerRepository buyerRepository, SellerRepository sellerRepository,
+                                 ApplicationEventPublisher eventPublisher, ProjectLocks projectLocks,
+                                 PlatformTransactionManager transactionManager, BidJournal bidJournal) {
         assert(projectRepository != null);
         assert(bidRepository != null);
         assert(buyerRepository != null);
         assert(sellerRepository != null);
+        assert(eventPublisher != null);
+        assert(projectLocks != null);
+        assert(transactionManager != null);
+        assert(bidJournal != null);
 
         this.projectRepository = projectRepository;
         this.bidRepository = bidRepository;
         this.buyerRepository = buyerRepository;
         this.sellerRepository = sellerRepository;
+        this.eventPublisher = eventPublisher;
+        this.projectLocks = projectLocks;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.bidJournal = bidJournal;
     }
 
     /**
@@ -93,38 +161,83 @@ public class JobMarketplaceService {
         addNewBid(10, project1.getId(), buyer1.getId(), false, 0);
     }
 
-    @Transactional
-    public List<Project> getProjects() {
-        return projectRepository.findAll();
+    /** returns the projects that have no final result yet */
+    @Transactional(readOnly = true)
+    public List<Project> getOpenProjects() {
+        return projectRepository.findByBidStatus(Project.BidStatus.NONE);
     }
 
-    @Transactional
-    public List<Seller> getSellers() {
-        return sellerRepository.findAll();
+    /** returns the no. of projects by bid status, a status without projects is left out */
+    @Transactional(readOnly = true)
+    public Map<Project.BidStatus, Long> getProjectCountsByStatus() {
+        return projectRepository.countByBidStatus();
     }
 
-    @Transactional
-    public List<Buyer> getBuyers() {
-        return buyerRepository.findAll();
+    /** returns the greatest id of a project with a final result, 0 if there is none */
+    @Transactional(readOnly = true)
+    public long getMaxClosedProjectId() {
+        return projectRepository.findMaxClosedId();
     }
 
-    @Transactional
-    public List<Bid> getBids() {
-        return bidRepository.findAll();
+    /**
+     * returns a page of projects, see ProjectRepository.findPage() for the filters. Like the other list reads it runs
+     * in a read-only transaction, which sets the session's flush mode to manual, and reads the rows into views, so
+     * there is nothing to flush or dirty check at commit.
+     */
+    @Transactional(readOnly = true)
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public List<ProjectView> getProjects(long sellerId, Boolean open, LocalDateTime deadlineFrom, LocalDateTime deadlineTo,
+                                     long after, int limit) {
+        return projectRepository.findPage(sellerId, open, deadlineFrom, deadlineTo, after, limit);
     }
 
-    @Transactional
-    public List<Bid> getBidsByProjectId(long projectId) {
+    /** returns the project as stored, without finalizing it, or null if not found. Reads no entity */
+    @Transactional(readOnly = true)
+    public ProjectView getProjectView(long id) {
+        return projectRepository.findView(id);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Seller> getSellers(long after, int limit) {
+        return sellerRepository.findPage(after, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Buyer> getBuyers(long after, int limit) {
+        return buyerRepository.findPage(after, limit);
+    }
+
+    /** returns a page of bids, see BidRepository.findPage() for the filters */
+    @Transactional(readOnly = true)
+    public List<BidView> getBids(long projectId, long buyerId, long after, int limit) {
+        return bidRepository.findPage(projectId, buyerId, after, limit);
+    }
+
+    /** passes every bid to the consumer without loading them all in memory, see BidRepository.forEach() */
+    @Transactional(readOnly = true)
+    public void forEachBid(Consumer<Bid> consumer) {
+        bidRepository.forEach(consumer);
+    }
+
+    /** returns the bids of the project in id order */
+    @Transactional(readOnly = true)
+    public List<BidView> getBidsByProjectId(long projectId) {
         return bidRepository.findAllByProject(projectId);
     }
 
+    /** returns the bids of the projects ordered by projectId then id */
+    @Transactional(readOnly = true)
+    public List<BidView> getBidsByProjectIds(Collection<Long> projectIds) {
+        return bidRepository.findAllByProjects(projectIds);
+    }
+
     /** returns a project with the lowest bid amount or null if project not found. This method does not calculate auto bid */
     // need to determine lowest bid and winner bid (real winner if the lowest bid was entered before bid deadline
     // and current time is after bid deadline)
-    @Transactional
+    @Timed(value = SERVICE_TIMER, histogram = true)
     public Project getProjectById(long id) {
         log.info("getProjectById() id={}", id);
-        Project project = projectRepository.find(id);
+        Project project = readOnlyTransactionTemplate.execute(status -> projectRepository.find(id));
         if (project == null) {
             return null;
         }
@@ -136,53 +249,35 @@ public class JobMarketplaceService {
             return project;
         }
 
-        //process the unprocessed bids to save processing
-        List<Bid> bids = bidRepository.findProcessedByProject(project.getId(), false);
-
-        if (bids != null) {
-            long minBid = project.getMinBid();
-            long minBidId = project.getMinBidId();
-            boolean foundMinBid = false;
-            for (Bid bid : bids) {
-                //check bid was submitted earlier than bid deadline
-                log.info("getProjectById() bids {}", bid.toString());
-                LocalDateTime bidDate = bid.getBidDate();
-
-                if( (bidDate != null && bidDate.compareTo(project.getBidDeadline()) < 0) && bid.getAmount() < minBid) {
-                    minBid = bid.getAmount();
-                    minBidId = bid.getId();
-                    foundMinBid = true;
-                }
-                bid.setProcessed(true);
-                bidRepository.persist(bid);
-            }
-            if(foundMinBid) {
-                project.setMinBid(minBid);
-                project.setMinBidId(minBidId);
-                projectRepository.persist(project);
-            }
+        //minBid is folded by addNewBid, an open project is returned as stored
+        if (currentDate.compareTo(project.getBidDeadline()) <= 0) {
+            return project;
         }
 
         //calculate the final minimum bid only when the deadline is passed.
-        if (currentDate.compareTo(project.getBidDeadline()) > 0) {
-            log.info("getProjectById() calculate miniBid after bid deadline");
-            if(project.getBidStatus() == Project.BidStatus.NONE) {
-                long minBid = project.getMinBid();
-                if (minBid == project.DEFAULT_MIN_BID) {
-                    project.setBidStatus(Project.BidStatus.MINIMUM_NOT_FOUND);
-                } else
-                if (minBid > project.getMaxBudget()) {
-                    project.setBidStatus(Project.BidStatus.MINIMUM_TOO_HIGH);
-                } else
-                if (minBid < project.getMaxBudget()) {
-                    project.setBidStatus(Project.BidStatus.MINIMUM_FOUND);
-                }
-                projectRepository.persist(project);
+        log.info("getProjectById() calculate miniBid after bid deadline");
+        applyJournal();
+        return writeProjects(Collections.singleton(id), () -> {
+            //read again under the lock, skip if another caller just finalized it
+            Project lockedProject = projectRepository.find(id);
+            if(lockedProject.getBidStatus() == Project.BidStatus.NONE) {
+                lockedProject.setBidStatus(ProjectOrderBook.bidStatus(lockedProject.getMinBid(),
+                        lockedProject.getMaxBudget()));
+                projectRepository.persist(lockedProject);
+                eventPublisher.publishEvent(new ProjectFinalizedEvent(lockedProject));
             }
+            return lockedProject;
+        });
+    }
 
-        }
-
-        return project;
+    /**
+     * returns the project as stored on the primary or null, for a response that is cached: a replica may not have the
+     * result ProjectResolver stored last yet
+     */
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public Project getProjectOnPrimary(long id) {
+        return ReplicaRoutingDataSource.onPrimary(() ->
+                readOnlyTransactionTemplate.execute(status -> projectRepository.find(id)));
     }
 
     protected void updateBidAndProject(Project project, Bid bid, long minBid) {
@@ -194,10 +289,10 @@ public class JobMarketplaceService {
     }
 
     /** returns a project with the lowest bid amount or null if project not found. This method calculates auto bid */
-    @Transactional
+    @Timed(value = SERVICE_TIMER, histogram = true)
     public Project getProjectById2(long id) {
         log.info("getProjectById2() id={}", id);
-        Project project = projectRepository.find(id);
+        Project project = readOnlyTransactionTemplate.execute(status -> projectRepository.find(id));
         if (project == null) {
             return null;
         }
@@ -209,91 +304,170 @@ public class JobMarketplaceService {
             return project;
         }
 
-        //process the unprocessed bids to save processing
-        //AY, let this process fixed & auto bid on "amount": List<Bid> bids = bidRepository.findNonAutoProcessedByProject(project.getId(), false);
-        List<Bid> bids = bidRepository.findProcessedByProject(project.getId(), false);
-        if (bids != null) {
-            long minBid = project.getMinBid();
-            long minBidId = project.getMinBidId();
-            boolean foundMinBid = false;
-            for (Bid bid : bids) {
-                //check bid was submitted earlier than bid deadline
-                log.info("getProjectById2() bids {}", bid);
-                LocalDateTime bidDate = bid.getBidDate();
-                if(bid.getAmount() < minBid) {
-                    minBid = bid.getAmount();
-                    minBidId = bid.getId();
-                    foundMinBid = true;
-                }
-                bid.setProcessed(true);
-                bidRepository.persist(bid);
+        //minBid and the auto bid limits are folded by addNewBid, an open project is returned as stored
+        if (currentDate.compareTo(project.getBidDeadline()) <= 0) {
+            return project;
+        }
+
+        //normally AuctionCloser already finalized the project at the deadline, this covers a reader that comes first
+        log.info("getProjectById2() calculate miniBid after bid deadline");
+        return closeProject(id);
+    }
+
+    /**
+     * finalize the result of a project whose deadline has passed. Called by AuctionCloser at the bid deadline.
+     *
+     * @return the project, or null if project not found. The project is returned unchanged if it is already
+     * finalized or its deadline has not passed yet.
+     */
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public Project closeProject(long id) {
+        //store the bids acknowledged before the deadline first
+        applyJournal();
+        return writeProjects(Collections.singleton(id), () -> {
+            Project project = projectRepository.find(id);
+            if (project == null) {
+                return null;
+            }
+            //skip if another caller just finalized it
+            if (project.getBidStatus() != Project.BidStatus.NONE
+                    || LocalDateTime.now().compareTo(project.getBidDeadline()) <= 0) {
+                return project;
             }
-            if(foundMinBid) {
-                project.setMinBid(minBid);
-                project.setMinBidId(minBidId);
+            log.info("closeProject() id={}", id);
+            resolveAuction(project);
+            return project;
+        });
+    }
+
+    /**
+     * stores recomputed results of finalized projects in one transaction, see ProjectResolver. A project is skipped
+     * if its stored result is no longer the change's previous result. The winningBid of the previous and the new
+     * winning bid are set as updateBidAndProject() would have, and a ProjectFinalizedEvent with the previous result
+     * is published for each stored project.
+     *
+     * @return the no. of results stored
+     */
+    public int storeResults(List<ResolutionReport.Change> changes) {
+        List<Long> projectIds = new ArrayList<>(changes.size());
+        for (ResolutionReport.Change change : changes) {
+            projectIds.add(change.getProjectId());
+        }
+        return writeProjects(projectIds, () -> {
+            int stored = 0;
+            for (ResolutionReport.Change change : changes) {
+                Project project = projectRepository.find(change.getProjectId());
+                if (project == null || project.getBidStatus() != change.getPreviousBidStatus()
+                        || project.getMinBid() != change.getPreviousMinBid()
+                        || project.getMinBidId() != change.getPreviousMinBidId()) {
+                    log.info("storeResults() projectId={} result changed meanwhile, skipped", change.getProjectId());
+                    continue;
+                }
+                ProjectView previous = ProjectView.of(project);
+                if (previous.getMinBidId() != Project.DEFAULT_MIN_BID_ID
+                        && previous.getMinBidId() != change.getMinBidId()) {
+                    setWinningBid(previous.getMinBidId(), 0);
+                }
+                if (change.getMinBidId() != Project.DEFAULT_MIN_BID_ID) {
+                    setWinningBid(change.getMinBidId(), change.isAutoBidApplied() ? change.getMinBid() : 0);
+                }
+                project.setMinBid(change.getMinBid());
+                project.setMinBidId(change.getMinBidId());
+                project.setBidStatus(change.getBidStatus());
                 projectRepository.persist(project);
+                eventPublisher.publishEvent(new ProjectFinalizedEvent(project, 0, previous));
+                stored++;
             }
+            return stored;
+        });
+    }
+
+    private void setWinningBid(long bidId, long winningBid) {
+        Bid bid = bidRepository.find(bidId);
+        if (bid != null && bid.getWinningBid() != winningBid) {
+            bid.setWinningBid(winningBid);
+            bidRepository.persist(bid);
         }
+    }
 
-        if (currentDate.compareTo(project.getBidDeadline()) > 0) {
-            log.info("getProjectById2() calculate miniBid after bid deadline");
-            List<Bid> autoBids = bidRepository.findAutoByProject(project.getId());
-            if (autoBids != null) {
-                long minBid = project.getMinBid();
-                if (autoBids.size() == 1) {
-                    //case 2
-                    Bid bid0 = autoBids.get(0);
-                    long minBidId = project.getMinBidId();
-                    //if minimum bid is the same as bid0, skip update amount
-                    if (minBidId != bid0.getId()) {
-                        if (bid0.getMinAmount() <= (minBid - BID_OFFSET)) {
-                            minBid = minBid - BID_OFFSET;
-                            updateBidAndProject(project, bid0, minBid);
-                        } else {
-                            //minBid, fixed bid already wins, no action
-                        }
+    /**
+     * runs a write on the projects in a transaction, holding the projects' locks until after commit. The transaction
+     * is retried if it fails the Project version check, up to MAX_WRITE_ATTEMPTS times.
+     *
+     * When called inside another transaction (e.g. init()) the write joins it. It is not retried, a conflict has marked
+     * the outer transaction rollback-only and fails it. The locks are then held until the outer transaction completes
+     * (ProjectLocks.lockUntilCompletion()), since the changes are only visible after its commit.
+     *
+     * @throws OptimisticLockingFailureException if every attempt failed the version check
+     */
+    protected <T> T writeProjects(Collection<Long> projectIds, Supplier<T> write) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            projectLocks.lockUntilCompletion(projectIds);
+            return write.get();
+        }
+        return projectLocks.withLocks(projectIds, () -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> write.get());
+                } catch (OptimisticLockingFailureException e) {
+                    if (attempt >= MAX_WRITE_ATTEMPTS) {
+                        log.info("writeProjects() projectIds={} version conflict, giving up after {} attempts",
+                                projectIds, attempt);
+                        throw e;
                     }
-                } else
-                if (autoBids.size() > 1) {
-                    //case 3
-                    Bid bid0 = autoBids.get(0);
-                    Bid bid1 = autoBids.get(1);
-
-                    if (bid0.getMinAmount() <= (bid1.getMinAmount() - BID_OFFSET)) {
-                        long autoMinBid = bid1.getMinAmount() - BID_OFFSET;
-                        if (autoMinBid < minBid) {
-                            updateBidAndProject(project, bid0, autoMinBid);
-                        }
-                    } else
-                    if (bid0.getMinAmount() == bid1.getMinAmount()){
-                        long autoMinBid = bid0.getMinAmount();
-                        if (autoMinBid < minBid) {
-                            updateBidAndProject(project, bid0, autoMinBid);
-                        }
+                    log.info("writeProjects() projectIds={} version conflict, attempt {}", projectIds, attempt);
+                    try {
+                        //the other writer is in another process, give it a moment to finish
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(1 << attempt));
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        throw e;
                     }
                 }
             }
+        });
+    }
 
-            if(project.getBidStatus() == Project.BidStatus.NONE) {
-                long minBid = project.getMinBid();
-                if (minBid == project.DEFAULT_MIN_BID) {
-                    project.setBidStatus(Project.BidStatus.MINIMUM_NOT_FOUND);
-                } else
-                if (minBid > project.getMaxBudget()) {
-                    project.setBidStatus(Project.BidStatus.MINIMUM_TOO_HIGH);
-                } else
-                if (minBid < project.getMaxBudget()) {
-                    project.setBidStatus(Project.BidStatus.MINIMUM_FOUND);
-                }
-                projectRepository.persist(project);
+    /**
+     * fold the bids after the project's lastBidId watermark. addNewBid/addNewBids fold every bid they insert and move
+     * the watermark, so this normally finds nothing. It catches bids stored without folding. Called from
+     * writeProjects().
+     *
+     * @return the no. of bids folded
+     */
+    protected int foldNewBids(Project project) {
+        List<Bid> bids = bidRepository.findByProjectAfter(project.getId(), project.getLastBidId());
+        if (!bids.isEmpty()) {
+            log.info("foldNewBids() projectId={} {} bids after watermark {}", project.getId(), bids.size(),
+                    project.getLastBidId());
+            ProjectOrderBook book = ProjectOrderBook.of(project);
+            for (Bid bid : bids) {
+                book.offer(bid);
             }
+            book.copyTo(project);
+            projectRepository.persist(project);
+        }
+        return bids.size();
+    }
 
+    /** apply the auto bids and set the final bid status. Called from writeProjects(). */
+    protected void resolveAuction(Project project) {
+        int foldedBids = foldNewBids(project);
+        //the 2 lowest auto bid limits are kept in the project by addNewBid, no need to load the auto bids
+        AuctionResult result = ProjectOrderBook.of(project).resolve(project.getMaxBudget());
+        if (result.isAutoBidApplied()) {
+            updateBidAndProject(project, bidRepository.find(result.getMinBidId()), result.getMinBid());
         }
 
-        return project;
+        if(project.getBidStatus() == Project.BidStatus.NONE) {
+            project.setBidStatus(result.getBidStatus());
+            projectRepository.persist(project);
+            eventPublisher.publishEvent(new ProjectFinalizedEvent(project, foldedBids));
+        }
     }
 
     @Transactional
+    @Timed(value = SERVICE_TIMER, histogram = true)
     public Project createProject(long sellerId, String description, long maxBudget, LocalDateTime bidDeadline) {
         Seller seller = sellerRepository.find(sellerId);
         if(seller == null) {
@@ -310,6 +484,7 @@ public class JobMarketplaceService {
         }
         Project project = new Project(sellerId, description, maxBudget, bidDeadline);
         projectRepository.save(project);
+        eventPublisher.publishEvent(new ProjectCreatedEvent(project));
 
         return project;
     }
@@ -321,17 +496,242 @@ public class JobMarketplaceService {
      * @throws IllegalArgumentException if projectId does not map to a project, buyerId does not map to a buyer,
      * or date time of addNewBid call is after project's bidding deadline
      */
-    @Transactional
+    @Timed(value = SERVICE_TIMER, histogram = true)
     public Bid addNewBid(long amount, long projectId, long buyerId, boolean autoBid, long minAmount) {
-        //check if projectId, and buyerId are valid
+        //concurrent bids on the same project fold one after another, bids on other projects are not blocked.
+        return writeProjects(Collections.singleton(projectId),
+                () -> insertBid(amount, projectId, buyerId, autoBid, minAmount));
+    }
+
+    private Bid insertBid(long amount, long projectId, long buyerId, boolean autoBid, long minAmount) {
+        //check if projectId, and buyerId are valid.
         Project project = projectRepository.find(projectId);
         if(project == null) {
             log.info("addNewBid() projectId {} not found", projectId);
             throw new IllegalArgumentException("project for projectId not found");
         }
-
         Buyer buyer = buyerRepository.find(buyerId);
-        if(buyer == null) {
+        LocalDateTime currentDate = LocalDateTime.now();
+        checkNewBid(project, buyer != null, buyerId, amount, autoBid, minAmount, currentDate);
+
+        Bid bid = new Bid(amount, currentDate, projectId, buyerId, autoBid, minAmount);
+        bidRepository.save(bid);
+
+        //resolve the minimum bid now, in the same transaction, instead of on the next read
+        ProjectOrderBook book = ProjectOrderBook.of(project);
+        book.offer(bid);
+        book.copyTo(project);
+        projectRepository.persist(project);
+        eventPublisher.publishEvent(new BidAcceptedEvent(bid));
+
+        return bid;
+    }
+
+    /** true if bids are taken through journalBid(), see marketplace.journal.enabled */
+    public boolean isJournalEnabled() {
+        return bidJournal.isEnabled();
+    }
+
+    /**
+     * write-behind version of addNewBid(): validates the bid with reads only and appends it to the BidJournal, the
+     * bid is stored by applyJournal() later. The bid returned has no id yet, it is identified by its journalSeq.
+     *
+     * @throws IllegalArgumentException for the same reasons as addNewBid()
+     * @throws IllegalStateException if the journal is not enabled
+     */
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public Bid journalBid(long amount, long projectId, long buyerId, boolean autoBid, long minAmount) {
+        if (!bidJournal.isEnabled()) {
+            throw new IllegalStateException("bid journal is not enabled");
+        }
+        Project project = readOnlyTransactionTemplate.execute(status -> {
+            Project found = projectRepository.find(projectId);
+            if(found == null) {
+                log.info("journalBid() projectId {} not found", projectId);
+                throw new IllegalArgumentException("project for projectId not found");
+            }
+            checkNewBid(found, buyerRepository.find(buyerId) != null, buyerId, amount, autoBid, minAmount,
+                    LocalDateTime.now());
+            return found;
+        });
+        //the deadline is checked again with the time the journal stamps on the bid
+        return bidJournal.append(new Bid(amount, null, projectId, buyerId, autoBid, minAmount),
+                project.getBidDeadline());
+    }
+
+    /**
+     * stores the journaled bids that are not stored yet, in batches of up to MAX_BATCH_SIZE. The first call replays
+     * what was left in the journal by the last run, skipping the bids already in the bid table.
+     *
+     * A bid whose project is not found, or no longer has the bid deadline stored with the entry (another project with
+     * the same id), is rejected. A rejected bid of the replay was acknowledged by the last run, so it is not skipped:
+     * it stays in the journal with the entries after it, is counted in marketplace.journal.rejected{phase=replay} and
+     * every call fails until it can be stored (e.g. once the database is restored). A bid rejected after the replay
+     * is logged, counted and skipped.
+     *
+     * @return the no. of journal entries applied
+     * @throws IllegalStateException if an entry of the replay is rejected
+     */
+    public int applyJournal() {
+        if (!bidJournal.isEnabled()) {
+            return 0;
+        }
+        journalLock.lock();
+        try {
+            if (!journalRecovered) {
+                //on the primary, a replica behind it would return an older watermark and the bids after it would be
+                //stored twice
+                bidJournal.recover(transactionTemplate.execute(status -> bidRepository.findMaxJournalSeq()));
+                replayUntilSeq = bidJournal.getLastSeq();
+                journalRecovered = true;
+            }
+            int applied = 0;
+            int limit = MAX_BATCH_SIZE;
+            for (List<BidJournal.Entry> entries = bidJournal.readPending(limit); !entries.isEmpty();
+                 entries = bidJournal.readPending(limit)) {
+                Set<Long> projectIds = new HashSet<>();
+                List<Bid> batch = new ArrayList<>(entries.size());
+                List<LocalDateTime> projectDeadlines = new ArrayList<>(entries.size());
+                for (BidJournal.Entry entry : entries) {
+                    projectIds.add(entry.getBid().getProjectId());
+                    batch.add(entry.getBid());
+                    projectDeadlines.add(entry.getProjectDeadline());
+                }
+                List<BidResult> results;
+                try {
+                    results = writeProjects(projectIds, () -> {
+                        List<BidResult> stored = insertBids(batch, projectIds, projectDeadlines);
+                        for (int i = 0; i < stored.size(); i++) {
+                            if (stored.get(i).getErrors() != null && batch.get(i).getJournalSeq() <= replayUntilSeq) {
+                                //roll back, the entries before it are stored without it
+                                throw new ReplayRejectedException(i, stored.get(i).getErrors());
+                            }
+                        }
+                        return stored;
+                    });
+                } catch (ReplayRejectedException e) {
+                    if (e.index > 0) {
+                        limit = e.index;
+                        continue;
+                    }
+                    long journalSeq = batch.get(0).getJournalSeq();
+                    bidJournal.rejected(true);
+                    log.error("applyJournal() journalSeq={} projectId={} rejected on replay {}, kept in the journal",
+                            journalSeq, batch.get(0).getProjectId(), e.errors);
+                    throw new IllegalStateException("journaled bid " + journalSeq + " rejected on replay " + e.errors);
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i).getErrors() != null) {
+                        bidJournal.rejected(false);
+                        log.warn("applyJournal() journalSeq={} rejected {}", batch.get(i).getJournalSeq(),
+                                results.get(i).getErrors());
+                    }
+                }
+                bidJournal.markApplied(batch.get(batch.size() - 1).getJournalSeq());
+                applied += batch.size();
+                limit = MAX_BATCH_SIZE;
+            }
+            return applied;
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /** a journaled bid of the replay was rejected, index is its position in the batch */
+    private static class ReplayRejectedException extends RuntimeException {
+        private final int index;
+        private final List<String> errors;
+
+        ReplayRejectedException(int index, List<String> errors) {
+            super(null, null, false, false);
+            this.index = index;
+            this.errors = errors;
+        }
+    }
+
+    /**
+     * creates new bids for any no. of projects in one transaction. Projects and buyers are looked up with one query
+     * each and the inserts are sent in JDBC batches (see hibernate.jdbc.batch_size). A bid that is rejected does not
+     * stop the others.
+     *
+     * @return one result per request in the same order, holding either the new bid or why it was rejected.
+     * @throws IllegalArgumentException if there are more than MAX_BATCH_SIZE requests
+     */
+    @Timed(value = SERVICE_TIMER, histogram = true)
+    public List<BidResult> addNewBids(List<BidRequest> requests) {
+        if (requests.size() > MAX_BATCH_SIZE) {
+            log.info("addNewBids() {} bids > {}", requests.size(), MAX_BATCH_SIZE);
+            throw new IllegalArgumentException("more than " + MAX_BATCH_SIZE + " bids");
+        }
+        Set<Long> projectIds = new HashSet<>();
+        for (BidRequest request : requests) {
+            projectIds.add(request.getProjectId());
+        }
+        //lock all projects of the batch up front, see ProjectLocks.withLocks() for the order
+        return writeProjects(projectIds, () -> {
+            LocalDateTime currentDate = LocalDateTime.now();
+            List<Bid> bids = new ArrayList<>(requests.size());
+            for (BidRequest request : requests) {
+                bids.add(new Bid(request.getAmount(), currentDate, request.getProjectId(), request.getBuyerId(),
+                        request.isAutoBid(), request.getMinAmount()));
+            }
+            return insertBids(bids, projectIds, null);
+        });
+    }
+
+    /**
+     * stores the new bids that pass checkNewBid() at their bidDate, see addNewBids(). projectDeadlines, if not null,
+     * holds the bid deadline (in seconds) each bid's project must have, see applyJournal()
+     */
+    private List<BidResult> insertBids(List<Bid> bids, Set<Long> projectIds, List<LocalDateTime> projectDeadlines) {
+        Set<Long> buyerIds = new HashSet<>();
+        for (Bid bid : bids) {
+            buyerIds.add(bid.getBuyerId());
+        }
+        Map<Long, ProjectOrderBook> books = new HashMap<>();
+        Map<Long, Project> projects = new HashMap<>();
+        for (Project project : projectRepository.findAllById(projectIds)) {
+            projects.put(project.getId(), project);
+        }
+        Set<Long> knownBuyerIds = new HashSet<>(buyerRepository.findExistingIds(buyerIds));
+
+        List<BidResult> results = new ArrayList<>(bids.size());
+        for (int i = 0; i < bids.size(); i++) {
+            Bid bid = bids.get(i);
+            Project project = projects.get(bid.getProjectId());
+            try {
+                if(project == null) {
+                    throw new IllegalArgumentException("project for projectId not found");
+                }
+                if (projectDeadlines != null
+                        && !project.getBidDeadline().withNano(0).equals(projectDeadlines.get(i))) {
+                    log.info("insertBids() projectId {} has another bid deadline than journaled", project.getId());
+                    throw new IllegalArgumentException("project for projectId not found");
+                }
+                checkNewBid(project, knownBuyerIds.contains(bid.getBuyerId()), bid.getBuyerId(),
+                        bid.getAmount(), bid.isAutoBid(), bid.getMinAmount(), bid.getBidDate());
+            } catch (IllegalArgumentException e) {
+                results.add(new BidResult(e.getMessage()));
+                continue;
+            }
+            bidRepository.persist(bid);
+            books.computeIfAbsent(project.getId(), id -> ProjectOrderBook.of(project)).offer(bid);
+            eventPublisher.publishEvent(new BidAcceptedEvent(bid));
+            results.add(new BidResult(bid));
+        }
+        for (ProjectOrderBook book : books.values()) {
+            Project project = projects.get(book.getProjectId());
+            book.copyTo(project);
+            projectRepository.persist(project);
+        }
+        log.info("addNewBids() {} bids, {} projects", bids.size(), books.size());
+        return results;
+    }
+
+    /** throws IllegalArgumentException with the reason if a new bid on the project is not allowed */
+    private void checkNewBid(Project project, boolean buyerFound, long buyerId, long amount, boolean autoBid,
+                             long minAmount, LocalDateTime currentDate) {
+        if(!buyerFound) {
             log.info("addNewBid() buyerId {} not found", buyerId);
             throw new IllegalArgumentException("buyer for buyerId not found");
         }
@@ -341,22 +741,23 @@ public class JobMarketplaceService {
             throw new IllegalArgumentException("autoBid is true and amount < minAmount");
         }
         //if project's bid deadline is passed, reject bid.
-        LocalDateTime currentDate = LocalDateTime.now();
         LocalDateTime bidDeadline = project.getBidDeadline();
         if (currentDate.compareTo(bidDeadline) > 0) {
             log.info("addNewBid() currentDate after bid deadline");
             throw new IllegalArgumentException("new bid after deadline");
         }
-        Bid bid = new Bid(amount, currentDate, projectId, buyerId, autoBid, minAmount);
-        bidRepository.save(bid);
-
-        return bid;
+        //a journaled bid is stored with the time it was acknowledged, never into a result that is already final
+        if (project.getBidStatus() != Project.BidStatus.NONE) {
+            log.info("addNewBid() projectId {} already finalized", project.getId());
+            throw new IllegalArgumentException("new bid after deadline");
+        }
     }
 
     @Transactional
     public Buyer addBuyer(String name) {
         Buyer buyer = new Buyer(name);
         buyerRepository.save(buyer);
+        eventPublisher.publishEvent(new BuyerCreatedEvent(buyer));
 
         return buyer;
     }
@@ -365,6 +766,7 @@ public class JobMarketplaceService {
     public Seller addSeller(String name) {
         Seller seller = new Seller(name);
         sellerRepository.save(seller);
+        eventPublisher.publishEvent(new SellerCreatedEvent(seller));
 
         return seller;
     }
@@ -1,14 +1,50 @@
 package com.intuit.cg.backendtechassessment.repository;
 
 import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.ProjectView;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public interface ProjectRepository {
-    public List<Project> findAll();
+    /**
+     * returns up to limit projects after the cursor (keyset pagination). The rows are read into ProjectView copies, no
+     * entity is loaded.
+     *
+     * Without a deadline filter the projects with id greater than after are returned in id order. With sellerId the
+     * page is a seek on the (sellerId, id) index after (sellerId, after), with open=true on the (bidStatus, id) index
+     * after (NONE, after), so it costs about limit rows no matter how large the table is. A seller's closed or open
+     * projects are filtered on the seller's index entries, a page then costs at most the seller's projects after the
+     * cursor. The closed projects alone (most projects are past their deadline) and no filter at all walk the primary
+     * key from after, about limit rows as the matching projects are dense. A walk over all the pages
+     * (ProjectResolver, BidPriceSketch) reads each row once.
+     *
+     * With deadlineFrom or deadlineTo the projects are returned in (bidDeadline, id) order, and the page is a seek on
+     * the (bidDeadline, id) index after the (bidDeadline, id) of project after, so it costs about limit rows of the
+     * deadline range no matter how large the table is.
+     *
+     * @param sellerId only projects of this seller, ignored if < 0
+     * @param open true for projects without final result, false for finalized projects, null for both
+     * @param deadlineFrom only projects with bidDeadline >= deadlineFrom, ignored if null
+     * @param deadlineTo only projects with bidDeadline < deadlineTo, ignored if null
+     * @param after the id of the last project of the previous page, 0 for the first page
+     */
+    public List<ProjectView> findPage(long sellerId, Boolean open, LocalDateTime deadlineFrom, LocalDateTime deadlineTo,
+                                      long after, int limit);
+    /** returns the project as a ProjectView copy, or null if not found */
+    public ProjectView findView(long id);
+    public List<Project> findByBidStatus(Project.BidStatus bidStatus);
+    /** no. of projects by bid status, a status without projects is left out */
+    public Map<Project.BidStatus, Long> countByBidStatus();
+    /** greatest id of a project with a final result, 0 if there is none */
+    public long findMaxClosedId();
     public Project find(long id);
+    /** find the projects of the given ids, in id order. unknown ids are left out */
+    public List<Project> findAllById(Collection<Long> ids);
     public void save(Project project);
     public void persist(Project project);
     public void merge(Project project);
@@ -1,6 +1,7 @@
 package com.intuit.cg.backendtechassessment.repository;
 
 import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.ProjectView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
@@ -8,11 +9,29 @@ import org.springframework.stereotype.Repository;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class ProjectRepositoryImpl implements ProjectRepository{
     private static Logger log = LoggerFactory.getLogger(ProjectRepositoryImpl.class);
+    //constructor expression of the list query, the rows are copied into ProjectView without creating entities
+    private static final String SELECT_VIEW = "SELECT new com.intuit.cg.backendtechassessment.models.ProjectView(" +
+            "p.id, p.sellerId, p.description, p.maxBudget, p.minBid, p.minBidId, p.bidDeadline, p.bidStatus, p.version)" +
+            " FROM Project p";
+    //the same columns for a native query, read back by toView()
+    private static final String SELECT_VIEW_COLUMNS = "SELECT p.id, p.seller_id, p.description, p.max_budget, " +
+            "p.min_bid, p.min_bid_id, p.bid_deadline, p.bid_status, p.version FROM project p";
+    //the final statuses, an in list instead of <> NONE so that the predicate is an index condition
+    private static final List<Project.BidStatus> CLOSED = Arrays.asList(Project.BidStatus.MINIMUM_FOUND,
+            Project.BidStatus.MINIMUM_TOO_HIGH, Project.BidStatus.MINIMUM_NOT_FOUND);
 
     private EntityManager em;
 
@@ -27,16 +46,174 @@ public class ProjectRepositoryImpl implements ProjectRepository{
     }
 
     @Override
-    public List<Project> findAll() {
-        Query query = this.getEntityManager().createQuery("SELECT p FROM Project p");
+    public List<ProjectView> findPage(long sellerId, Boolean open, LocalDateTime deadlineFrom, LocalDateTime deadlineTo,
+                                      long after, int limit) {
+        boolean byDeadline = deadlineFrom != null || deadlineTo != null;
+        if (!byDeadline && (sellerId >= 0 || Boolean.TRUE.equals(open))) {
+            return findPageByIndex(sellerId, open, after, limit);
+        }
+        LocalDateTime afterDeadline = null;
+        if (byDeadline && after > 0) {
+            //the cursor is (bidDeadline, id) of the last project of the previous page, the deadline is read by id
+            List<LocalDateTime> deadlines = this.getEntityManager().createQuery(
+                    "SELECT p.bidDeadline FROM Project p WHERE p.id=:after", LocalDateTime.class).
+                    setParameter("after", after).getResultList();
+            if (deadlines.isEmpty()) {
+                return new ArrayList<ProjectView>();
+            }
+            afterDeadline = deadlines.get(0);
+        }
+        List<String> where = new ArrayList<>();
+        if (!byDeadline) {
+            where.add("p.id>:after");
+        } else if (afterDeadline != null) {
+            //the first term is the seek on the (bidDeadline, id) index, the second skips the ties up to the cursor
+            where.add("p.bidDeadline>=:afterDeadline and (p.bidDeadline>:afterDeadline or p.id>:after)");
+        }
+        if (sellerId >= 0) {
+            where.add("p.sellerId=:sellerId");
+        }
+        if (open != null) {
+            where.add(open ? "p.bidStatus=:none" : "p.bidStatus in :closed");
+        }
+        if (deadlineFrom != null) {
+            where.add("p.bidDeadline>=:deadlineFrom");
+        }
+        if (deadlineTo != null) {
+            where.add("p.bidDeadline<:deadlineTo");
+        }
+        StringBuilder jpql = new StringBuilder(SELECT_VIEW);
+        if (!where.isEmpty()) {
+            jpql.append(" WHERE ").append(String.join(" and ", where));
+        }
+        jpql.append(byDeadline ? " order by p.bidDeadline, p.id" : " order by p.id");
+
+        TypedQuery<ProjectView> query = this.getEntityManager().createQuery(jpql.toString(), ProjectView.class).
+                setMaxResults(limit);
+        if (!byDeadline || afterDeadline != null) {
+            query.setParameter("after", after);
+        }
+        if (afterDeadline != null) {
+            query.setParameter("afterDeadline", afterDeadline);
+        }
+        if (sellerId >= 0) {
+            query.setParameter("sellerId", sellerId);
+        }
+        if (open != null) {
+            if (open) {
+                query.setParameter("none", Project.BidStatus.NONE);
+            } else {
+                query.setParameter("closed", CLOSED);
+            }
+        }
+        if (deadlineFrom != null) {
+            query.setParameter("deadlineFrom", deadlineFrom);
+        }
+        if (deadlineTo != null) {
+            query.setParameter("deadlineTo", deadlineTo);
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * a page of a seller's projects or of the open projects, in id order, as a seek on the (seller_id, id) or
+     * (bid_status, id) index. H2 walks the primary key for id>:after in id order however rare the seller or status is,
+     * and JPQL can not name an index, so this is a native query with USE INDEX. Ordering by the equality column first
+     * keeps the page index sorted, H2 reads about limit index entries.
+     */
+    private List<ProjectView> findPageByIndex(long sellerId, Boolean open, long after, int limit) {
+        boolean bySeller = sellerId >= 0;
+        StringBuilder sql = new StringBuilder(SELECT_VIEW_COLUMNS).append(" USE INDEX (")
+                .append(bySeller ? "idx_project_seller" : "idx_project_status").append(") WHERE p.id>:after");
+        if (bySeller) {
+            sql.append(" and p.seller_id=:sellerId");
+        }
+        if (open != null) {
+            sql.append(open ? " and p.bid_status=:none" : " and p.bid_status in :closed");
+        }
+        sql.append(bySeller ? " order by p.seller_id, p.id" : " order by p.bid_status, p.id");
+
+        Query query = this.getEntityManager().createNativeQuery(sql.toString()).setParameter("after", after).
+                setMaxResults(limit);
+        if (bySeller) {
+            query.setParameter("sellerId", sellerId);
+        }
+        if (open != null) {
+            if (open) {
+                query.setParameter("none", Project.BidStatus.NONE.ordinal());
+            } else {
+                List<Integer> closed = new ArrayList<>(CLOSED.size());
+                for (Project.BidStatus bidStatus : CLOSED) {
+                    closed.add(bidStatus.ordinal());
+                }
+                query.setParameter("closed", closed);
+            }
+        }
+        List<Object[]> rows = query.getResultList();
+        List<ProjectView> views = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            views.add(toView(row));
+        }
+        return views;
+    }
+
+    /** a row of SELECT_VIEW_COLUMNS as a ProjectView */
+    private static ProjectView toView(Object[] row) {
+        return new ProjectView(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), (String) row[2],
+                ((Number) row[3]).longValue(), ((Number) row[4]).longValue(), ((Number) row[5]).longValue(),
+                row[6] == null ? null : ((Timestamp) row[6]).toLocalDateTime(),
+                row[7] == null ? null : Project.BidStatus.values()[((Number) row[7]).intValue()],
+                ((Number) row[8]).longValue());
+    }
+
+    @Override
+    public ProjectView findView(long id) {
+        List<ProjectView> views = this.getEntityManager().createQuery(SELECT_VIEW + " WHERE p.id=:id",
+                ProjectView.class).setParameter("id", id).getResultList();
+        return views.isEmpty() ? null : views.get(0);
+    }
+
+    @Override
+    public List<Project> findByBidStatus(Project.BidStatus bidStatus) {
+        Query query = this.getEntityManager().createQuery("SELECT p FROM Project p WHERE p.bidStatus=:bidStatus").
+                setParameter("bidStatus", bidStatus);
         return query.getResultList();
     }
 
+    @Override
+    public Map<Project.BidStatus, Long> countByBidStatus() {
+        List<Object[]> rows = this.getEntityManager().createQuery(
+                "SELECT p.bidStatus, count(p) FROM Project p group by p.bidStatus").getResultList();
+        Map<Project.BidStatus, Long> counts = new EnumMap<>(Project.BidStatus.class);
+        for (Object[] row : rows) {
+            counts.put((Project.BidStatus) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+
+    @Override
+    public long findMaxClosedId() {
+        Long maxId = (Long) this.getEntityManager().createQuery(
+                "SELECT max(p.id) FROM Project p where p.bidStatus <> :none").
+                setParameter("none", Project.BidStatus.NONE).getSingleResult();
+        return maxId == null ? 0 : maxId;
+    }
+
     @Override
     public Project find(long id) {
         return this.getEntityManager().find(Project.class, id);
     }
 
+    @Override
+    public List<Project> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<Project>();
+        }
+        Query query = this.getEntityManager().createQuery("SELECT p FROM Project p WHERE p.id in :ids order by p.id").
+                setParameter("ids", ids);
+        return query.getResultList();
+    }
+
     @Override
     public void save(Project project) {
         if(project != null && project.getId() == 0) {
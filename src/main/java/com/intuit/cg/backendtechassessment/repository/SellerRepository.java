@@ -7,7 +7,8 @@ import java.util.List;
 
 @Repository
 public interface SellerRepository {
-    public List<Seller> findAll();
+    /** returns up to limit sellers with id greater than after, in id order (keyset pagination). */
+    public List<Seller> findPage(long after, int limit);
     public Seller find(long id);
     public void save(Seller project);
     public void persist(Seller project);
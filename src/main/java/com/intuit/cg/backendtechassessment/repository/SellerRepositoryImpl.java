@@ -27,8 +27,10 @@ public class SellerRepositoryImpl implements SellerRepository{
     }
 
     @Override
-    public List<Seller> findAll() {
-        Query query = this.getEntityManager().createQuery("SELECT p FROM Seller p");
+    public List<Seller> findPage(long after, int limit) {
+        Query query = this.getEntityManager().createQuery("SELECT p FROM Seller p WHERE p.id>:after order by p.id").
+                setParameter("after", after).
+                setMaxResults(limit);
         return query.getResultList();
     }
 
@@ -0,0 +1,207 @@
+package com.intuit.cg.backendtechassessment.resolution;
+
+import com.intuit.cg.backendtechassessment.models.BidView;
+import com.intuit.cg.backendtechassessment.models.ProjectView;
+import com.intuit.cg.backendtechassessment.models.ResolutionReport;
+import com.intuit.cg.backendtechassessment.orderbook.AuctionResult;
+import com.intuit.cg.backendtechassessment.orderbook.ProjectOrderBook;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Recomputes the results of finalized projects from their bids, e.g. after a fix of the auto bid rules in
+ * ProjectOrderBook.resolve(). A project finalized before the fix keeps its stored minBid/bidStatus otherwise, as
+ * getProjectById2() only resolves a project once.
+ *
+ * The finalized projects of the id range are split into partitions of marketplace.resolution.partition-size projects
+ * over a fork-join pool of marketplace.resolution.parallelism threads (no. of processors by default). A partition
+ * reads the bids of all its projects in one query ordered by project and id, folds each project's bids into a new
+ * ProjectOrderBook and applies the rules. The changed results of a partition are stored in one transaction (see
+ * JobMarketplaceService.storeResults()), so Hibernate sends the updates in JDBC batches.
+ *
+ * A stored result is published again as a ProjectFinalizedEvent with the previous result, so the caches, metrics and
+ * the snapshot delta log follow it.
+ */
+@Component
+public class ProjectResolver {
+    private static Logger log = LoggerFactory.getLogger(ProjectResolver.class);
+    public static final int MAX_REPORTED_CHANGES = 1000; //changes listed in the report, the rest are only counted
+    private static final int PAGE_SIZE = 1000; //finalized projects read per query when listing the range
+
+    private final JobMarketplaceService jobMarketplaceService;
+    private final int partitionSize;
+    private final ForkJoinPool pool;
+
+    public ProjectResolver(JobMarketplaceService jobMarketplaceService,
+                           @Value("${marketplace.resolution.parallelism:0}") int parallelism,
+                           @Value("${marketplace.resolution.partition-size:500}") int partitionSize) {
+        assert(jobMarketplaceService != null);
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("marketplace.resolution.partition-size must be > 0");
+        }
+        this.jobMarketplaceService = jobMarketplaceService;
+        this.partitionSize = partitionSize;
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("project-resolver-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * recomputes the finalized projects with fromId <= id <= toId
+     *
+     * @param fromId first project id, < 0 for the first project
+     * @param toId last project id, < 0 for the last project
+     * @param dryRun only report the changes, store nothing
+     */
+    public ResolutionReport resolve(long fromId, long toId, boolean dryRun) {
+        if (fromId >= 0 && toId >= 0 && fromId > toId) {
+            throw new IllegalArgumentException("fromId > toId");
+        }
+        long start = System.nanoTime();
+        List<ProjectView> projects = findFinalized(fromId, toId);
+        Partial total = projects.isEmpty() ? new Partial()
+                : pool.invoke(new Partition(projects, 0, projects.size(), dryRun));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        ResolutionReport report = new ResolutionReport(fromId, toId, dryRun, total.partitions, total.projects,
+                total.bids, total.changed, total.stored, total.skipped, elapsedMillis, total.changes);
+        log.info("resolve() {}", report);
+        return report;
+    }
+
+    private List<ProjectView> findFinalized(long fromId, long toId) {
+        List<ProjectView> projects = new ArrayList<>();
+        long after = fromId < 0 ? 0 : fromId - 1;
+        List<ProjectView> page;
+        do {
+            page = jobMarketplaceService.getProjects(-1, false, null, null, after, PAGE_SIZE);
+            for (ProjectView project : page) {
+                if (toId >= 0 && project.getId() > toId) {
+                    return projects;
+                }
+                projects.add(project);
+                after = project.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+        return projects;
+    }
+
+    /** recomputes the projects of one partition, they are in id order */
+    private Partial resolvePartition(List<ProjectView> projects, boolean dryRun) {
+        List<Long> projectIds = new ArrayList<>(projects.size());
+        for (ProjectView project : projects) {
+            projectIds.add(project.getId());
+        }
+        List<BidView> bids = jobMarketplaceService.getBidsByProjectIds(projectIds);
+        Partial partial = new Partial();
+        partial.partitions = 1;
+        partial.projects = projects.size();
+        partial.bids = bids.size();
+
+        List<ResolutionReport.Change> changes = new ArrayList<>();
+        int next = 0;
+        for (ProjectView project : projects) {
+            //the bids are ordered by project like the projects, fold the run of the project's bids
+            ProjectOrderBook book = new ProjectOrderBook(project.getId());
+            while (next < bids.size() && bids.get(next).getProjectId() == project.getId()) {
+                BidView bid = bids.get(next++);
+                book.offer(bid.getId(), bid.getAmount(), bid.isAutoBid(), bid.getMinAmount());
+            }
+            AuctionResult result = book.resolve(project.getMaxBudget());
+            if (result.getBidStatus() == project.getBidStatus() && result.getMinBid() == project.getMinBid()
+                    && result.getMinBidId() == project.getMinBidId()) {
+                continue;
+            }
+            ResolutionReport.Change change = new ResolutionReport.Change(project.getId(), project.getBidStatus(),
+                    project.getMinBid(), project.getMinBidId(), result.getBidStatus(), result.getMinBid(),
+                    result.getMinBidId(), result.isAutoBidApplied());
+            partial.add(change);
+            changes.add(change);
+        }
+        if (!dryRun && !changes.isEmpty()) {
+            int stored = jobMarketplaceService.storeResults(changes);
+            partial.stored = stored;
+            partial.skipped += changes.size() - stored;
+        }
+        return partial;
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    /** splits the projects in halves until a part fits in a partition */
+    private class Partition extends RecursiveTask<Partial> {
+        private final List<ProjectView> projects;
+        private final int from;
+        private final int to;
+        private final boolean dryRun;
+
+        Partition(List<ProjectView> projects, int from, int to, boolean dryRun) {
+            this.projects = projects;
+            this.from = from;
+            this.to = to;
+            this.dryRun = dryRun;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= partitionSize) {
+                return resolvePartition(projects.subList(from, to), dryRun);
+            }
+            int middle = (from + to) >>> 1;
+            Partition lower = new Partition(projects, from, middle, dryRun);
+            lower.fork();
+            Partial upper = new Partition(projects, middle, to, dryRun).compute();
+            return lower.join().merge(upper);
+        }
+    }
+
+    /** the counts of one or more partitions, merged up the fork-join tree */
+    private static class Partial {
+        int partitions;
+        long projects;
+        long bids;
+        long changed;
+        long stored;
+        long skipped;
+        final List<ResolutionReport.Change> changes = new ArrayList<>();
+
+        void add(ResolutionReport.Change change) {
+            changed++;
+            if (changes.size() < MAX_REPORTED_CHANGES) {
+                changes.add(change);
+            }
+        }
+
+        /** adds the counts of the partitions after this one, the changes stay in project id order */
+        Partial merge(Partial upper) {
+            partitions += upper.partitions;
+            projects += upper.projects;
+            bids += upper.bids;
+            changed += upper.changed;
+            stored += upper.stored;
+            skipped += upper.skipped;
+            for (ResolutionReport.Change change : upper.changes) {
+                if (changes.size() >= MAX_REPORTED_CHANGES) {
+                    break;
+                }
+                changes.add(change);
+            }
+            return this;
+        }
+    }
+}
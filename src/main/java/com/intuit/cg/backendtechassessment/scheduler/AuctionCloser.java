@@ -0,0 +1,134 @@
+package com.intuit.cg.backendtechassessment.scheduler;
+
+import com.intuit.cg.backendtechassessment.event.ProjectCreatedEvent;
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.repository.JobMarketplaceService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finalizes each project as soon as its bid deadline passes, so the first reader after the deadline does not pay for
+ * the auto bid resolution and /projects does not show a stale NONE status.
+ *
+ * Open projects are kept in a DelayQueue ordered by deadline, loaded from the open projects on startup and added to
+ * when a project is created. A single daemon thread takes each project off the queue when its deadline passes and
+ * calls JobMarketplaceService.closeProject(). The no. of projects waiting is in the "marketplace.auction.pending" gauge,
+ * the time between the deadline and the stored result in "marketplace.auction.close.lag" (see MarketplaceMetrics).
+ */
+@Component
+public class AuctionCloser {
+    private static Logger log = LoggerFactory.getLogger(AuctionCloser.class);
+    private static final long RETRY_DELAY_MILLIS = 1000; //wait before retrying a project that failed to close
+
+    private final JobMarketplaceService jobMarketplaceService;
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+    private Thread worker;
+
+    public AuctionCloser(JobMarketplaceService jobMarketplaceService, MeterRegistry meterRegistry) {
+        assert(jobMarketplaceService != null);
+        assert(meterRegistry != null);
+        this.jobMarketplaceService = jobMarketplaceService;
+        Gauge.builder("marketplace.auction.pending", queue, DelayQueue::size)
+                .description("open projects waiting for their bid deadline")
+                .register(meterRegistry);
+    }
+
+    /** load the open projects and start closing them. runs before the web server takes requests */
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        queue.clear();
+        for (Project project : jobMarketplaceService.getOpenProjects()) {
+            schedule(project.getId(), project.getBidDeadline());
+        }
+        log.info("start() {} open projects scheduled", queue.size());
+        if (worker == null) {
+            worker = new Thread(this::run, "auction-closer");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    @TransactionalEventListener
+    public void onProjectCreated(ProjectCreatedEvent event) {
+        Project project = event.getProject();
+        schedule(project.getId(), project.getBidDeadline());
+    }
+
+    public void schedule(long projectId, LocalDateTime bidDeadline) {
+        long deadlineMillis = bidDeadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        //closeProject() needs the current time to be after the deadline, fire 1ms later
+        queue.offer(new Deadline(projectId, deadlineMillis, deadlineMillis + 1));
+    }
+
+    /** no. of projects waiting for their deadline */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Deadline deadline;
+            try {
+                deadline = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                Project project = jobMarketplaceService.closeProject(deadline.projectId);
+                if (project != null && project.getBidStatus() == Project.BidStatus.NONE
+                        && LocalDateTime.now().compareTo(project.getBidDeadline()) <= 0) {
+                    //deadline was moved later, wait for the new one
+                    schedule(project.getId(), project.getBidDeadline());
+                }
+            } catch (RuntimeException e) {
+                log.error("run() failed to close projectId={}, retry later", deadline.projectId, e);
+                queue.offer(new Deadline(deadline.projectId, deadline.deadlineMillis,
+                        System.currentTimeMillis() + RETRY_DELAY_MILLIS));
+            }
+        }
+    }
+
+    private static class Deadline implements Delayed {
+        final long projectId;
+        final long deadlineMillis;
+        final long fireMillis;
+
+        Deadline(long projectId, long deadlineMillis, long fireMillis) {
+            this.projectId = projectId;
+            this.deadlineMillis = deadlineMillis;
+            this.fireMillis = fireMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(fireMillis, ((Deadline) other).fireMillis);
+        }
+    }
+}
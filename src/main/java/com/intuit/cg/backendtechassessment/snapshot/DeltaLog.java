@@ -0,0 +1,108 @@
+package com.intuit.cg.backendtechassessment.snapshot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes after a snapshot, one file per snapshot interval. Each entry is the length of a
+ * SnapshotCodec record, the record and a CRC32 of it, so reading stops at an entry torn by a crash. Entries are
+ * written to the file as they come (no user space buffer), so they survive a crash of the process.
+ */
+class DeltaLog {
+    private static Logger log = LoggerFactory.getLogger(DeltaLog.class);
+
+    interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    interface RecordReader {
+        /** @param type SnapshotCodec record type, the fields of the record follow in the input */
+        void read(byte type, DataInputStream in) throws IOException;
+    }
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final CRC32 crc = new CRC32();
+    private final FileChannel channel;
+    private final Path path;
+    private long entries;
+
+    DeltaLog(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    synchronized void append(RecordWriter record) throws IOException {
+        bytes.reset();
+        out.writeInt(0); //length, filled in below
+        record.write(out);
+        int length = bytes.size() - 4;
+        crc.reset();
+        crc.update(bytes.toByteArray(), 4, length);
+        out.writeInt((int) crc.getValue());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        buffer.putInt(0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        entries++;
+    }
+
+    synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+        log.info("close() {} {} entries", path, entries);
+    }
+
+    /**
+     * passes each record of the file to the reader, up to the end of the file or the first torn entry
+     *
+     * @return the no. of records read
+     */
+    static long read(Path path, RecordReader reader) throws IOException {
+        long records = 0;
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] record;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > 1 << 20) {
+                        log.warn("read() {} bad entry length {} after {} records", path, length, records);
+                        break;
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+                    crc.reset();
+                    crc.update(record, 0, length);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        log.warn("read() {} bad checksum after {} records", path, records);
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+                reader.read(recordIn.readByte(), recordIn);
+                records++;
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,149 @@
+package com.intuit.cg.backendtechassessment.snapshot;
+
+import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.Buyer;
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.Seller;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Binary records of the snapshot and delta log files. A record is a type byte followed by the fields of the row in
+ * a fixed order, written with DataOutput. Dates are written as epoch day and nano of day, so they are restored
+ * exactly without any time zone.
+ */
+final class SnapshotCodec {
+    static final byte END = 0;
+    static final byte SELLER = 1;
+    static final byte BUYER = 2;
+    static final byte PROJECT = 3;            //a project as stored, or created
+    static final byte BID = 4;
+    static final byte PROJECT_FINALIZED = 5;  //the final result of a project
+
+    private SnapshotCodec() {
+    }
+
+    static void writeSeller(DataOutput out, Seller seller) throws IOException {
+        out.writeByte(SELLER);
+        out.writeLong(seller.getId());
+        writeString(out, seller.getName());
+    }
+
+    static Seller readSeller(DataInput in) throws IOException {
+        Seller seller = new Seller();
+        seller.setId(in.readLong());
+        seller.setName(readString(in));
+        return seller;
+    }
+
+    static void writeBuyer(DataOutput out, Buyer buyer) throws IOException {
+        out.writeByte(BUYER);
+        out.writeLong(buyer.getId());
+        writeString(out, buyer.getName());
+    }
+
+    static Buyer readBuyer(DataInput in) throws IOException {
+        Buyer buyer = new Buyer();
+        buyer.setId(in.readLong());
+        buyer.setName(readString(in));
+        return buyer;
+    }
+
+    /** @param type PROJECT or PROJECT_FINALIZED */
+    static void writeProject(DataOutput out, byte type, Project project) throws IOException {
+        out.writeByte(type);
+        out.writeLong(project.getId());
+        out.writeLong(project.getSellerId());
+        writeString(out, project.getDescription());
+        out.writeLong(project.getMaxBudget());
+        out.writeLong(project.getMinBid());
+        out.writeLong(project.getMinBidId());
+        writeDateTime(out, project.getBidDeadline());
+        out.writeByte(project.getBidStatus() == null ? -1 : project.getBidStatus().ordinal());
+        out.writeLong(project.getAutoMinAmount1());
+        out.writeLong(project.getAutoBidId1());
+        out.writeLong(project.getAutoMinAmount2());
+        out.writeLong(project.getAutoBidId2());
+        out.writeLong(project.getLastBidId());
+        out.writeLong(project.getVersion());
+    }
+
+    static Project readProject(DataInput in) throws IOException {
+        Project project = new Project();
+        project.setId(in.readLong());
+        project.setSellerId(in.readLong());
+        project.setDescription(readString(in));
+        project.setMaxBudget(in.readLong());
+        project.setMinBid(in.readLong());
+        project.setMinBidId(in.readLong());
+        project.setBidDeadline(readDateTime(in));
+        byte bidStatus = in.readByte();
+        project.setBidStatus(bidStatus < 0 ? null : Project.BidStatus.values()[bidStatus]);
+        project.setAutoMinAmount1(in.readLong());
+        project.setAutoBidId1(in.readLong());
+        project.setAutoMinAmount2(in.readLong());
+        project.setAutoBidId2(in.readLong());
+        project.setLastBidId(in.readLong());
+        project.setVersion(in.readLong());
+        return project;
+    }
+
+    static void writeBid(DataOutput out, Bid bid) throws IOException {
+        out.writeByte(BID);
+        out.writeLong(bid.getId());
+        out.writeLong(bid.getAmount());
+        writeDateTime(out, bid.getBidDate());
+        out.writeLong(bid.getProjectId());
+        out.writeLong(bid.getBuyerId());
+        out.writeBoolean(bid.isAutoBid());
+        out.writeLong(bid.getMinAmount());
+        out.writeLong(bid.getWinningBid());
+        out.writeLong(bid.getJournalSeq());
+    }
+
+    static Bid readBid(DataInput in) throws IOException {
+        Bid bid = new Bid();
+        bid.setId(in.readLong());
+        bid.setAmount(in.readLong());
+        bid.setBidDate(readDateTime(in));
+        bid.setProjectId(in.readLong());
+        bid.setBuyerId(in.readLong());
+        bid.setAutoBid(in.readBoolean());
+        bid.setMinAmount(in.readLong());
+        bid.setWinningBid(in.readLong());
+        bid.setJournalSeq(in.readLong());
+        return bid;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDateTime(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toLocalDate().toEpochDay());
+            out.writeLong(value.toLocalTime().toNanoOfDay());
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        LocalDate date = LocalDate.ofEpochDay(in.readLong());
+        return LocalDateTime.of(date, LocalTime.ofNanoOfDay(in.readLong()));
+    }
+}
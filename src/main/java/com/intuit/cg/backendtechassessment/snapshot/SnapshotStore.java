@@ -0,0 +1,580 @@
+package com.intuit.cg.backendtechassessment.snapshot;
+
+import com.intuit.cg.backendtechassessment.event.BidAcceptedEvent;
+import com.intuit.cg.backendtechassessment.event.BuyerCreatedEvent;
+import com.intuit.cg.backendtechassessment.event.ProjectCreatedEvent;
+import com.intuit.cg.backendtechassessment.event.ProjectFinalizedEvent;
+import com.intuit.cg.backendtechassessment.event.SellerCreatedEvent;
+import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.Buyer;
+import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.Seller;
+import com.intuit.cg.backendtechassessment.orderbook.ProjectOrderBook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Keeps the marketplace across restarts of the in-memory database (marketplace.snapshot.enabled, off by default).
+ *
+ * Every marketplace.snapshot.interval-seconds the sellers, buyers, projects (with their folded auction state) and
+ * bids are written to snapshot-N.bin in the SnapshotCodec format. The changes after it are appended to delta-N.log
+ * from the events after commit. On startup, before anything reads the database, the latest snapshot is inserted with
+ * JDBC batches and the delta logs after it are replayed, then the id sequences are moved past the restored ids.
+ * The project counts and auction deadlines are then loaded from the restored rows as usual.
+ *
+ * The secondary indexes of the bid and project tables are dropped before the rows are inserted and created again once
+ * they are all in. Building an index from the loaded table sorts it once, keeping it up to date inserts each row into
+ * a b-tree at a random position, which took most of the restore time. The rows are inserted in id order, so the
+ * primary key is only appended to.
+ *
+ * The snapshot is read while bids come in. The delta log is switched first and the projects are read before the
+ * bids, so a change is in the snapshot, in the new delta log or in both. Replaying is idempotent: a bid at or below
+ * its project's lastBidId is already in the snapshot, other rows are merged by id. A bid folded into its project on
+ * replay moves the project's version like the insert of the bid did, so a restored project does not answer with the
+ * version (and ETag) of an older state of itself.
+ */
+@Component
+@DependsOn("entityManagerFactory") //the schema must exist before restore()
+public class SnapshotStore {
+    private static Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+    private static final long MAGIC = 0x4d4b54534e415031L; //"MKTSNAP1"
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String DELTA_PREFIX = "delta-";
+    private static final String DELTA_SUFFIX = ".log";
+    private static final int BATCH_SIZE = 1000;  //rows per JDBC batch when restoring
+    private static final int FETCH_SIZE = 1000;  //rows per round trip when reading for a snapshot
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Table SELLER = new Table("seller", "id, name", Types.BIGINT, Types.VARCHAR);
+    private static final Table BUYER = new Table("buyer", "id, name", Types.BIGINT, Types.VARCHAR);
+    private static final Table PROJECT = new Table("project", "id, seller_id, description, max_budget, min_bid, "
+            + "min_bid_id, bid_deadline, bid_status, auto_min_amount1, auto_bid_id1, auto_min_amount2, auto_bid_id2, "
+            + "last_bid_id, version", Types.BIGINT, Types.BIGINT, Types.VARCHAR, Types.BIGINT, Types.BIGINT,
+            Types.BIGINT, Types.TIMESTAMP, Types.INTEGER, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT,
+            Types.BIGINT, Types.BIGINT);
+    private static final Table BID = new Table("bid", "id, amount, bid_date, project_id, buyer_id, auto_bid, "
+            + "min_amount, winning_bid, journal_seq", Types.BIGINT, Types.BIGINT, Types.TIMESTAMP, Types.BIGINT,
+            Types.BIGINT, Types.BOOLEAN, Types.BIGINT, Types.BIGINT, Types.BIGINT);
+
+    private final boolean enabled;
+    private final Path dir;
+    private final long intervalSeconds;
+    private final JdbcTemplate jdbcTemplate;
+    private final Object deltaLock = new Object();
+    private DeltaLog deltaLog; //guarded by deltaLock
+    private long deltaSeq;     //guarded by deltaLock
+    private ScheduledExecutorService scheduler;
+
+    /** the columns of a table with their JDBC types, so batches are bound without looking up parameter types */
+    private static class Table {
+        final String name;
+        final String columns;
+        final int[] types;
+
+        Table(String name, String columns, int... types) {
+            this.name = name;
+            this.columns = columns;
+            this.types = types;
+        }
+
+        String select() {
+            return "SELECT " + columns + " FROM " + name;
+        }
+
+        /** @param merge insert or update by id instead of insert */
+        String insert(boolean merge) {
+            StringBuilder sql = new StringBuilder(merge ? "MERGE INTO " : "INSERT INTO ").append(name).append(" (")
+                    .append(columns).append(")");
+            if (merge) {
+                sql.append(" KEY (id)");
+            }
+            sql.append(" VALUES (?");
+            for (int i = 1; i < types.length; i++) {
+                sql.append(", ?");
+            }
+            return sql.append(")").toString();
+        }
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+
+    public SnapshotStore(@Value("${marketplace.snapshot.enabled:false}") boolean enabled,
+                         @Value("${marketplace.snapshot.dir:snapshot}") String dir,
+                         @Value("${marketplace.snapshot.interval-seconds:300}") long intervalSeconds,
+                         JdbcTemplate jdbcTemplate) {
+        assert(jdbcTemplate != null);
+        if (enabled && intervalSeconds <= 0) {
+            throw new IllegalArgumentException("marketplace.snapshot.interval-seconds must be > 0");
+        }
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.intervalSeconds = intervalSeconds;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** restore the last snapshot and delta logs, then start a new delta log and the periodic snapshots */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        long lastSeq = restore();
+        synchronized (deltaLock) {
+            deltaSeq = lastSeq + 1;
+            deltaLog = new DeltaLog(path(DELTA_PREFIX, deltaSeq, DELTA_SUFFIX));
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                log.error("snapshot() failed, the delta logs are kept", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** takes a last snapshot, so the next start has no delta to replay */
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        scheduler.shutdownNow();
+        snapshot();
+        synchronized (deltaLock) {
+            deltaLog.close();
+            deltaLog = null;
+        }
+    }
+
+    /**
+     * writes a snapshot of the database and removes the older snapshots and delta logs
+     *
+     * @return the snapshot file
+     */
+    public synchronized Path snapshot() throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("snapshots are not enabled");
+        }
+        long start = System.nanoTime();
+        long seq;
+        synchronized (deltaLock) {
+            //changes from now on go to the new delta log, which is replayed after this snapshot
+            DeltaLog previous = deltaLog;
+            seq = deltaSeq + 1;
+            deltaLog = new DeltaLog(path(DELTA_PREFIX, seq, DELTA_SUFFIX));
+            deltaSeq = seq;
+            previous.close();
+        }
+        Path tmp = dir.resolve(SNAPSHOT_PREFIX + seq + ".tmp");
+        long[] rows = new long[1];
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, BUFFER_SIZE));
+            out.writeLong(MAGIC);
+            out.writeLong(seq);
+            forEachRow(SELLER.select(), rs -> {
+                SnapshotCodec.writeSeller(out, seller(rs));
+                rows[0]++;
+            });
+            forEachRow(BUYER.select(), rs -> {
+                SnapshotCodec.writeBuyer(out, buyer(rs));
+                rows[0]++;
+            });
+            //projects before bids, see the class comment
+            forEachRow(PROJECT.select(), rs -> {
+                SnapshotCodec.writeProject(out, SnapshotCodec.PROJECT, project(rs));
+                rows[0]++;
+            });
+            forEachRow(BID.select(), rs -> {
+                SnapshotCodec.writeBid(out, bid(rs));
+                rows[0]++;
+            });
+            out.writeByte(SnapshotCodec.END);
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Path snapshot = path(SNAPSHOT_PREFIX, seq, SNAPSHOT_SUFFIX);
+        Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (long older : seqs(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headSet(seq)) {
+            Files.deleteIfExists(path(SNAPSHOT_PREFIX, older, SNAPSHOT_SUFFIX));
+        }
+        for (long older : seqs(DELTA_PREFIX, DELTA_SUFFIX).headSet(seq)) {
+            Files.deleteIfExists(path(DELTA_PREFIX, older, DELTA_SUFFIX));
+        }
+        log.info("snapshot() {} {} rows, {} bytes in {}ms", snapshot, rows[0], Files.size(snapshot),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return snapshot;
+    }
+
+    /**
+     * loads the latest snapshot and the delta logs after it into the database, which must not hold any of their rows
+     *
+     * @return the sequence no. of the last snapshot or delta log, 0 if there is none
+     */
+    public long restore() throws IOException {
+        long start = System.nanoTime();
+        TreeSet<Long> snapshots = seqs(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        TreeSet<Long> deltas = seqs(DELTA_PREFIX, DELTA_SUFFIX);
+        long snapshotSeq = snapshots.isEmpty() ? 0 : snapshots.last();
+        Restore restore = new Restore();
+        restore.dropIndexes();
+        if (snapshotSeq > 0) {
+            readSnapshot(path(SNAPSHOT_PREFIX, snapshotSeq, SNAPSHOT_SUFFIX), snapshotSeq, restore);
+        }
+        restore.startDelta();
+        long deltaRecords = 0;
+        for (long seq : deltas.tailSet(snapshotSeq)) {
+            deltaRecords += DeltaLog.read(path(DELTA_PREFIX, seq, DELTA_SUFFIX), restore::read);
+        }
+        restore.finish();
+        log.info("restore() snapshot {}, {} delta records: {} projects, {} bids in {}ms", snapshotSeq, deltaRecords,
+                restore.projects.size(), restore.bids, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return Math.max(snapshotSeq, deltas.isEmpty() ? 0 : deltas.last());
+    }
+
+    private void readSnapshot(Path path, long seq, Restore restore) throws IOException {
+        try (InputStream file = Files.newInputStream(path)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, BUFFER_SIZE),
+                    new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readLong() != MAGIC || in.readLong() != seq) {
+                throw new IllegalStateException("not a snapshot " + path);
+            }
+            for (byte type = in.readByte(); type != SnapshotCodec.END; type = in.readByte()) {
+                restore.read(type, in);
+            }
+            long checksum = checked.getChecksum().getValue();
+            if (in.readLong() != checksum) {
+                throw new IllegalStateException("bad checksum in snapshot " + path);
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public void onSellerCreated(SellerCreatedEvent event) {
+        append(out -> SnapshotCodec.writeSeller(out, event.getSeller()));
+    }
+
+    @TransactionalEventListener
+    public void onBuyerCreated(BuyerCreatedEvent event) {
+        append(out -> SnapshotCodec.writeBuyer(out, event.getBuyer()));
+    }
+
+    @TransactionalEventListener
+    public void onProjectCreated(ProjectCreatedEvent event) {
+        append(out -> SnapshotCodec.writeProject(out, SnapshotCodec.PROJECT, event.getProject()));
+    }
+
+    @TransactionalEventListener
+    public void onBidAccepted(BidAcceptedEvent event) {
+        append(out -> SnapshotCodec.writeBid(out, event.getBid()));
+    }
+
+    @TransactionalEventListener
+    public void onProjectFinalized(ProjectFinalizedEvent event) {
+        append(out -> SnapshotCodec.writeProject(out, SnapshotCodec.PROJECT_FINALIZED, event.getProject()));
+    }
+
+    private void append(DeltaLog.RecordWriter record) {
+        synchronized (deltaLock) {
+            if (deltaLog == null) {
+                return;
+            }
+            try {
+                deltaLog.append(record);
+            } catch (IOException e) {
+                //the change is committed, it is in the next snapshot unless the process stops before
+                log.error("append() failed to write the delta log", e);
+            }
+        }
+    }
+
+    /** the rows of a snapshot and its delta logs, inserted in batches */
+    private class Restore {
+        boolean delta; //replaying a delta log, the rows may already be there
+        final Map<Long, Project> projects = new LinkedHashMap<>();
+        final List<Object[]> sellers = new ArrayList<>();
+        final List<Object[]> buyers = new ArrayList<>();
+        final List<Object[]> bidRows = new ArrayList<>();
+        final List<Object[]> winningBids = new ArrayList<>();
+        final List<Object[]> otherBids = new ArrayList<>(); //of finalized projects, not winning (any more)
+        final List<String> createIndexes = new ArrayList<>(); //of the indexes dropped for the load
+        long bids;
+        long maxId;     //of sellers, buyers and projects, which share hibernate_sequence
+        long maxBidId;
+
+        void read(byte type, DataInputStream in) throws IOException {
+            switch (type) {
+                case SnapshotCodec.SELLER:
+                    Seller seller = SnapshotCodec.readSeller(in);
+                    maxId = Math.max(maxId, seller.getId());
+                    add(sellers, SELLER, new Object[]{seller.getId(), seller.getName()});
+                    break;
+                case SnapshotCodec.BUYER:
+                    Buyer buyer = SnapshotCodec.readBuyer(in);
+                    maxId = Math.max(maxId, buyer.getId());
+                    add(buyers, BUYER, new Object[]{buyer.getId(), buyer.getName()});
+                    break;
+                case SnapshotCodec.PROJECT:
+                    Project project = SnapshotCodec.readProject(in);
+                    maxId = Math.max(maxId, project.getId());
+                    projects.putIfAbsent(project.getId(), project);
+                    break;
+                case SnapshotCodec.PROJECT_FINALIZED:
+                    Project finalized = SnapshotCodec.readProject(in);
+                    projects.put(finalized.getId(), finalized);
+                    //the resolution lowered the winning auto bid to the final minimum, see updateBidAndProject()
+                    winningBids.add(new Object[]{finalized.getMinBid(), finalized.getMinBidId(),
+                            finalized.getMinBid()});
+                    //a result recomputed by ProjectResolver may have moved the win to another bid
+                    otherBids.add(new Object[]{finalized.getId(), finalized.getMinBidId()});
+                    break;
+                case SnapshotCodec.BID:
+                    Bid bid = SnapshotCodec.readBid(in);
+                    Project bidProject = projects.get(bid.getProjectId());
+                    if (delta && bidProject != null) {
+                        if (bid.getId() <= bidProject.getLastBidId()) {
+                            break; //in the snapshot
+                        }
+                        ProjectOrderBook book = ProjectOrderBook.of(bidProject);
+                        book.offer(bid);
+                        book.copyTo(bidProject);
+                        //each bid moved the version when it was added, the ETag of the project is its id and version
+                        bidProject.setVersion(bidProject.getVersion() + 1);
+                    }
+                    maxBidId = Math.max(maxBidId, bid.getId());
+                    bids++;
+                    add(bidRows, BID, new Object[]{bid.getId(), bid.getAmount(),
+                            timestamp(bid.getBidDate()), bid.getProjectId(), bid.getBuyerId(), bid.isAutoBid(),
+                            bid.getMinAmount(), bid.getWinningBid(), bid.getJournalSeq()});
+                    break;
+                default:
+                    throw new IllegalStateException("unknown snapshot record type " + type);
+            }
+        }
+
+        /** drops the secondary indexes of bid and project, they are created again by finish() */
+        void dropIndexes() {
+            List<Map<String, Object>> indexes = jdbcTemplate.queryForList("SELECT DISTINCT table_schema, index_name, "
+                    + "sql FROM information_schema.indexes WHERE table_name IN ('BID', 'PROJECT') "
+                    + "AND index_type_name='INDEX'");
+            for (Map<String, Object> index : indexes) {
+                jdbcTemplate.execute("DROP INDEX " + index.get("TABLE_SCHEMA") + "." + index.get("INDEX_NAME"));
+                createIndexes.add((String) index.get("SQL"));
+            }
+        }
+
+        void startDelta() {
+            flush(sellers, SELLER);
+            flush(buyers, BUYER);
+            flush(bidRows, BID);
+            delta = true;
+        }
+
+        private void add(List<Object[]> batch, Table table, Object[] row) {
+            batch.add(row);
+            if (batch.size() >= BATCH_SIZE) {
+                flush(batch, table);
+            }
+        }
+
+        private void flush(List<Object[]> batch, Table table) {
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(table.insert(delta), batch, table.types);
+                batch.clear();
+            }
+        }
+
+        void finish() {
+            flush(sellers, SELLER);
+            flush(buyers, BUYER);
+            flush(bidRows, BID);
+            //projects are inserted last, with the bids of the delta logs folded in
+            delta = false;
+            List<Object[]> projectRows = new ArrayList<>(BATCH_SIZE);
+            for (Project project : projects.values()) {
+                add(projectRows, PROJECT, new Object[]{project.getId(), project.getSellerId(), project.getDescription(),
+                        project.getMaxBudget(), project.getMinBid(), project.getMinBidId(),
+                        timestamp(project.getBidDeadline()),
+                        project.getBidStatus() == null ? null : project.getBidStatus().ordinal(),
+                        project.getAutoMinAmount1(), project.getAutoBidId1(), project.getAutoMinAmount2(),
+                        project.getAutoBidId2(), project.getLastBidId(), project.getVersion()});
+            }
+            flush(projectRows, PROJECT);
+            long indexStart = System.nanoTime();
+            for (String createIndex : createIndexes) {
+                jdbcTemplate.execute(createIndex);
+            }
+            log.info("finish() {} indexes created in {}ms", createIndexes.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - indexStart));
+            //the updates below find the bids by project on the (projectId, id) index
+            if (!otherBids.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                        "UPDATE bid SET winning_bid=0 WHERE project_id=? AND id<>? AND winning_bid<>0", otherBids,
+                        new int[]{Types.BIGINT, Types.BIGINT});
+            }
+            if (!winningBids.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                        "UPDATE bid SET winning_bid=? WHERE id=? AND auto_bid=true AND amount<>?", winningBids,
+                        new int[]{Types.BIGINT, Types.BIGINT, Types.BIGINT});
+            }
+            advanceSequence("hibernate_sequence", maxId);
+            advanceSequence("bid_seq", maxBidId);
+        }
+    }
+
+    /** restart the sequence so the next block of ids handed out starts after maxId */
+    private void advanceSequence(String name, long maxId) {
+        if (maxId <= 0) {
+            return;
+        }
+        Long increment = jdbcTemplate.queryForObject(
+                "SELECT increment FROM information_schema.sequences WHERE sequence_name=?", Long.class,
+                name.toUpperCase());
+        //a pooled sequence value is the last id of its block
+        jdbcTemplate.execute("ALTER SEQUENCE " + name + " RESTART WITH " + (maxId + increment));
+    }
+
+    private void forEachRow(String sql, RowWriter writer) throws IOException {
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    writer.write(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Seller seller(ResultSet rs) throws SQLException {
+        Seller seller = new Seller(rs.getString("name"));
+        seller.setId(rs.getLong("id"));
+        return seller;
+    }
+
+    private static Buyer buyer(ResultSet rs) throws SQLException {
+        Buyer buyer = new Buyer(rs.getString("name"));
+        buyer.setId(rs.getLong("id"));
+        return buyer;
+    }
+
+    private static Project project(ResultSet rs) throws SQLException {
+        Project project = new Project();
+        project.setId(rs.getLong("id"));
+        project.setSellerId(rs.getLong("seller_id"));
+        project.setDescription(rs.getString("description"));
+        project.setMaxBudget(rs.getLong("max_budget"));
+        project.setMinBid(rs.getLong("min_bid"));
+        project.setMinBidId(rs.getLong("min_bid_id"));
+        project.setBidDeadline(localDateTime(rs.getTimestamp("bid_deadline")));
+        int bidStatus = rs.getInt("bid_status");
+        project.setBidStatus(rs.wasNull() ? null : Project.BidStatus.values()[bidStatus]);
+        project.setAutoMinAmount1(rs.getLong("auto_min_amount1"));
+        project.setAutoBidId1(rs.getLong("auto_bid_id1"));
+        project.setAutoMinAmount2(rs.getLong("auto_min_amount2"));
+        project.setAutoBidId2(rs.getLong("auto_bid_id2"));
+        project.setLastBidId(rs.getLong("last_bid_id"));
+        project.setVersion(rs.getLong("version"));
+        return project;
+    }
+
+    private static Bid bid(ResultSet rs) throws SQLException {
+        Bid bid = new Bid(rs.getLong("amount"), localDateTime(rs.getTimestamp("bid_date")), rs.getLong("project_id"),
+                rs.getLong("buyer_id"), rs.getBoolean("auto_bid"), rs.getLong("min_amount"));
+        bid.setId(rs.getLong("id"));
+        bid.setWinningBid(rs.getLong("winning_bid"));
+        bid.setJournalSeq(rs.getLong("journal_seq"));
+        return bid;
+    }
+
+    private static LocalDateTime localDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    private static Timestamp timestamp(LocalDateTime dateTime) {
+        return dateTime == null ? null : Timestamp.valueOf(dateTime);
+    }
+
+    private Path path(String prefix, long seq, String suffix) {
+        return dir.resolve(prefix + seq + suffix);
+    }
+
+    /** sequence nos. of the files in dir named prefix + no. + suffix */
+    private TreeSet<Long> seqs(String prefix, String suffix) throws IOException {
+        TreeSet<Long> seqs = new TreeSet<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .forEach(name -> {
+                        try {
+                            seqs.add(Long.parseLong(name.substring(prefix.length(),
+                                    name.length() - suffix.length())));
+                        } catch (NumberFormatException e) {
+                            log.warn("seqs() ignoring {}", name);
+                        }
+                    });
+        }
+        return seqs;
+    }
+}
@@ -0,0 +1,152 @@
+package com.intuit.cg.backendtechassessment.web;
+
+import com.intuit.cg.backendtechassessment.datasource.ReadYourWrites;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool that runs the blocking service calls of AsyncJobMarketplaceController, off the Tomcat threads. The
+ * no. of threads caps the concurrent database work (it defaults to the Hikari pool size, more threads would only wait
+ * for a connection), and the queue caps the work waiting for them. When the queue is full submit() rejects the call
+ * at once, so a flood of requests is turned away instead of piling up while the database falls behind.
+ *
+ * A call that waited in the queue longer than marketplace.async.max-queue-wait-ms is not run, its future fails with
+ * RejectedExecutionException. The wait is kept below spring.mvc.async.request-timeout, so a call that starts has the
+ * rest of the request timeout to finish, and a call whose request already timed out is not run behind the client's
+ * back. A call cancelled with Call.cancel() (AsyncJobMarketplaceController does so on the request timeout) is not run
+ * either. The pool thread and cancel() race for the call's started flag, whoever sets it first decides: either the
+ * call runs to the end, or it never starts. So a caller told the call did not run can safely retry it.
+ *
+ * Queued and running calls are in the "marketplace.async.queued" and "marketplace.async.active" gauges, rejected calls
+ * in the "marketplace.async.rejected" counter and the calls dropped after the max queue wait in the
+ * "marketplace.async.expired" counter.
+ */
+@Component
+public class AsyncRequestExecutor {
+    private static Logger log = LoggerFactory.getLogger(AsyncRequestExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueWaitNanos;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public AsyncRequestExecutor(@Value("${marketplace.async.threads:10}") int threads,
+                                @Value("${marketplace.async.queue-capacity:1000}") int queueCapacity,
+                                @Value("${marketplace.async.max-queue-wait-ms:5000}") long maxQueueWaitMillis,
+                                MeterRegistry meterRegistry) {
+        assert(meterRegistry != null);
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+        AtomicInteger threadNo = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "async-request-" + threadNo.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("marketplace.async.queued", executor, e -> e.getQueue().size())
+                .description("calls waiting for an async request thread").register(meterRegistry);
+        Gauge.builder("marketplace.async.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("calls running on the async request threads").register(meterRegistry);
+        FunctionCounter.builder("marketplace.async.rejected", rejected, AtomicLong::get)
+                .description("calls rejected because the queue was full").register(meterRegistry);
+        FunctionCounter.builder("marketplace.async.expired", expired, AtomicLong::get)
+                .description("calls not run because they waited longer than the max queue wait")
+                .register(meterRegistry);
+    }
+
+    /** a submitted call, its result and whether it started */
+    public static final class Call<T> {
+        private final AtomicBoolean started = new AtomicBoolean();
+        private CompletableFuture<T> future;
+
+        private Call() {
+        }
+
+        /**
+         * the result of the call, completed exceptionally if the call throws, with RejectedExecutionException if it
+         * waited longer than the max queue wait, or cancelled by cancel()
+         */
+        public CompletableFuture<T> getFuture() {
+            return future;
+        }
+
+        /**
+         * keeps the call from running if it has not started yet. true if the call will not run, false if it has
+         * already started, it then runs to the end and may still commit
+         */
+        public boolean cancel() {
+            if (!started.compareAndSet(false, true)) {
+                return false;
+            }
+            future.cancel(false);
+            return true;
+        }
+    }
+
+    /**
+     * runs the call on the pool, see Call. The call runs in the caller's ReadYourWrites context.
+     *
+     * @throws RejectedExecutionException if the queue is full or the pool is shut down
+     */
+    public <T> Call<T> submit(Supplier<T> supplier) {
+        ReadYourWrites.Context caller = ReadYourWrites.current();
+        long queuedAt = System.nanoTime();
+        Call<T> call = new Call<>();
+        try {
+            call.future = CompletableFuture.supplyAsync(() -> {
+                if (!call.started.compareAndSet(false, true)) {
+                    throw new CancellationException("cancelled before it started");
+                }
+                long waitedNanos = System.nanoTime() - queuedAt;
+                if (waitedNanos > maxQueueWaitNanos) {
+                    expired.incrementAndGet();
+                    throw new RejectedExecutionException("queued for "
+                            + TimeUnit.NANOSECONDS.toMillis(waitedNanos) + " ms");
+                }
+                return ReadYourWrites.callWith(caller, supplier);
+            }, executor);
+            return call;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    /** queued calls still run, their requests get an answer */
+    @PreDestroy
+    public void shutdown() {
+        log.info("shutdown() {} calls queued", executor.getQueue().size());
+        executor.shutdown();
+    }
+}
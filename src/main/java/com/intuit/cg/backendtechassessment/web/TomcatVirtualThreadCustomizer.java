@@ -0,0 +1,59 @@
+package com.intuit.cg.backendtechassessment.web;
+
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Serves each HTTP request on its own virtual thread instead of Tomcat's platform thread pool, turned on with
+ * marketplace.virtual-threads.enabled=true. A request blocked on JDBC (or on a ProjectLocks stripe) then parks its
+ * virtual thread and frees the carrier thread, so the no. of requests in flight is no longer capped by
+ * server.tomcat.max-threads but by server.tomcat.max-connections. The JobMarketplaceService calls run on the request
+ * thread, i.e. on the virtual thread too. The no. of concurrent database calls is still capped by the connection
+ * pool (spring.datasource.hikari.maximum-pool-size), requests beyond it wait for a connection without holding a
+ * platform thread.
+ *
+ * On a JDK without virtual threads a warning is logged and Tomcat keeps its platform thread pool.
+ *
+ * The executor is not shut down. Virtual threads are daemon threads and an idle executor holds none, while shutting
+ * it down with the context would reject requests arriving before Tomcat is stopped (after the beans are destroyed).
+ */
+@Component
+@ConditionalOnProperty(name = "marketplace.virtual-threads.enabled", havingValue = "true")
+public class TomcatVirtualThreadCustomizer implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+    private static Logger log = LoggerFactory.getLogger(TomcatVirtualThreadCustomizer.class);
+
+    private ExecutorService executor;
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        if (!VirtualThreads.isSupported()) {
+            log.warn("customize() no virtual threads on java {}, keeping the platform thread pool",
+                    System.getProperty("java.version"));
+            return;
+        }
+        executor = VirtualThreads.newThreadPerTaskExecutor("http-vt-");
+        factory.addConnectorCustomizers(connector -> {
+            ProtocolHandler protocolHandler = connector.getProtocolHandler();
+            if (protocolHandler instanceof AbstractProtocol) {
+                ((AbstractProtocol<?>) protocolHandler).setExecutor(executor);
+                log.info("customize() {} serves requests on virtual threads",
+                        protocolHandler.getClass().getSimpleName());
+            } else {
+                log.warn("customize() {} does not take an executor, keeping its thread pool",
+                        protocolHandler.getClass().getSimpleName());
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return executor != null;
+    }
+}
@@ -0,0 +1,54 @@
+package com.intuit.cg.backendtechassessment.web;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads (JDK 21+) for a build that targets Java 8. The JDK methods are looked up by reflection, so the
+ * application still compiles and runs on older JDKs, where isSupported() is false.
+ */
+public final class VirtualThreads {
+    private static final Method OF_VIRTUAL = method(Thread.class, "ofVirtual");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR =
+            method(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private VirtualThreads() {
+    }
+
+    /** true if the running JDK has virtual threads */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * returns an executor that starts a new virtual thread for each task, named prefix0, prefix1, ...
+     *
+     * @throws UnsupportedOperationException if the running JDK has no virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("virtual threads need JDK 21 or later, running on "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            //Thread.ofVirtual().name(prefix, 0).factory()
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("cannot create virtual threads", e);
+        }
+    }
+
+    private static Method method(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -1,25 +1,108 @@
 package com.intuit.cg.backendtechassessment;
 
+import com.intuit.cg.backendtechassessment.analytics.BidColumns;
+import com.intuit.cg.backendtechassessment.analytics.BidPriceSketch;
+import com.intuit.cg.backendtechassessment.analytics.ProjectStatsRegistry;
+import com.intuit.cg.backendtechassessment.analytics.QuantileSketch;
+import com.intuit.cg.backendtechassessment.cache.FinalizedProjectCache;
+import com.intuit.cg.backendtechassessment.controller.AsyncJobMarketplaceController;
+import com.intuit.cg.backendtechassessment.controller.JobMarketplaceController;
+import com.intuit.cg.backendtechassessment.controller.requestmappings.RequestMappings;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intuit.cg.backendtechassessment.datasource.H2ReplicationStandIn;
+import com.intuit.cg.backendtechassessment.datasource.ReadYourWrites;
+import com.intuit.cg.backendtechassessment.datasource.ReadYourWritesFilter;
+import com.intuit.cg.backendtechassessment.datasource.Replica;
+import com.intuit.cg.backendtechassessment.datasource.ReplicaRoutingDataSource;
+import com.intuit.cg.backendtechassessment.event.BidAcceptedEvent;
+import com.intuit.cg.backendtechassessment.event.BuyerCreatedEvent;
+import com.intuit.cg.backendtechassessment.event.ProjectCreatedEvent;
+import com.intuit.cg.backendtechassessment.event.ProjectFinalizedEvent;
+import com.intuit.cg.backendtechassessment.event.SellerCreatedEvent;
+import com.intuit.cg.backendtechassessment.feed.MinBidFeed;
+import com.intuit.cg.backendtechassessment.journal.BidJournal;
+import com.intuit.cg.backendtechassessment.journal.BidJournalWriter;
+import com.intuit.cg.backendtechassessment.json.JsonResult;
+import com.intuit.cg.backendtechassessment.lock.ProjectLocks;
+import com.intuit.cg.backendtechassessment.metrics.MarketplaceMetrics;
 import com.intuit.cg.backendtechassessment.models.Bid;
+import com.intuit.cg.backendtechassessment.models.BidRequest;
+import com.intuit.cg.backendtechassessment.models.BidResult;
+import com.intuit.cg.backendtechassessment.models.BidStats;
+import com.intuit.cg.backendtechassessment.models.BidView;
 import com.intuit.cg.backendtechassessment.models.Buyer;
+import com.intuit.cg.backendtechassessment.models.ErrorMessage;
 import com.intuit.cg.backendtechassessment.models.Project;
+import com.intuit.cg.backendtechassessment.models.ProjectBidStats;
+import com.intuit.cg.backendtechassessment.models.ProjectView;
 import com.intuit.cg.backendtechassessment.models.Seller;
+import com.intuit.cg.backendtechassessment.models.SuggestedBid;
+import com.intuit.cg.backendtechassessment.orderbook.ProjectOrderBook;
+import com.intuit.cg.backendtechassessment.models.ResolutionReport;
 import com.intuit.cg.backendtechassessment.repository.*;
+import com.intuit.cg.backendtechassessment.resolution.ProjectResolver;
+import com.intuit.cg.backendtechassessment.snapshot.SnapshotStore;
+import com.intuit.cg.backendtechassessment.web.AsyncRequestExecutor;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.Session;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Unit tests for job Marketplace logic. H2 database repositories were used. Another approach is to create and setup
@@ -34,6 +117,63 @@ public class BackendTechAssessmentApplicationTests {
 	@Autowired
 	private JobMarketplaceService jobMarketplaceService;
 
+	@Autowired
+	private BidRepository bidRepository;
+
+	@Autowired
+	private ProjectRepository projectRepository;
+
+	@Autowired
+	private BuyerRepository buyerRepository;
+
+	@Autowired
+	private SellerRepository sellerRepository;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private ProjectLocks projectLocks;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private MarketplaceMetrics marketplaceMetrics;
+
+	@Autowired
+	private JobMarketplaceController jobMarketplaceController;
+
+	@Autowired
+	private AsyncJobMarketplaceController asyncJobMarketplaceController;
+
+	@Autowired
+	private MinBidFeed minBidFeed;
+
+	@Autowired
+	private ObjectMapper jsonMapper;
+
+	@Autowired
+	private BidColumns bidColumns;
+
+	@Autowired
+	private ProjectStatsRegistry projectStatsRegistry;
+
+	@Autowired
+	private ProjectResolver projectResolver;
+
+	@Autowired
+	private FinalizedProjectCache finalizedProjectCache;
+
 	private LocalDateTime deadline = null;
 	private Buyer buyer = null, buyer2 = null;
 	private Seller seller1 = null, seller2 = null, seller3 = null;
@@ -69,14 +209,33 @@ public class BackendTechAssessmentApplicationTests {
 	}
 
 	private void dumpBids() {
-		List<Bid> bids = jobMarketplaceService.getBids();
+		List<BidView> bids = jobMarketplaceService.getBids(-1, -1, 0, 1000);
 		if (bids != null) {
-			for (Bid bid : bids) {
+			for (BidView bid : bids) {
 				log.info("dumpBids() bid {}", bid);
 			}
 		}
 	}
 
+	/** the stats of a project computed from all its bids */
+	private ProjectBidStats recomputeProjectStats(long projectId) {
+		List<BidView> bids = jobMarketplaceService.getBidsByProjectId(projectId);
+		if (bids.isEmpty()) {
+			return new ProjectBidStats(projectId, 0, 0, 0, 0, null, 0, null);
+		}
+		long sum = 0;
+		long autoCount = 0;
+		Set<Long> buyerIds = new HashSet<>();
+		for (BidView bid : bids) {
+			sum += bid.getAmount();
+			autoCount += bid.isAutoBid() ? 1 : 0;
+			buyerIds.add(bid.getBuyerId());
+		}
+		return new ProjectBidStats(projectId, bids.size(), buyerIds.size(), bids.size() - autoCount, autoCount,
+				bids.stream().mapToLong(BidView::getAmount).min().getAsLong(), (double) sum / bids.size(),
+				bids.stream().map(BidView::getBidDate).max(LocalDateTime::compareTo).get());
+	}
+
 	protected void delay(int second) {
 		try {
 			Thread.sleep(second * 1000);
@@ -337,4 +496,1380 @@ public class BackendTechAssessmentApplicationTests {
 		project = checkFinalMinimumBid("testProject1FixedBidAnd2AutoBids()", projectOriginal.getId());
 		assert(project.getMinBid() == 3);
 	}
-}
\ No newline at end of file
+
+	/** order book must agree with folding all bids of the project, before and after a rebuild from the bid table */
+	@Test
+	public void testOrderBookMatchesBids() {
+		log.info("testOrderBookMatchesBids()");
+		long projectId = projectOriginal.getId();
+		jobMarketplaceService.addNewBid(10, projectId, buyer.getId(), false, 0);
+		jobMarketplaceService.addNewBid(7, projectId, buyer2.getId(), true, 3);
+		jobMarketplaceService.addNewBid(7, projectId, buyer.getId(), false, 0);
+		jobMarketplaceService.addNewBid(9, projectId, buyer2.getId(), true, 2);
+		jobMarketplaceService.addNewBid(8, projectId, buyer.getId(), true, 5);
+
+		long minBid = Project.DEFAULT_MIN_BID;
+		long minBidId = Project.DEFAULT_MIN_BID_ID;
+		for (BidView bid : jobMarketplaceService.getBidsByProjectId(projectId)) {
+			if (bid.getAmount() < minBid) {
+				minBid = bid.getAmount();
+				minBidId = bid.getId();
+			}
+		}
+
+		//the book of the stored row, folded by addNewBid without any read
+		ProjectOrderBook book = ProjectOrderBook.of(storedProject(projectId));
+		log.info("testOrderBookMatchesBids() book {}", book);
+		assert(book.getMinBid() == minBid && book.getMinBidId() == minBidId);
+		assert(book.getAutoMinAmount1() == 2 && book.getAutoMinAmount2() == 3);
+
+		Project project = jobMarketplaceService.getProjectById2(projectId);
+		assert(project.getMinBid() == minBid && project.getMinBidId() == minBidId);
+	}
+
+	/**
+	 * addNewBid folds the bid into the project row in its own transaction, a read of an open project writes nothing,
+	 * and /init folds the bids of the projects it creates in the same transaction
+	 */
+	@Test
+	public void testBidFoldedAtInsert() {
+		log.info("testBidFoldedAtInsert()");
+		long projectId = projectOriginal.getId();
+		Bid fixed = jobMarketplaceService.addNewBid(20, projectId, buyer.getId(), false, 0);
+		Bid auto = jobMarketplaceService.addNewBid(30, projectId, buyer2.getId(), true, 15);
+		Map<String, Object> row = jdbcTemplate.queryForMap("SELECT min_bid, min_bid_id, auto_min_amount1, "
+				+ "last_bid_id, version FROM project WHERE id=?", projectId);
+		assert(((Number) row.get("MIN_BID")).longValue() == 20);
+		assert(((Number) row.get("MIN_BID_ID")).longValue() == fixed.getId());
+		assert(((Number) row.get("AUTO_MIN_AMOUNT1")).longValue() == 15);
+		assert(((Number) row.get("LAST_BID_ID")).longValue() == auto.getId());
+
+		long version = ((Number) row.get("VERSION")).longValue();
+		for (int i = 0; i < 3; i++) {
+			assert(jobMarketplaceService.getProjectById2(projectId).getMinBid() == 20);
+			assert(jobMarketplaceService.getProjectById(projectId).getMinBid() == 20);
+		}
+		assert(jdbcTemplate.queryForObject("SELECT version FROM project WHERE id=?", Long.class, projectId) == version);
+		assert(jdbcTemplate.queryForObject("SELECT bid_status FROM project WHERE id=?", Integer.class, projectId)
+				== Project.BidStatus.NONE.ordinal());
+
+		long maxId = jdbcTemplate.queryForObject("SELECT max(id) FROM project", Long.class);
+		ResponseEntity<Object> response = jobMarketplaceController.init();
+		assert("ok".equals(((JsonResult) response.getBody()).getResult()));
+		long project1 = jdbcTemplate.queryForObject("SELECT min(id) FROM project WHERE id>? and description=?",
+				Long.class, maxId, "Project 1");
+		assert(storedProject(project1).getMinBid() == 10);
+	}
+
+	/** the project as stored, read in a transaction of its own */
+	private Project storedProject(long projectId) {
+		TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		return readOnly.execute(status -> projectRepository.find(projectId));
+	}
+
+	/** project is finalized at its deadline without anyone reading it */
+	@Test
+	public void testProjectClosedAtDeadline() {
+		log.info("testProjectClosedAtDeadline()");
+		jobMarketplaceService.addNewBid(10, projectOriginal.getId(), buyer.getId(), false, 0);
+		delay(DEADLINE_DELAY_SECONDS + 1);
+
+		ProjectView project = null;
+		for (ProjectView p : jobMarketplaceService.getProjects(seller1.getId(), false, null, null, 0, 1000)) {
+			if (p.getId() == projectOriginal.getId()) {
+				project = p;
+			}
+		}
+		log.info("testProjectClosedAtDeadline() project {}", project);
+		assert(project.getBidStatus() == Project.BidStatus.MINIMUM_FOUND);
+		assert(project.getMinBid() == 10);
+	}
+
+	/** a minimum bid equal to maxBudget is found, the project is finalized once and then answered without resolving */
+	@Test
+	public void testMinBidEqualsMaxBudget() {
+		log.info("testMinBidEqualsMaxBudget()");
+		assert(ProjectOrderBook.bidStatus(100, 100) == Project.BidStatus.MINIMUM_FOUND);
+		jobMarketplaceService.addNewBid(100, projectOriginal.getId(), buyer.getId(), false, 0);
+		delay(DEADLINE_DELAY_SECONDS + 1);
+
+		ResponseEntity<Object> response = jobMarketplaceController.getProjectById(projectOriginal.getId(), "");
+		Project project = storedProject(projectOriginal.getId());
+		log.info("testMinBidEqualsMaxBudget() project {}", project);
+		assert(project.getBidStatus() == Project.BidStatus.MINIMUM_FOUND && project.getMinBid() == 100);
+
+		double resolved = meterRegistry.get(JobMarketplaceService.SERVICE_TIMER).tag("method", "getProjectById2")
+				.timer().count();
+		String eTag = response.getHeaders().getETag();
+		response = jobMarketplaceController.getProjectById(projectOriginal.getId(), eTag);
+		assert(response.getStatusCode() == HttpStatus.NOT_MODIFIED);
+		assert(meterRegistry.get(JobMarketplaceService.SERVICE_TIMER).tag("method", "getProjectById2").timer()
+				.count() == resolved);
+	}
+
+	/** walk the projects of a seller page by page with the keyset cursor, also check the open/closed filter */
+	@Test
+	public void testProjectPages() {
+		log.info("testProjectPages()");
+		Set<Long> created = new HashSet<>();
+		created.add(projectOriginal.getId());
+		for (int i = 0; i < 4; i++) {
+			created.add(jobMarketplaceService.createProject(seller3.getId(), "page " + i, 100, deadline).getId());
+		}
+		created.remove(projectOriginal.getId()); //belongs to seller1
+
+		Set<Long> found = new HashSet<>();
+		long after = 0;
+		List<ProjectView> page;
+		do {
+			page = jobMarketplaceService.getProjects(seller3.getId(), null, null, null, after, 2);
+			assert(page.size() <= 2);
+			for (ProjectView project : page) {
+				assert(project.getSellerId() == seller3.getId());
+				assert(project.getId() > after);
+				found.add(project.getId());
+				after = project.getId();
+			}
+		} while (page.size() == 2);
+		assert(found.equals(created));
+
+		assert(jobMarketplaceService.getProjects(seller3.getId(), true, null, null, 0, 10).size() == created.size());
+		assert(jobMarketplaceService.getProjects(seller3.getId(), false, null, null, 0, 10).isEmpty());
+		assert(jobMarketplaceService.getProjects(seller3.getId(), null, deadline.plusSeconds(1), null, 0, 10).isEmpty());
+
+		//the seller and open pages are native seeks on the (sellerId, id) and (bidStatus, id) indexes
+		ProjectView first = jobMarketplaceService.getProjects(seller3.getId(), true, null, null, 0, 1).get(0);
+		ProjectView stored = jobMarketplaceService.getProjectView(first.getId());
+		assert(first.toString().equals(stored.toString()) && first.getSellerId() == stored.getSellerId());
+		assert(first.getMinBidId() == stored.getMinBidId() && first.getVersion() == stored.getVersion());
+		Set<Long> open = new HashSet<>();
+		after = 0;
+		do {
+			page = jobMarketplaceService.getProjects(-1, true, null, null, after, 3);
+			for (ProjectView project : page) {
+				assert(project.getBidStatus() == Project.BidStatus.NONE && project.getId() > after);
+				open.add(project.getId());
+				after = project.getId();
+			}
+		} while (page.size() == 3);
+		assert(open.containsAll(created));
+
+		//with a deadline filter the pages are in (bidDeadline, id) order, the deadlines are not in id order and tie
+		Set<Long> later = new HashSet<>();
+		for (int hours : new int[] {3, 1, 2, 1}) {
+			later.add(jobMarketplaceService.createProject(seller3.getId(), "later", 100, deadline.plusHours(hours)).getId());
+		}
+		List<ProjectView> walked = new ArrayList<>();
+		after = 0;
+		do {
+			page = jobMarketplaceService.getProjects(seller3.getId(), null, deadline.plusSeconds(1), null, after, 2);
+			assert(page.size() <= 2);
+			walked.addAll(page);
+			after = page.isEmpty() ? after : page.get(page.size() - 1).getId();
+		} while (page.size() == 2);
+		Set<Long> walkedIds = new HashSet<>();
+		for (int i = 0; i < walked.size(); i++) {
+			assert(walkedIds.add(walked.get(i).getId()));
+			if (i > 0) {
+				int order = walked.get(i - 1).getBidDeadline().compareTo(walked.get(i).getBidDeadline());
+				assert(order < 0 || (order == 0 && walked.get(i - 1).getId() < walked.get(i).getId()));
+			}
+		}
+		assert(walkedIds.containsAll(later));
+	}
+
+	/** streaming every bid must visit the same bids as paging through them, in id order */
+	@Test
+	public void testForEachBid() {
+		log.info("testForEachBid()");
+		for (int i = 0; i < 5; i++) {
+			jobMarketplaceService.addNewBid(50 - i, projectOriginal.getId(), buyer.getId(), false, 0);
+		}
+		List<Long> paged = new ArrayList<>();
+		long after = 0;
+		List<BidView> page;
+		do {
+			page = jobMarketplaceService.getBids(-1, -1, after, 3);
+			for (BidView bid : page) {
+				paged.add(bid.getId());
+				after = bid.getId();
+			}
+		} while (!page.isEmpty());
+
+		List<Long> streamed = new ArrayList<>();
+		jobMarketplaceService.forEachBid(bid -> streamed.add(bid.getId()));
+		assert(streamed.equals(paged));
+	}
+
+	/** the list reads return views with the same JSON as the entities, without loading any entity */
+	@Test
+	public void testReadViews() throws Exception {
+		log.info("testReadViews()");
+		jobMarketplaceService.addNewBid(50, projectOriginal.getId(), buyer.getId(), false, 0);
+		jobMarketplaceService.addNewBid(60, projectOriginal.getId(), buyer2.getId(), true, 20);
+
+		TransactionTemplate readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+		readOnlyTransactionTemplate.setReadOnly(true);
+		readOnlyTransactionTemplate.execute(status -> {
+			List<BidView> bids = jobMarketplaceService.getBidsByProjectId(projectOriginal.getId());
+			List<ProjectView> projects = jobMarketplaceService.getProjects(seller1.getId(), null, null, null, 0, 10);
+			assert(em.unwrap(Session.class).getStatistics().getEntityCount() == 0);
+			assert(bids.size() == 2 && bids.get(0).getId() < bids.get(1).getId());
+			assert(projects.size() == 1);
+			try {
+				for (BidView bid : bids) {
+					assert(jsonMapper.readTree(jsonMapper.writeValueAsString(bid)).equals(
+							jsonMapper.readTree(jsonMapper.writeValueAsString(bidRepository.find(bid.getId())))));
+				}
+				assert(jsonMapper.readTree(jsonMapper.writeValueAsString(projects.get(0))).equals(
+						jsonMapper.readTree(jsonMapper.writeValueAsString(projectRepository.find(projectOriginal.getId())))));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return null;
+		});
+	}
+
+	/** bid amounts by project and buyer from the columns, also after loading them from the bid table */
+	@Test
+	public void testBidColumns() {
+		log.info("testBidColumns()");
+		Project project2 = jobMarketplaceService.createProject(seller2.getId(), "project 2", 200, deadline);
+		jobMarketplaceService.addNewBid(50, projectOriginal.getId(), buyer.getId(), false, 0);
+		jobMarketplaceService.addNewBid(70, projectOriginal.getId(), buyer2.getId(), true, 20);
+		jobMarketplaceService.addNewBid(90, project2.getId(), buyer.getId(), true, 30);
+		jobMarketplaceService.addNewBid(40, project2.getId(), buyer.getId(), false, 0);
+
+		List<BidStats> byProject = bidColumns.statsBy(BidColumns.GroupBy.PROJECT, projectOriginal.getId(), null, null);
+		assert(byProject.size() == 1);
+		BidStats stats = byProject.get(0);
+		assert(stats.getId() == projectOriginal.getId() && stats.getCount() == 2 && stats.getAutoCount() == 1);
+		assert(stats.getLowestAmount() == 50 && stats.getHighestAmount() == 70 && stats.getAverageAmount() == 60);
+		assert(stats.getLowestAutoLimit() == 20);
+
+		List<BidStats> byBuyer = bidColumns.statsBy(BidColumns.GroupBy.BUYER, -1, null, null);
+		stats = null;
+		for (int i = 0; i < byBuyer.size(); i++) {
+			assert(i == 0 || byBuyer.get(i - 1).getId() < byBuyer.get(i).getId());
+			if (byBuyer.get(i).getId() == buyer.getId()) {
+				stats = byBuyer.get(i);
+			}
+		}
+		log.info("testBidColumns() buyer {}", stats);
+		assert(stats.getCount() == 3 && stats.getAutoCount() == 1 && stats.getLowestAutoLimit() == 30);
+		assert(stats.getLowestAmount() == 40 && stats.getHighestAmount() == 90 && stats.getAverageAmount() == 60);
+
+		LocalDateTime later = LocalDateTime.now().plusMinutes(1);
+		assert(bidColumns.statsBy(BidColumns.GroupBy.PROJECT, project2.getId(), later, null).isEmpty());
+		assert(bidColumns.statsBy(BidColumns.GroupBy.PROJECT, project2.getId(), null, later).size() == 1);
+		assert(bidColumns.statsBy(BidColumns.GroupBy.PROJECT, Long.MAX_VALUE, null, null).isEmpty());
+		assert(jobMarketplaceController.getBidStats("seller", -1, "", "").getBody() instanceof ErrorMessage);
+
+		String before = bidColumns.statsBy(BidColumns.GroupBy.BUYER, buyer.getId(), null, null).toString();
+		bidColumns.load();
+		assert(bidColumns.size() == jdbcTemplate.queryForObject("select count(*) from bid", Long.class));
+		assert(bidColumns.statsBy(BidColumns.GroupBy.BUYER, buyer.getId(), null, null).toString().equals(before));
+	}
+
+	/** quantiles of the sketch within its relative accuracy, merged and bounded, and the suggested bid bands */
+	@Test
+	public void testBidPriceSketch() throws Exception {
+		log.info("testBidPriceSketch()");
+		QuantileSketch low = new QuantileSketch(0.01, 2048);
+		QuantileSketch high = new QuantileSketch(0.01, 2048);
+		QuantileSketch all = new QuantileSketch(0.01, 2048);
+		for (int i = 1; i <= 10000; i++) {
+			(i <= 5000 ? low : high).add(i / 100.0);
+			all.add(i / 100.0);
+		}
+		low.merge(high);
+		for (double q : new double[] {0, 0.1, 0.5, 0.9, 0.99, 1}) {
+			double exact = Math.max(1, Math.floor(q * 9999) + 1) / 100.0;
+			assert(Math.abs(all.quantile(q) - exact) <= 0.01 * exact);
+			assert(low.quantile(q) == all.quantile(q));
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		all.writeTo(new DataOutputStream(bytes));
+		QuantileSketch read = QuantileSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assert(read.getCount() == 10000 && read.quantile(0.5) == all.quantile(0.5));
+		byte[] negative = bytes.toByteArray();
+		negative[28] = (byte) 0xff; //first bucket count, after accuracy, max buckets, zero count, offset and length
+		try {
+			QuantileSketch.readFrom(new DataInputStream(new ByteArrayInputStream(negative)));
+			assert(false);
+		} catch (IOException e) {
+			assert(e.getMessage().startsWith("bad count"));
+		}
+
+		//small values over 7 orders of magnitude in 16 buckets, the lowest are collapsed but the median holds
+		QuantileSketch bounded = new QuantileSketch(0.01, 16);
+		for (int i = 0; i < 1000; i++) {
+			bounded.add(i < 100 ? Math.pow(10, -7 + i % 7) : 3);
+		}
+		assert(bounded.getBucketCount() <= 16 && Math.abs(bounded.quantile(0.5) - 3) <= 0.03);
+
+		//the finalized projects in the database as the sketch file sees them, no. and greatest id
+		String finalized = "select count(*) from project where bid_status in (1, 2) and max_budget > 0";
+		long[] watermark = {101, 0};
+		JobMarketplaceService watermarked = new JobMarketplaceService(projectRepository, bidRepository, buyerRepository,
+				sellerRepository, eventPublisher, projectLocks, transactionManager,
+				new BidJournal(false, "", 1, true, new SimpleMeterRegistry())) {
+			@Override
+			public Map<Project.BidStatus, Long> getProjectCountsByStatus() {
+				return Collections.singletonMap(Project.BidStatus.MINIMUM_FOUND, watermark[0]);
+			}
+
+			@Override
+			public long getMaxClosedProjectId() {
+				return watermark[1];
+			}
+		};
+		Path path = Files.createTempFile("bid-price", ".sketch");
+		Files.delete(path);
+		try {
+			//101 unsaved projects, all with id 0
+			BidPriceSketch sketch = new BidPriceSketch(watermarked, path.toString(), 60);
+			for (int i = 1; i <= 100; i++) {
+				Project project = new Project(seller1.getId(), "sketch", 1000, deadline);
+				project.setBidStatus(i <= 95 ? Project.BidStatus.MINIMUM_FOUND : Project.BidStatus.MINIMUM_TOO_HIGH);
+				project.setMinBid(i * 10);
+				sketch.onProjectFinalized(new ProjectFinalizedEvent(project));
+			}
+			Project notFound = new Project(seller1.getId(), "sketch", 1000, deadline);
+			notFound.setBidStatus(Project.BidStatus.MINIMUM_NOT_FOUND);
+			sketch.onProjectFinalized(new ProjectFinalizedEvent(notFound));
+
+			SuggestedBid suggestedBid = sketch.suggest(2000);
+			log.info("testBidPriceSketch() {}", suggestedBid);
+			assert(suggestedBid.getCount() == 100 && suggestedBid.getBands().size() == BidPriceSketch.PERCENTILES.length);
+			SuggestedBid.Band median = suggestedBid.getBands().get(2);
+			assert(median.getPercentile() == 50 && Math.abs(median.getRatio() - 0.5) <= 0.01);
+			assert(Math.abs(median.getAmount() - 1000) <= 10);
+			assert(sketch.suggest(-1).getBands().get(2).getAmount() == null);
+
+			sketch.save();
+			BidPriceSketch restarted = new BidPriceSketch(watermarked, path.toString(), 60);
+			restarted.load();
+			assert(restarted.suggest(2000).toString().equals(suggestedBid.toString()));
+			restarted.stop();
+
+			//a project finalized after the last save, the file is stale and the sketch is built from the database
+			watermark[1] = 1;
+			long before = jdbcTemplate.queryForObject(finalized, Long.class);
+			BidPriceSketch stale = new BidPriceSketch(watermarked, path.toString(), 60);
+			stale.load();
+			SuggestedBid rebuilt = stale.suggest(-1);
+			long count = rebuilt == null ? 0 : rebuilt.getCount();
+			assert(before <= count && count <= jdbcTemplate.queryForObject(finalized, Long.class));
+			stale.stop();
+
+			//the watermark matches but a bucket count is negative
+			watermark[1] = 0;
+			sketch.save();
+			try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+				file.seek(8 + 16 + 28); //magic, watermark, then the sketch's first bucket count
+				file.writeLong(-1);
+			}
+			before = jdbcTemplate.queryForObject(finalized, Long.class);
+			BidPriceSketch corrupt = new BidPriceSketch(watermarked, path.toString(), 60);
+			corrupt.load();
+			rebuilt = corrupt.suggest(-1);
+			count = rebuilt == null ? 0 : rebuilt.getCount();
+			assert(before <= count && count <= jdbcTemplate.queryForObject(finalized, Long.class));
+			corrupt.stop();
+		} finally {
+			Files.deleteIfExists(path);
+		}
+
+		//without a file, built from the finalized projects
+		long before = jdbcTemplate.queryForObject(finalized, Long.class);
+		BidPriceSketch rebuilt = new BidPriceSketch(jobMarketplaceService, "", 60);
+		rebuilt.load();
+		SuggestedBid suggestedBid = rebuilt.suggest(-1);
+		long count = suggestedBid == null ? 0 : suggestedBid.getCount();
+		assert(before <= count && count <= jdbcTemplate.queryForObject(finalized, Long.class));
+	}
+
+	/** the stats kept up to date bid by bid match the stats computed from the bid table */
+	@Test
+	public void testProjectStats() {
+		log.info("testProjectStats()");
+		Project project2 = jobMarketplaceService.createProject(seller2.getId(), "project 2", 200, deadline);
+		assert(projectStatsRegistry.get(project2.getId()).getBidCount() == 0);
+		assert(projectStatsRegistry.get(project2.getId()).getLowestAmount() == null);
+
+		jobMarketplaceService.addNewBid(50, projectOriginal.getId(), buyer.getId(), false, 0);
+		jobMarketplaceService.addNewBid(70, projectOriginal.getId(), buyer2.getId(), true, 20);
+		jobMarketplaceService.addNewBid(45, projectOriginal.getId(), buyer.getId(), false, 0);
+		List<BidRequest> requests = new ArrayList<>();
+		requests.add(new BidRequest(90, project2.getId(), buyer.getId(), true, 30));
+		requests.add(new BidRequest(40, project2.getId(), buyer.getId(), false, 0));
+		requests.add(new BidRequest(10, -99, buyer.getId(), false, 0)); //rejected
+		jobMarketplaceService.addNewBids(requests);
+
+		ProjectBidStats stats = projectStatsRegistry.get(projectOriginal.getId());
+		log.info("testProjectStats() {}", stats);
+		assert(stats.getBidCount() == 3 && stats.getBuyerCount() == 2);
+		assert(stats.getFixedCount() == 2 && stats.getAutoCount() == 1);
+		assert(stats.getLowestAmount() == 45 && stats.getAverageAmount() == 55);
+		for (long projectId : new long[] {projectOriginal.getId(), project2.getId()}) {
+			assert(projectStatsRegistry.get(projectId).toString().equals(recomputeProjectStats(projectId).toString()));
+		}
+		assert(((JsonResult) jobMarketplaceController.getProjectStats(project2.getId()).getBody()).getResult()
+				.toString().equals(recomputeProjectStats(project2.getId()).toString()));
+
+		projectStatsRegistry.load();
+		assert(projectStatsRegistry.get(projectOriginal.getId()).toString()
+				.equals(recomputeProjectStats(projectOriginal.getId()).toString()));
+	}
+
+	/**
+	 * a finalized project whose stored result differs from its bids (as if resolved by older rules) is reported by a
+	 * dry run, fixed by a real run, and left alone by the next run
+	 */
+	@Test
+	public void testResolveProjects() {
+		log.info("testResolveProjects()");
+		Project project2 = jobMarketplaceService.createProject(seller2.getId(), "project 2", 200, deadline);
+		Bid fixedBid = jobMarketplaceService.addNewBid(50, projectOriginal.getId(), buyer.getId(), false, 0);
+		Bid autoBid = jobMarketplaceService.addNewBid(60, projectOriginal.getId(), buyer2.getId(), true, 40);
+		delay(DEADLINE_DELAY_SECONDS + 1);
+		assert(jobMarketplaceService.getProjectById2(projectOriginal.getId()).getMinBid() == 49);
+		assert(jobMarketplaceService.getProjectById2(project2.getId()).getBidStatus()
+				== Project.BidStatus.MINIMUM_NOT_FOUND);
+
+		//the result older rules would have stored: the fixed bid won, and too high
+		jdbcTemplate.update("UPDATE project SET min_bid=150, min_bid_id=?, bid_status=? WHERE id=?", fixedBid.getId(),
+				Project.BidStatus.MINIMUM_TOO_HIGH.ordinal(), projectOriginal.getId());
+		jdbcTemplate.update("UPDATE bid SET winning_bid=0 WHERE id=?", autoBid.getId());
+		long staleVersion = jobMarketplaceService.getProjectById2(projectOriginal.getId()).getVersion();
+		finalizedProjectCache.put(projectOriginal.getId(), new byte[10], "\"stale\"", staleVersion);
+		long tooHigh = marketplaceMetrics.getProjectCount(Project.BidStatus.MINIMUM_TOO_HIGH);
+		long found = marketplaceMetrics.getProjectCount(Project.BidStatus.MINIMUM_FOUND);
+
+		ResolutionReport report = projectResolver.resolve(projectOriginal.getId(), project2.getId(), true);
+		log.info("testResolveProjects() {} {}", report, report.getChanges());
+		assert(report.getProjectCount() == 2 && report.getBidCount() == 2);
+		assert(report.getChangedCount() == 1 && report.getStoredCount() == 0);
+		ResolutionReport.Change change = report.getChanges().get(0);
+		assert(change.getProjectId() == projectOriginal.getId());
+		assert(change.getPreviousBidStatus() == Project.BidStatus.MINIMUM_TOO_HIGH && change.getPreviousMinBid() == 150);
+		assert(change.getBidStatus() == Project.BidStatus.MINIMUM_FOUND && change.getMinBid() == 49);
+		assert(change.getMinBidId() == autoBid.getId() && change.isAutoBidApplied());
+		assert(jobMarketplaceService.getProjectById2(projectOriginal.getId()).getMinBid() == 150);
+
+		ResponseEntity<Object> response = jobMarketplaceController.resolveProjects(projectOriginal.getId(),
+				project2.getId(), false);
+		report = (ResolutionReport) ((JsonResult) response.getBody()).getResult();
+		assert(report.getChangedCount() == 1 && report.getStoredCount() == 1 && report.getSkippedCount() == 0);
+		Project project = jobMarketplaceService.getProjectById2(projectOriginal.getId());
+		assert(project.getBidStatus() == Project.BidStatus.MINIMUM_FOUND && project.getMinBid() == 49);
+		assert(project.getMinBidId() == autoBid.getId());
+		assert(bidRepository.find(autoBid.getId()).getWinningBid() == 49);
+		assert(finalizedProjectCache.getEntry(projectOriginal.getId()) == null);
+		assert(project.getVersion() > staleVersion);
+		//a get that read the row before the result was stored puts its response after the event, it is ignored
+		finalizedProjectCache.put(projectOriginal.getId(), new byte[10], "\"stale\"", staleVersion);
+		assert(finalizedProjectCache.getEntry(projectOriginal.getId()) == null);
+		response = jobMarketplaceController.getProjectById(projectOriginal.getId(), "");
+		FinalizedProjectCache.Entry cached = finalizedProjectCache.getEntry(projectOriginal.getId());
+		assert(cached != null && cached.getVersion() == project.getVersion());
+		assert(cached.getETag().equals(response.getHeaders().getETag()));
+		finalizedProjectCache.put(projectOriginal.getId(), new byte[10], "\"stale\"", staleVersion);
+		assert(finalizedProjectCache.getEntry(projectOriginal.getId()).getVersion() == project.getVersion());
+		assert(marketplaceMetrics.getProjectCount(Project.BidStatus.MINIMUM_TOO_HIGH) == tooHigh - 1);
+		assert(marketplaceMetrics.getProjectCount(Project.BidStatus.MINIMUM_FOUND) == found + 1);
+
+		assert(projectResolver.resolve(projectOriginal.getId(), -1, false).getChangedCount() == 0);
+		assert(jobMarketplaceController.resolveProjects(2, 1, false).getBody() instanceof ErrorMessage);
+	}
+
+	/** batch of bids on 2 projects with rejected bids in between, then compare throughput with the single bid path */
+	@Test
+	public void testAddNewBids() {
+		log.info("testAddNewBids()");
+		//the throughput part below can take longer than DEADLINE_DELAY_SECONDS
+		Project project2 = jobMarketplaceService.createProject(seller2.getId(), "project 2", 200,
+				jobMarketplaceService.calculateDeadline(1, 0));
+		List<BidRequest> requests = new ArrayList<>();
+		requests.add(new BidRequest(20, projectOriginal.getId(), buyer.getId(), false, 0));
+		requests.add(new BidRequest(15, project2.getId(), buyer2.getId(), false, 0));
+		requests.add(new BidRequest(5, -99, buyer.getId(), false, 0));                      //unknown project
+		requests.add(new BidRequest(5, projectOriginal.getId(), -99, false, 0));            //unknown buyer
+		requests.add(new BidRequest(5, projectOriginal.getId(), buyer.getId(), true, 6));   //amount < minAmount
+		requests.add(new BidRequest(12, projectOriginal.getId(), buyer2.getId(), true, 8));
+		List<BidResult> results = jobMarketplaceService.addNewBids(requests);
+
+		assert(results.size() == requests.size());
+		assert(results.get(0).getBid() != null && results.get(1).getBid() != null && results.get(5).getBid() != null);
+		assert(results.get(2).getErrors().get(0).contains("project"));
+		assert(results.get(3).getErrors().get(0).contains("buyer"));
+		assert(results.get(4).getErrors().get(0).contains("minAmount"));
+
+		Project project = jobMarketplaceService.getProjectById2(projectOriginal.getId());
+		assert(project.getMinBid() == 12 && project.getMinBidId() == results.get(5).getBid().getId());
+		assert(project.getAutoMinAmount1() == 8);
+		assert(jobMarketplaceService.getProjectById2(project2.getId()).getMinBid() == 15);
+
+		int count = 200;
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			jobMarketplaceService.addNewBid(100 + i, project2.getId(), buyer.getId(), false, 0);
+		}
+		long singleNanos = System.nanoTime() - start;
+		requests.clear();
+		for (int i = 0; i < count; i++) {
+			requests.add(new BidRequest(100 + i, project2.getId(), buyer.getId(), false, 0));
+		}
+		start = System.nanoTime();
+		jobMarketplaceService.addNewBids(requests);
+		long batchNanos = System.nanoTime() - start;
+		log.info("testAddNewBids() {} bids: single {} bids/s, batch {} bids/s", count,
+				count * 1000000000L / singleNanos, count * 1000000000L / batchNanos);
+	}
+
+	/** a bid stored without going through addNewBid is after the project's watermark and folded when closing */
+	@Test
+	public void testBidAfterWatermarkFolded() {
+		log.info("testBidAfterWatermarkFolded()");
+		jobMarketplaceService.addNewBid(10, projectOriginal.getId(), buyer.getId(), false, 0);
+		Bid unfolded = new Bid(6, LocalDateTime.now(), projectOriginal.getId(), buyer2.getId());
+		new TransactionTemplate(transactionManager).execute(status -> {
+			bidRepository.save(unfolded);
+			return null;
+		});
+		Project project = jobMarketplaceService.getProjectById2(projectOriginal.getId());
+		assert(project.getMinBid() == 10 && project.getLastBidId() < unfolded.getId());
+
+		project = checkFinalMinimumBid("testBidAfterWatermarkFolded()", projectOriginal.getId());
+		assert(project.getMinBid() == 6 && project.getMinBidId() == unfolded.getId());
+		assert(project.getLastBidId() == unfolded.getId());
+	}
+
+	/** the 2 lowest auto bid limits kept in the project must match the lowest limits of its stored auto bids */
+	@Test
+	public void testAutoBidLimitsMatchQuery() {
+		log.info("testAutoBidLimitsMatchQuery()");
+		long[] minAmounts = {40, 12, 33, 12, 25, 7, 60, 7, 18};
+		for (long minAmount : minAmounts) {
+			jobMarketplaceService.addNewBid(90, projectOriginal.getId(), buyer.getId(), true, minAmount);
+		}
+		Project project = jobMarketplaceService.getProjectById2(projectOriginal.getId());
+		List<BidView> lowest = new ArrayList<>();
+		for (BidView bid : bidRepository.findAllByProject(projectOriginal.getId())) {
+			if (bid.isAutoBid()) {
+				lowest.add(bid);
+			}
+		}
+		lowest.sort(Comparator.comparingLong(BidView::getMinAmount).thenComparingLong(BidView::getId));
+		assert(lowest.size() >= 2);
+		assert(project.getAutoBidId1() == lowest.get(0).getId() && project.getAutoMinAmount1() == 7);
+		assert(project.getAutoBidId2() == lowest.get(1).getId() && project.getAutoMinAmount2() == 7);
+
+		//2 equal lowest limits, the earlier auto bid wins with that limit
+		project = checkFinalMinimumBid("testAutoBidLimitsMatchQuery()", projectOriginal.getId());
+		assert(project.getMinBid() == 7 && project.getMinBidId() == lowest.get(0).getId());
+	}
+
+	/** version based ETags, If-None-Match is answered with 304 without resolving or serializing the project */
+	@Test
+	public void testConditionalGet() {
+		log.info("testConditionalGet()");
+		long projectId = projectOriginal.getId();
+		ResponseEntity<Object> response = jobMarketplaceController.getProjectById(projectId, "");
+		String eTag = response.getHeaders().getETag();
+		assert(response.getStatusCode() == HttpStatus.OK && eTag != null);
+		assert(response.getHeaders().getCacheControl().equals("no-cache"));
+
+		double resolved = meterRegistry.get(JobMarketplaceService.SERVICE_TIMER).tag("method", "getProjectById2")
+				.timer().count();
+		response = jobMarketplaceController.getProjectById(projectId, "\"0-0\", W/" + eTag);
+		assert(response.getStatusCode() == HttpStatus.NOT_MODIFIED && response.getBody() == null);
+		assert(eTag.equals(response.getHeaders().getETag()));
+		assert(meterRegistry.get(JobMarketplaceService.SERVICE_TIMER).tag("method", "getProjectById2").timer()
+				.count() == resolved);
+
+		//the list of the seller's projects
+		response = jobMarketplaceController.getProjects(seller1.getId(), "", "", "", 0, 1000, "");
+		String pageETag = response.getHeaders().getETag();
+		assert(response.getStatusCode() == HttpStatus.OK && pageETag != null);
+		response = jobMarketplaceController.getProjects(seller1.getId(), "", "", "", 0, 1000, pageETag);
+		assert(response.getStatusCode() == HttpStatus.NOT_MODIFIED && response.getBody() == null);
+
+		//a bid moves the version of the project and of the list
+		jobMarketplaceService.addNewBid(50, projectId, buyer.getId(), false, 0);
+		response = jobMarketplaceController.getProjectById(projectId, eTag);
+		assert(response.getStatusCode() == HttpStatus.OK && !eTag.equals(response.getHeaders().getETag()));
+		eTag = response.getHeaders().getETag();
+		response = jobMarketplaceController.getProjects(seller1.getId(), "", "", "", 0, 1000, pageETag);
+		assert(response.getStatusCode() == HttpStatus.OK && !pageETag.equals(response.getHeaders().getETag()));
+
+		//past the deadline the project is finalized first, then it may be cached for long
+		delay(DEADLINE_DELAY_SECONDS + 1);
+		response = jobMarketplaceController.getProjectById(projectId, eTag);
+		assert(response.getStatusCode() == HttpStatus.OK && !eTag.equals(response.getHeaders().getETag()));
+		assert(response.getHeaders().getCacheControl().contains("max-age="));
+		eTag = response.getHeaders().getETag();
+		long hits = finalizedProjectCache.getHits();
+		response = jobMarketplaceController.getProjectById(projectId, eTag);
+		assert(response.getStatusCode() == HttpStatus.NOT_MODIFIED && finalizedProjectCache.getHits() == hits + 1);
+		assert(response.getHeaders().getCacheControl().contains("max-age="));
+
+		//not cached, answered from the version
+		finalizedProjectCache.invalidate(projectId);
+		resolved = meterRegistry.get(JobMarketplaceService.SERVICE_TIMER).tag("method", "getProjectById2").timer()
+				.count();
+		response = jobMarketplaceController.getProjectById(projectId, eTag);
+		assert(response.getStatusCode() == HttpStatus.NOT_MODIFIED && eTag.equals(response.getHeaders().getETag()));
+		assert(meterRegistry.get(JobMarketplaceService.SERVICE_TIMER).tag("method", "getProjectById2").timer()
+				.count() == resolved);
+	}
+
+	/** finalized project cache evicts the least recently used entries when over its entry or byte limit */
+	@Test
+	public void testFinalizedProjectCache() {
+		FinalizedProjectCache cache = new FinalizedProjectCache(3, 3 * (100 + 64), new SimpleMeterRegistry());
+		cache.put(1, new byte[100], "\"1\"", 0);
+		cache.put(2, new byte[100], "\"2\"", 0);
+		cache.put(3, new byte[100], "\"3\"", 0);
+		assert(cache.getEntry(1) != null); //1 is now more recently used than 2
+		cache.put(4, new byte[100], "\"4\"", 0);
+		assert(cache.getEntry(2) == null);
+		assert(cache.getEntry(1) != null && cache.getEntry(3) != null && cache.getEntry(4) != null);
+
+		cache.put(5, new byte[250], "\"5\"", 0); //over the byte limit, evicts 2 entries
+		assert(cache.size() == 2 && cache.getEntry(5) != null);
+		assert(cache.getEvictions() == 3);
+		assert(cache.getHits() == 5 && cache.getMisses() == 1);
+
+		cache.put(6, new byte[1000], "\"6\"", 0); //larger than the cache
+		assert(cache.getEntry(6) == null && cache.getBytes() <= 3 * (100 + 64));
+	}
+
+	/** bids, rejections, project counts and service timers show up in the meters */
+	@Test
+	public void testMarketplaceMetrics() {
+		log.info("testMarketplaceMetrics()");
+		double fixedBids = meterRegistry.get("marketplace.bids.accepted").tag("type", "fixed").counter().count();
+		double autoBids = meterRegistry.get("marketplace.bids.accepted").tag("type", "auto").counter().count();
+		long openProjects = marketplaceMetrics.getProjectCount(Project.BidStatus.NONE);
+		long foundProjects = marketplaceMetrics.getProjectCount(Project.BidStatus.MINIMUM_FOUND);
+		assert(openProjects == jobMarketplaceService.getProjectCountsByStatus().get(Project.BidStatus.NONE));
+
+		jobMarketplaceService.addNewBid(50, projectOriginal.getId(), buyer.getId(), false, 0);
+		jobMarketplaceService.addNewBid(60, projectOriginal.getId(), buyer2.getId(), true, 40);
+		jobMarketplaceController.addNewBid(10, Long.MAX_VALUE, buyer.getId(), false, 0); //unknown project
+		assert(meterRegistry.get("marketplace.bids.accepted").tag("type", "fixed").counter().count() == fixedBids + 1);
+		assert(meterRegistry.get("marketplace.bids.accepted").tag("type", "auto").counter().count() == autoBids + 1);
+		assert(meterRegistry.get("marketplace.requests.rejected").tag("endpoint", RequestMappings.ADD_NEW_BID)
+				.counter().count() >= 1);
+		assert(meterRegistry.get(JobMarketplaceService.SERVICE_TIMER).tag("method", "addNewBid").timer().count() >= 2);
+
+		delay(DEADLINE_DELAY_SECONDS + 1);
+		Project project = jobMarketplaceService.getProjectById2(projectOriginal.getId());
+		assert(project.getBidStatus() == Project.BidStatus.MINIMUM_FOUND && project.getMinBid() == 49);
+		assert(marketplaceMetrics.getProjectCount(Project.BidStatus.NONE) < openProjects);
+		assert(marketplaceMetrics.getProjectCount(Project.BidStatus.MINIMUM_FOUND) >= foundProjects + 1);
+		assert(meterRegistry.get("marketplace.auction.close.lag").timer().count() > 0);
+	}
+
+	/**
+	 * 8 threads bid on 2 hot projects while readers poll them and a writer outside the service keeps updating one of
+	 * them. No bid may be lost from the folded minimum and the order book, and the outside writes must not be lost.
+	 */
+	@Test
+	public void testConcurrentBids() throws Exception {
+		log.info("testConcurrentBids()");
+		Project hot1 = jobMarketplaceService.createProject(seller2.getId(), "hot 1", 1000,
+				jobMarketplaceService.calculateDeadline(1, 0));
+		Project hot2 = jobMarketplaceService.createProject(seller3.getId(), "hot 2", 1000,
+				jobMarketplaceService.calculateDeadline(1, 0));
+		long[] projectIds = {hot1.getId(), hot2.getId()};
+		int threads = 8, bidsPerThread = 40;
+		List<Bid> accepted = Collections.synchronizedList(new ArrayList<>());
+		List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<String> lastDescription = new AtomicReference<>();
+
+		List<Thread> bidders = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			long buyerId = t % 2 == 0 ? buyer.getId() : buyer2.getId();
+			Random random = new Random(t);
+			bidders.add(new Thread(() -> {
+				for (int i = 0; i < bidsPerThread; i++) {
+					long projectId = projectIds[random.nextInt(projectIds.length)];
+					long amount = 100 + random.nextInt(900);
+					boolean autoBid = random.nextInt(4) == 0;
+					try {
+						accepted.add(jobMarketplaceService.addNewBid(amount, projectId, buyerId, autoBid,
+								autoBid ? amount / 2 : 0));
+					} catch (Throwable e) {
+						failures.add(e);
+					}
+				}
+			}));
+		}
+		List<Thread> others = new ArrayList<>();
+		others.add(new Thread(() -> {
+			while (!done.get()) {
+				for (long projectId : projectIds) {
+					Project project = jobMarketplaceService.getProjectById2(projectId);
+					if (project.getMinBid() != Project.DEFAULT_MIN_BID && project.getMinBidId() < 0) {
+						failures.add(new AssertionError("minBid without minBidId " + project));
+					}
+				}
+			}
+		}));
+		others.add(new Thread(() -> {
+			//writes the project without the service's lock, only the version check guards against lost updates
+			TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+			//a few writes far apart, so a bid retries but does not run out of attempts
+			for (int i = 0; i < 10 && !done.get(); i++) {
+				String description = "hot 1 rev " + i;
+				try {
+					transactionTemplate.execute(status -> {
+						em.find(Project.class, hot1.getId()).setDescription(description);
+						return null;
+					});
+					lastDescription.set(description);
+				} catch (OptimisticLockingFailureException e) {
+					log.info("testConcurrentBids() outside write conflict {}", description);
+				}
+				try {
+					Thread.sleep(30);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}));
+		others.forEach(Thread::start);
+		bidders.forEach(Thread::start);
+		for (Thread bidder : bidders) {
+			bidder.join();
+		}
+		done.set(true);
+		for (Thread other : others) {
+			other.join();
+		}
+
+		log.info("testConcurrentBids() {} bids accepted, failures {}", accepted.size(), failures);
+		assert(failures.isEmpty());
+		assert(accepted.size() == threads * bidsPerThread);
+		for (long projectId : projectIds) {
+			long minBid = Project.DEFAULT_MIN_BID;
+			long minBidId = Project.DEFAULT_MIN_BID_ID;
+			long autoMinAmount = Project.DEFAULT_MIN_BID;
+			int count = 0;
+			//in id order, so an equal amount keeps the earlier bid
+			for (BidView bid : jobMarketplaceService.getBidsByProjectId(projectId)) {
+				count++;
+				if (bid.getAmount() < minBid || (bid.getAmount() == minBid && bid.getId() < minBidId)) {
+					minBid = bid.getAmount();
+					minBidId = bid.getId();
+				}
+				if (bid.isAutoBid()) {
+					autoMinAmount = Math.min(autoMinAmount, bid.getMinAmount());
+				}
+			}
+			long acceptedCount = accepted.stream().filter(bid -> bid.getProjectId() == projectId).count();
+			assert(count == acceptedCount);
+
+			Project project = jobMarketplaceService.getProjectById2(projectId);
+			ProjectOrderBook book = ProjectOrderBook.of(project);
+			log.info("testConcurrentBids() project {} book {}", project, book);
+			assert(project.getMinBid() == minBid && project.getMinBidId() == minBidId);
+			assert(project.getAutoMinAmount1() == autoMinAmount);
+			assert(book.getMinBid() == minBid && book.getMinBidId() == minBidId);
+			assert(book.getAutoMinAmount1() == autoMinAmount);
+			assert(projectStatsRegistry.get(projectId).toString().equals(recomputeProjectStats(projectId).toString()));
+		}
+		assert(lastDescription.get() == null
+				|| lastDescription.get().equals(jobMarketplaceService.getProjectById2(hot1.getId()).getDescription()));
+	}
+
+	/**
+	 * a bid inside an outer transaction joins it and keeps the project's lock until the outer transaction commits, so
+	 * a bid on the same project from another thread waits for the first bid to be visible
+	 */
+	@Test
+	public void testOuterTransactionHoldsProjectLock() throws Exception {
+		log.info("testOuterTransactionHoldsProjectLock()");
+		long projectId = jobMarketplaceService.createProject(seller1.getId(), "outer", 100, deadline).getId();
+		CountDownLatch bidAdded = new CountDownLatch(1);
+		CountDownLatch commit = new CountDownLatch(1);
+		Thread outer = new Thread(() -> new TransactionTemplate(transactionManager).execute(status -> {
+			jobMarketplaceService.addNewBid(50, projectId, buyer.getId(), false, 0);
+			bidAdded.countDown();
+			await(commit);
+			return null;
+		}));
+		outer.start();
+		assert(bidAdded.await(10, TimeUnit.SECONDS));
+		AtomicReference<Bid> second = new AtomicReference<>();
+		Thread bidder = new Thread(() -> second.set(jobMarketplaceService.addNewBid(40, projectId, buyer2.getId(),
+				false, 0)));
+		bidder.start();
+		bidder.join(500);
+		assert(bidder.isAlive() && second.get() == null);
+		commit.countDown();
+		outer.join(10000);
+		bidder.join(10000);
+		assert(second.get() != null && second.get().getAmount() == 40);
+		Project project = jobMarketplaceService.getProjectById2(projectId);
+		assert(project.getMinBid() == 40 && project.getLastBidId() == second.get().getId());
+		assert(jobMarketplaceService.getBids(projectId, -1, 0, 10).size() == 2);
+	}
+
+	/** a write based on a stale project fails the version check instead of overwriting the newer write */
+	@Test
+	public void testStaleProjectWriteRejected() throws Exception {
+		log.info("testStaleProjectWriteRejected()");
+		long projectId = projectOriginal.getId();
+		try {
+			new TransactionTemplate(transactionManager).execute(status -> {
+				Project stale = em.find(Project.class, projectId);
+				//a bid commits in between, it folds into the project and bumps its version
+				Thread bidder = new Thread(() -> jobMarketplaceService.addNewBid(10, projectId, buyer.getId(), false, 0));
+				bidder.start();
+				try {
+					bidder.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				stale.setDescription("stale write");
+				return null;
+			});
+			assert(false);
+		} catch (OptimisticLockingFailureException e) {
+			log.info("testStaleProjectWriteRejected() {}", e.toString());
+		}
+		Project project = jobMarketplaceService.getProjectById2(projectId);
+		assert(project.getMinBid() == 10 && project.getDescription().equals("project 1"));
+	}
+
+	/** the /async endpoints answer like the blocking ones, and with 503 when the executor's queue is full */
+	@Test
+	public void testAsyncEndpoints() throws Exception {
+		log.info("testAsyncEndpoints()");
+		long projectId = projectOriginal.getId();
+		ResponseEntity<Object> response = asyncResult(asyncJobMarketplaceController.addNewBid(30, projectId,
+				buyer.getId(), false, 0));
+		assert(((Bid) ((JsonResult) response.getBody()).getResult()).getAmount() == 30);
+
+		//same bidding rule on both, auto bid amount < minAmount
+		ResponseEntity<Object> blocking = jobMarketplaceController.addNewBid(5, projectId, buyer.getId(), true, 6);
+		response = asyncResult(asyncJobMarketplaceController.addNewBid(5, projectId, buyer.getId(), true, 6));
+		assert(((ErrorMessage) response.getBody()).getErrors().equals(((ErrorMessage) blocking.getBody()).getErrors()));
+
+		response = asyncResult(asyncJobMarketplaceController.getProjectById(projectId, ""));
+		assert(((Project) ((JsonResult) response.getBody()).getResult()).getMinBid() == 30);
+
+		//1 thread busy and 1 call queued, the next call is turned away
+		AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 1, 60000, new SimpleMeterRegistry());
+		AsyncJobMarketplaceController busyController = new AsyncJobMarketplaceController(jobMarketplaceController,
+				executor);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			executor.submit(() -> await(release));
+			executor.submit(() -> null);
+			response = asyncResult(busyController.getProjectById(projectId, ""));
+			assert(response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE);
+			assert(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER) != null);
+			assert(executor.getRejectedCount() == 1);
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * a queued /async bid whose request timed out is cancelled, and one that waited longer than the max queue wait is
+	 * not run, so neither commits after the client was told to retry
+	 */
+	@Test
+	public void testAsyncTimeout() throws Exception {
+		log.info("testAsyncTimeout()");
+		long projectId = jobMarketplaceService.createProject(seller1.getId(), "async timeout", 100, deadline).getId();
+		AsyncRequestExecutor executor = new AsyncRequestExecutor(1, 10, 60000, new SimpleMeterRegistry());
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(
+				new AsyncJobMarketplaceController(jobMarketplaceController, executor)).build();
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			executor.submit(() -> await(release));
+			MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+					.get(RequestMappings.ASYNC + RequestMappings.ADD_NEW_BID).param("amount", "50")
+					.param("projectId", "" + projectId).param("buyerId", "" + buyer.getId()))
+					.andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+			MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+			for (AsyncListener listener : asyncContext.getListeners()) {
+				listener.onTimeout(new AsyncEvent(asyncContext));
+			}
+			ResponseEntity<?> response = (ResponseEntity<?>) result.getAsyncResult(0);
+			assert(response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE);
+			assert(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER) != null);
+		} finally {
+			release.countDown();
+		}
+		//the pool runs its queue in order, the cancelled bid was skipped by the time the next call is done
+		executor.submit(() -> null).getFuture().get(10, TimeUnit.SECONDS);
+		assert(jobMarketplaceService.getBids(projectId, -1, 0, 10).isEmpty());
+		executor.shutdown();
+
+		//the bid waits 1s behind the busy thread, longer than the max queue wait
+		executor = new AsyncRequestExecutor(1, 10, 500, new SimpleMeterRegistry());
+		AsyncJobMarketplaceController controller = new AsyncJobMarketplaceController(jobMarketplaceController,
+				executor);
+		CountDownLatch release2 = new CountDownLatch(1);
+		try {
+			executor.submit(() -> await(release2));
+			DeferredResult<ResponseEntity<Object>> deferred = controller.addNewBid(50, projectId, buyer.getId(), false, 0);
+			delay(1);
+			release2.countDown();
+			ResponseEntity<Object> response = asyncResult(deferred);
+			assert(response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE);
+			assert(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER) != null);
+			assert(executor.getExpiredCount() == 1);
+			assert(jobMarketplaceService.getBids(projectId, -1, 0, 10).isEmpty());
+		} finally {
+			release2.countDown();
+			executor.shutdown();
+		}
+
+		//the timeout fires while the bid runs, held up on its project's lock: it is not reported as not run, and
+		//it is stored once
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AsyncRequestExecutor running = new AsyncRequestExecutor(1, 10, 60000, registry);
+		mockMvc = MockMvcBuilders.standaloneSetup(new AsyncJobMarketplaceController(jobMarketplaceController,
+				running)).build();
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch unlock = new CountDownLatch(1);
+		Thread holder = new Thread(() -> projectLocks.withLock(projectId, () -> {
+			locked.countDown();
+			return await(unlock);
+		}));
+		holder.start();
+		try {
+			assert(locked.await(10, TimeUnit.SECONDS));
+			MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+					.get(RequestMappings.ASYNC + RequestMappings.ADD_NEW_BID).param("amount", "40")
+					.param("projectId", "" + projectId).param("buyerId", "" + buyer.getId()))
+					.andExpect(MockMvcResultMatchers.request().asyncStarted()).andReturn();
+			for (int i = 0; i < 100 && registry.get("marketplace.async.active").gauge().value() < 1; i++) {
+				Thread.sleep(50);
+			}
+			assert(registry.get("marketplace.async.active").gauge().value() == 1);
+			Thread.sleep(200); //the thread took the call, let it get to the lock
+			MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+			for (AsyncListener listener : asyncContext.getListeners()) {
+				listener.onTimeout(new AsyncEvent(asyncContext));
+			}
+			ResponseEntity<?> response = (ResponseEntity<?>) result.getAsyncResult(0);
+			assert(response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE);
+			assert(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER) == null);
+		} finally {
+			unlock.countDown();
+			holder.join();
+		}
+		running.submit(() -> null).getFuture().get(10, TimeUnit.SECONDS);
+		assert(jobMarketplaceService.getBids(projectId, -1, 0, 10).size() == 1);
+		running.shutdown();
+	}
+
+	/** waits for the answer of an /async endpoint */
+	@SuppressWarnings("unchecked")
+	private static ResponseEntity<Object> asyncResult(DeferredResult<ResponseEntity<Object>> deferred)
+			throws Exception {
+		CompletableFuture<Object> result = new CompletableFuture<>();
+		deferred.setResultHandler(result::complete);
+		return (ResponseEntity<Object>) result.get(10, TimeUnit.SECONDS);
+	}
+
+	/** keeps an async request thread busy until released */
+	private static Object await(CountDownLatch release) {
+		try {
+			release.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	/** the feed pushes the current minimum, each lower bid and the final result, and drops a subscriber that stalls */
+	@Test
+	public void testMinBidFeed() throws Exception {
+		log.info("testMinBidFeed()");
+		ObjectMapper objectMapper = new ObjectMapper();
+		long projectId = projectOriginal.getId();
+		BlockingQueue<String> events = new LinkedBlockingQueue<>();
+		CountDownLatch closed = new CountDownLatch(1);
+		minBidFeed.subscribe(Collections.singleton(projectId), new MinBidFeed.Sink() {
+			@Override
+			public void send(String json) {
+				events.add(json);
+			}
+
+			@Override
+			public void close() {
+				closed.countDown();
+			}
+		});
+		JsonNode event = objectMapper.readTree(events.poll(10, TimeUnit.SECONDS));
+		assert(event.get("projectId").asLong() == projectId && event.get("minBid").asLong() == Project.DEFAULT_MIN_BID);
+
+		Bid bid50 = jobMarketplaceService.addNewBid(50, projectId, buyer.getId(), false, 0);
+		jobMarketplaceService.addNewBid(60, projectId, buyer2.getId(), false, 0); //not lower, no event
+		Bid bid40 = jobMarketplaceService.addNewBid(40, projectId, buyer2.getId(), true, 20);
+		event = objectMapper.readTree(events.poll(10, TimeUnit.SECONDS));
+		assert(event.get("minBid").asLong() == 50 && event.get("minBidId").asLong() == bid50.getId());
+		event = objectMapper.readTree(events.poll(10, TimeUnit.SECONDS));
+		assert(event.get("minBid").asLong() == 40 && event.get("minBidId").asLong() == bid40.getId());
+		assert(event.get("bidStatus").asText().equals(Project.BidStatus.NONE.name()));
+
+		//finalized by AuctionCloser at the deadline, the auto bid is already the lowest and stays
+		event = objectMapper.readTree(events.poll(DEADLINE_DELAY_SECONDS + 10, TimeUnit.SECONDS));
+		assert(event.get("bidStatus").asText().equals(Project.BidStatus.MINIMUM_FOUND.name()));
+		assert(event.get("minBid").asLong() == 40 && event.get("minBidId").asLong() == bid40.getId());
+		assert(closed.await(10, TimeUnit.SECONDS) && events.isEmpty());
+
+		//a subscriber that stops reading is dropped once its buffer is full, bids are not held up
+		Project project2 = jobMarketplaceService.createProject(seller2.getId(), "project 2", 1000,
+				jobMarketplaceService.calculateDeadline(1, 0));
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch stalledClosed = new CountDownLatch(1);
+		long dropped = minBidFeed.getDroppedCount();
+		minBidFeed.subscribe(Collections.singleton(project2.getId()), new MinBidFeed.Sink() {
+			@Override
+			public void send(String json) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public void close() {
+				stalledClosed.countDown();
+			}
+		});
+		try {
+			for (int i = 0; i < 100; i++) {
+				jobMarketplaceService.addNewBid(500 - i, project2.getId(), buyer.getId(), false, 0);
+			}
+			assert(stalledClosed.await(10, TimeUnit.SECONDS));
+			assert(minBidFeed.getDroppedCount() == dropped + 1);
+		} finally {
+			release.countDown();
+		}
+	}
+
+	/**
+	 * journaled bids are acknowledged before they are stored, stored by applyJournal() in journal order, and after a
+	 * restart the entries that were not stored yet are replayed once. A torn entry at the end is dropped.
+	 */
+	@Test
+	public void testBidJournal() throws Exception {
+		log.info("testBidJournal()");
+		Project project = jobMarketplaceService.createProject(seller2.getId(), "journaled", 100,
+				jobMarketplaceService.calculateDeadline(1, 0));
+		long projectId = project.getId();
+		Path path = Files.createTempFile("bids", ".journal");
+		Files.delete(path);
+		try {
+			BidJournal journal = new BidJournal(true, path.toString(), 1, true, new SimpleMeterRegistry());
+			JobMarketplaceService service = journaledService(journal);
+			Bid bid1 = service.journalBid(50, projectId, buyer.getId(), false, 0);
+			Bid bid2 = service.journalBid(40, projectId, buyer2.getId(), true, 20);
+			assert(bid1.getId() == 0 && bid1.getJournalSeq() == 1 && bid2.getJournalSeq() == 2);
+			try {
+				service.journalBid(30, projectId, -1, false, 0);
+				assert(false);
+			} catch (IllegalArgumentException e) {
+				assert(e.getMessage().equals("buyer for buyerId not found"));
+			}
+			//acknowledged, not stored yet
+			assert(jobMarketplaceService.getBidsByProjectId(projectId).isEmpty());
+			assert(journal.getPendingCount() == 2);
+
+			assert(service.applyJournal() == 2);
+			List<BidView> bids = jobMarketplaceService.getBidsByProjectId(projectId);
+			assert(bids.size() == 2 && bids.stream().allMatch(bid -> bid.getJournalSeq() > 0));
+			assert(jobMarketplaceService.getProjectById2(projectId).getMinBid() == 40);
+			assert(journal.getPendingCount() == 0);
+
+			//3rd bid is acknowledged but the process stops before storing it, the 4th is torn
+			service.journalBid(30, projectId, buyer.getId(), false, 0);
+			service.journalBid(10, projectId, buyer.getId(), false, 0);
+			journal.close();
+			try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+				file.seek(64 + 3 * 64 + 24);
+				file.writeLong(5);
+			}
+
+			BidJournal reopened = new BidJournal(true, path.toString(), 1, true, new SimpleMeterRegistry());
+			assert(reopened.getLastSeq() == 3);
+			service = journaledService(reopened);
+			assert(service.applyJournal() == 1);
+			assert(jobMarketplaceService.getBidsByProjectId(projectId).size() == 3);
+			assert(jobMarketplaceService.getProjectById2(projectId).getMinBid() == 30);
+			//the next bid takes the torn entry's place
+			assert(service.journalBid(35, projectId, buyer.getId(), false, 0).getJournalSeq() == 4);
+			reopened.close();
+
+			//the checkpoint is lost, the stored bids are skipped by their journalSeq
+			try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+				file.seek(16);
+				file.writeLong(0);
+			}
+			BidJournal restarted = new BidJournal(true, path.toString(), 1, true, new SimpleMeterRegistry());
+			assert(journaledService(restarted).applyJournal() == 1);
+			assert(jobMarketplaceService.getBidsByProjectId(projectId).size() == 4);
+			restarted.close();
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	/**
+	 * a journaled bid whose project is gone or replaced after a restart is kept in the journal and stops the replay,
+	 * and the journal needs tables that outlive a restart
+	 */
+	@Test
+	public void testBidJournalReplayRejected() throws Exception {
+		log.info("testBidJournalReplayRejected()");
+		long replaced = jobMarketplaceService.createProject(seller2.getId(), "replaced", 100,
+				jobMarketplaceService.calculateDeadline(1, 0)).getId();
+		long kept = jobMarketplaceService.createProject(seller2.getId(), "kept", 100,
+				jobMarketplaceService.calculateDeadline(1, 0)).getId();
+		Path path = Files.createTempFile("bids", ".journal");
+		Files.delete(path);
+		try {
+			BidJournal journal = new BidJournal(true, path.toString(), 1, true, new SimpleMeterRegistry());
+			try {
+				new BidJournalWriter(jobMarketplaceService, journal, "jdbc:h2:mem:testdb", "create-drop", false);
+				assert(false);
+			} catch (IllegalStateException e) {
+				log.info("testBidJournalReplayRejected() {}", e.getMessage());
+			}
+			new BidJournalWriter(jobMarketplaceService, journal, "jdbc:h2:mem:testdb", "create-drop", true);
+			new BidJournalWriter(jobMarketplaceService, journal, "jdbc:h2:file:./data/marketplace", "update", false);
+
+			JobMarketplaceService service = journaledService(journal);
+			assert(service.applyJournal() == 0); //continues after the journalSeqs of the other tests
+			service.journalBid(50, kept, buyer.getId(), false, 0);
+			service.journalBid(40, replaced, buyer.getId(), false, 0);
+			service.journalBid(45, kept, buyer2.getId(), false, 0);
+			journal.close();
+
+			//after the restart the id belongs to another project
+			Timestamp deadline = jdbcTemplate.queryForObject("SELECT bid_deadline FROM project WHERE id=?",
+					Timestamp.class, replaced);
+			jdbcTemplate.update("UPDATE project SET bid_deadline=? WHERE id=?",
+					Timestamp.valueOf(deadline.toLocalDateTime().plusSeconds(5)), replaced);
+			SimpleMeterRegistry registry = new SimpleMeterRegistry();
+			BidJournal reopened = new BidJournal(true, path.toString(), 1, true, registry);
+			service = journaledService(reopened);
+			for (int i = 0; i < 2; i++) {
+				try {
+					service.applyJournal();
+					assert(false);
+				} catch (IllegalStateException e) {
+					log.info("testBidJournalReplayRejected() {}", e.getMessage());
+				}
+			}
+			//the bid before it is stored, the rejected one and the ones after it are kept
+			assert(jobMarketplaceService.getBidsByProjectId(kept).size() == 1);
+			assert(jobMarketplaceService.getBidsByProjectId(replaced).isEmpty());
+			assert(reopened.getPendingCount() == 2);
+			assert(registry.get("marketplace.journal.rejected").tag("phase", "replay").counter().count() == 2);
+
+			//the database is back
+			jdbcTemplate.update("UPDATE project SET bid_deadline=? WHERE id=?", deadline, replaced);
+			assert(service.applyJournal() == 2);
+			assert(jobMarketplaceService.getBidsByProjectId(kept).size() == 2);
+			assert(jobMarketplaceService.getBidsByProjectId(replaced).size() == 1);
+			reopened.close();
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	private JobMarketplaceService journaledService(BidJournal journal) {
+		return new JobMarketplaceService(projectRepository, bidRepository, buyerRepository, sellerRepository,
+				eventPublisher, projectLocks, transactionManager, journal);
+	}
+
+	/**
+	 * a snapshot plus the delta log after it restore the same rows into an empty database, a change that is in both
+	 * is not applied twice, and the id sequences continue after the restored ids
+	 */
+	@Test
+	public void testSnapshotRestore() throws Exception {
+		log.info("testSnapshotRestore()");
+		Path dir = Files.createTempDirectory("snapshot");
+		SnapshotStore store = new SnapshotStore(true, dir.toString(), 3600, jdbcTemplate);
+		try {
+			store.start();
+			Project project = jobMarketplaceService.createProject(seller1.getId(), "snapshot", 100,
+					jobMarketplaceService.calculateDeadline(1, 0));
+			Bid fixed = jobMarketplaceService.addNewBid(70, project.getId(), buyer.getId(), false, 0);
+			store.snapshot();
+			String eTagAtSnapshot = jobMarketplaceController.getProjectById(project.getId(), "").getHeaders().getETag();
+
+			//changes after the snapshot, the store is not a bean so its listeners are called here
+			Buyer buyer3 = jobMarketplaceService.addBuyer("GHI");
+			store.onBuyerCreated(new BuyerCreatedEvent(buyer3));
+			Seller seller4 = jobMarketplaceService.addSeller("Seller4a");
+			store.onSellerCreated(new SellerCreatedEvent(seller4));
+			Bid lower = jobMarketplaceService.addNewBid(65, project.getId(), buyer3.getId(), false, 0);
+			store.onBidAccepted(new BidAcceptedEvent(lower));
+			//committed before the snapshot, logged after it
+			store.onBidAccepted(new BidAcceptedEvent(fixed));
+			Project closing = jobMarketplaceService.createProject(seller4.getId(), "closing", 100,
+					jobMarketplaceService.calculateDeadline(0, 2));
+			store.onProjectCreated(new ProjectCreatedEvent(closing));
+			store.onBidAccepted(new BidAcceptedEvent(
+					jobMarketplaceService.addNewBid(50, closing.getId(), buyer.getId(), false, 0)));
+			Bid auto = jobMarketplaceService.addNewBid(60, closing.getId(), buyer2.getId(), true, 40);
+			store.onBidAccepted(new BidAcceptedEvent(auto));
+			Thread.sleep(2500);
+			store.onProjectFinalized(new ProjectFinalizedEvent(jobMarketplaceService.closeProject(closing.getId())));
+
+			//restore into an empty database with the same schema
+			JdbcTemplate restored = new JdbcTemplate(new DriverManagerDataSource(
+					"jdbc:h2:mem:restoretest;DB_CLOSE_DELAY=-1", "sa", ""));
+			for (Map<String, Object> row : jdbcTemplate.queryForList("SCRIPT NODATA")) {
+				restored.execute((String) row.get("SCRIPT"));
+			}
+			new SnapshotStore(true, dir.toString(), 3600, restored).restore();
+
+			//each bid was added in its own transaction, so the replayed bids move the version as far as they did
+			String projects = "SELECT id, seller_id, description, max_budget, min_bid, min_bid_id, bid_deadline, "
+					+ "bid_status, auto_min_amount1, auto_bid_id1, auto_min_amount2, auto_bid_id2, last_bid_id, "
+					+ "version FROM project WHERE id IN (" + project.getId() + "," + closing.getId() + ") ORDER BY id";
+			String bids = "SELECT * FROM bid WHERE project_id IN (" + project.getId() + "," + closing.getId()
+					+ ") ORDER BY id";
+			String people = "SELECT * FROM buyer WHERE id=" + buyer3.getId() + " UNION ALL SELECT * FROM seller "
+					+ "WHERE id=" + seller4.getId();
+			assert(restored.queryForList(projects).equals(jdbcTemplate.queryForList(projects)));
+			assert(restored.queryForList(bids).equals(jdbcTemplate.queryForList(bids)));
+			assert(restored.queryForList(bids).size() == 4);
+			assert(restored.queryForList(people).equals(jdbcTemplate.queryForList(people)));
+			assert(restored.queryForObject("SELECT winning_bid FROM bid WHERE id=" + auto.getId(), Long.class) == 49);
+			assert(restored.queryForObject("SELECT min_bid FROM project WHERE id=" + project.getId(), Long.class) == 65);
+			//the indexes dropped for the load are back
+			String indexes = "SELECT DISTINCT index_name, sql FROM information_schema.indexes WHERE table_name IN "
+					+ "('BID', 'PROJECT') ORDER BY index_name";
+			assert(restored.queryForList(indexes).equals(jdbcTemplate.queryForList(indexes)));
+
+			//a client that read the project before the snapshot does not get a 304 for the restored, changed project
+			long restoredVersion = restored.queryForObject("SELECT version FROM project WHERE id=" + project.getId(),
+					Long.class);
+			ResponseEntity<Object> response = jobMarketplaceController.getProjectById(project.getId(), eTagAtSnapshot);
+			assert(response.getStatusCode() == HttpStatus.OK);
+			assert(response.getHeaders().getETag().equals("\"" + project.getId() + "-" + restoredVersion + "\""));
+			assert(!response.getHeaders().getETag().equals(eTagAtSnapshot));
+
+			long maxBidId = restored.queryForObject("SELECT max(id) FROM bid", Long.class);
+			long maxId = restored.queryForObject("SELECT max(id) FROM (SELECT id FROM project UNION ALL "
+					+ "SELECT id FROM buyer UNION ALL SELECT id FROM seller)", Long.class);
+			assert(restored.queryForObject("SELECT NEXT VALUE FOR bid_seq", Long.class) > maxBidId);
+			assert(restored.queryForObject("SELECT NEXT VALUE FOR hibernate_sequence", Long.class) > maxId);
+			restored.execute("DROP ALL OBJECTS");
+		} finally {
+			store.stop();
+			try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+				files.forEach(file -> file.toFile().delete());
+			}
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testReplicaRouting() throws Exception {
+		log.info("testReplicaRouting()");
+		DataSource replicaDataSource = new DriverManagerDataSource("jdbc:h2:mem:replicatest;DB_CLOSE_DELAY=-1", "sa",
+				"");
+		Replica replica = new Replica("replica1", replicaDataSource);
+		ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(dataSource, Collections.singletonList(replica),
+				1000);
+		routing.afterPropertiesSet();
+		LazyConnectionDataSourceProxy routed = new LazyConnectionDataSourceProxy(routing);
+		DataSourceTransactionManager routedTransactions = new DataSourceTransactionManager(routed);
+		TransactionTemplate write = new TransactionTemplate(routedTransactions);
+		TransactionTemplate read = new TransactionTemplate(routedTransactions);
+		read.setReadOnly(true);
+		JdbcTemplate routedJdbc = new JdbcTemplate(routed);
+		String primaryName = jdbcTemplate.queryForObject("CALL DATABASE()", String.class);
+		String replicaName = new JdbcTemplate(replicaDataSource).queryForObject("CALL DATABASE()", String.class);
+		H2ReplicationStandIn standIn = new H2ReplicationStandIn(dataSource, replica);
+		try {
+			standIn.createSchema();
+			//not caught up yet
+			assert(read.execute(status -> routedJdbc.queryForObject("CALL DATABASE()", String.class))
+					.equals(primaryName));
+			standIn.replicate();
+			assert(read.execute(status -> routedJdbc.queryForObject("CALL DATABASE()", String.class))
+					.equals(replicaName));
+			assert(read.execute(status -> routedJdbc.queryForObject("SELECT count(*) FROM seller WHERE id=?",
+					Long.class, seller1.getId())) == 1);
+
+			//the writer reads from the primary until the replica has its write, other callers read the replica
+			ReadYourWrites.Context writer = new ReadYourWrites.Context(0, null);
+			long sellerId = ReadYourWrites.callWith(writer, () -> write.execute(status -> {
+				assert(routedJdbc.queryForObject("CALL DATABASE()", String.class).equals(primaryName));
+				long id = routedJdbc.queryForObject("SELECT NEXT VALUE FOR hibernate_sequence", Long.class);
+				routedJdbc.update("INSERT INTO seller (id, name) VALUES (?, ?)", id, "replicated");
+				return id;
+			}));
+			assert(writer.getLastWriteMillis() > 0);
+			String sellerCount = "SELECT count(*) FROM seller WHERE id=" + sellerId;
+			assert(ReadYourWrites.callWith(writer, () -> read.execute(status -> routedJdbc.queryForObject(sellerCount,
+					Long.class))) == 1);
+			AtomicReference<Long> otherCount = new AtomicReference<>();
+			Thread other = new Thread(() -> otherCount.set(read.execute(status -> routedJdbc.queryForObject(
+					sellerCount, Long.class))));
+			other.start();
+			other.join();
+			assert(otherCount.get() == 0);
+
+			Thread.sleep(5);
+			standIn.replicate();
+			assert(ReadYourWrites.callWith(writer, () -> read.execute(status -> routedJdbc.queryForObject(
+					"CALL DATABASE()", String.class))).equals(replicaName));
+			assert(ReadYourWrites.callWith(writer, () -> read.execute(status -> routedJdbc.queryForObject(sellerCount,
+					Long.class))) == 1);
+
+			//a pinned read, e.g. of a response that is cached, goes to the primary and is not taken for a write
+			assert(ReplicaRoutingDataSource.onPrimary(() -> read.execute(status -> routedJdbc.queryForObject(
+					"CALL DATABASE()", String.class))).equals(primaryName));
+			assert(read.execute(status -> routedJdbc.queryForObject("CALL DATABASE()", String.class))
+					.equals(replicaName));
+			assert(ReadYourWrites.current().getLastWriteMillis() == 0);
+
+			//over the staleness bound every read goes to the primary
+			Thread.sleep(1100);
+			long primaryReads = routing.getPrimaryReads();
+			assert(read.execute(status -> routedJdbc.queryForObject("CALL DATABASE()", String.class))
+					.equals(primaryName));
+			assert(routing.getPrimaryReads() == primaryReads + 1);
+
+			//the filter hands the time of the request's write back in a cookie and reads the caller's from it
+			long lastWrite = System.currentTimeMillis() - 10;
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			request.setCookies(new Cookie(ReadYourWrites.COOKIE, Long.toString(lastWrite)));
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			new ReadYourWritesFilter(1000).doFilter(request, response, (req, res) -> {
+				assert(ReadYourWrites.current().getLastWriteMillis() == lastWrite);
+				write.execute(status -> routedJdbc.update("UPDATE seller SET name=? WHERE id=?", "filtered",
+						sellerId));
+			});
+			Cookie cookie = response.getCookie(ReadYourWrites.COOKIE);
+			assert(cookie != null && Long.parseLong(cookie.getValue()) >= lastWrite && cookie.getMaxAge() == 1);
+			assert(ReadYourWrites.current().getLastWriteMillis() == 0);
+		} finally {
+			new JdbcTemplate(replicaDataSource).execute("DROP ALL OBJECTS");
+		}
+	}
+}